@@ -0,0 +1,48 @@
+package org.docknotas.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Pasta de dados descartável para os benchmarks (-Ddocknotas.home), apagada no fim do fork.
+ * Tem de ser chamado antes do primeiro acesso ao Storage.
+ */
+public final class BenchHome {
+
+    private BenchHome() {}
+
+    public static synchronized Path use() {
+        String set = System.getProperty("docknotas.home");
+        if (set != null) return Path.of(set);
+        try {
+            Path home = Files.createTempDirectory("docknotas-jmh");
+            System.setProperty("docknotas.home", home.toString());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteTree(home)));
+            return home;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Texto de nota com linhas de tamanhos variados, ~chars caracteres. */
+    public static String text(int chars) {
+        StringBuilder sb = new StringBuilder(chars + 64);
+        for (int i = 0; sb.length() < chars; i++) {
+            sb.append("linha ").append(i).append(" – ").append("lorem ipsum dolor ".repeat(1 + i % 5)).append('\n');
+        }
+        sb.setLength(chars);
+        return sb.toString();
+    }
+
+    private static void deleteTree(Path dir) {
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try { Files.deleteIfExists(p); } catch (IOException ignored) {}
+            });
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,93 @@
+package org.docknotas.storage;
+
+import org.docknotas.settings.AppSettings;
+import org.docknotas.ui.text.RopeContent;
+import org.openjdk.jmh.annotations.*;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caminhos de disco do Storage: nota inteira (gravar/ler), preferências e backup.
+ * – Tamanhos em caracteres; acima de MappedNotes.MIN_BYTES a janela usa a carga progressiva
+ * – Rode também com -Pjmh='Storage -jvmArgsAppend -Ddocknotas.store=log' para o outro NoteStore
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int chars;
+
+    private String text;
+    private PlainDocument doc;
+    private AppSettings settings;
+    private int edit;
+
+    @Setup(Level.Trial)
+    public void setUp() throws BadLocationException {
+        BenchHome.use();
+        Storage.ensureDirs();
+        settings = Storage.loadSettings();
+        text = BenchHome.text(chars);
+        Storage.saveNotes(text);
+        doc = new PlainDocument(new RopeContent());
+        doc.insertString(0, text, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Storage.flushSettings(settings);
+    }
+
+    @Benchmark
+    public void saveNotes() {
+        Storage.saveNotes(text);
+    }
+
+    /** O caminho do NotesSaver: do documento para o arquivo em fluxo, sem String/byte[] da nota inteira. */
+    @Benchmark
+    public boolean saveNotesFromDocument() {
+        return Storage.saveNotes(doc, () -> {});
+    }
+
+    @Benchmark
+    public String loadNotes() {
+        return Storage.loadNotes();
+    }
+
+    /** Gravação imediata (sem a coalescência do saveSettings) e leitura de volta. */
+    @Benchmark
+    public AppSettings settingsRoundTrip() {
+        settings.setFontSize(12 + (edit++ & 7));
+        Storage.flushSettings(settings);
+        return Storage.loadSettings();
+    }
+
+    /** Backup sem mudança: só confere os blocos contra o último snapshot. */
+    @Benchmark
+    public void backupUnchanged() {
+        Storage.backupNow(settings);
+    }
+
+    /** Backup depois de uma edição no fim da nota (grava o bloco novo e o manifesto). */
+    @Benchmark
+    public void backupAfterEdit(EditedNote note) {
+        Storage.backupNow(settings);
+    }
+
+    @State(Scope.Thread)
+    public static class EditedNote {
+        private int n;
+
+        @Setup(Level.Invocation)
+        public void edit(StorageBenchmark b) {
+            Storage.saveNotes(b.text + (n++));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.docknotas.ui.components;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.Dimension;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contas da barrinha (DockGeometry) chamadas a cada evento de arrasto:
+ * colar na borda (fechada), empilhar com o bloco (ao abrir) e acompanhar (aberta).
+ * – Posições espalhadas pela tela toda, em dois monitores lado a lado
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DockGeometryBenchmark {
+
+    private static final Rectangle[] SCREENS = { new Rectangle(0, 0, 1920, 1080), new Rectangle(1920, 0, 2560, 1440) };
+    private static final Insets IN = new Insets(0, 0, 48, 0);
+    private static final Dimension SIZE_H = new Dimension(90, 28), SIZE_V = new Dimension(28, 90);
+    private static final Dimension NOTES = new Dimension(360, 240);
+
+    private final Point[] points = new Point[1024];
+    private int i;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        java.util.Random r = new java.util.Random(42);
+        for (int k = 0; k < points.length; k++) {
+            Rectangle s = SCREENS[k & 1];
+            points[k] = new Point(s.x + r.nextInt(s.width), s.y + r.nextInt(s.height));
+        }
+    }
+
+    @Benchmark
+    public DockGeometry.Snap snapCollapsedToEdge() {
+        int k = i++ & (points.length - 1);
+        return DockGeometry.snapToEdge(SCREENS[k & 1], IN, points[k], SIZE_H, SIZE_H, SIZE_V);
+    }
+
+    @Benchmark
+    public void anchorStackedLayout(Blackhole bh) {
+        int k = i++ & (points.length - 1);
+        bh.consume(DockGeometry.stacked(SCREENS[k & 1], IN, points[k], SIZE_H, NOTES, false));
+        bh.consume(DockGeometry.stacked(SCREENS[k & 1], IN, points[k], SIZE_V, NOTES, true));
+    }
+
+    @Benchmark
+    public Point anchorPopup() {
+        int k = i++ & (points.length - 1);
+        return DockGeometry.beside(SCREENS[k & 1], IN, points[k], SIZE_H, NOTES, (k & 2) != 0);
+    }
+}
@@ -0,0 +1,71 @@
+package org.docknotas.ui.components;
+
+import com.formdev.flatlaf.FlatDarkLaf;
+import org.docknotas.storage.BenchHome;
+import org.docknotas.ui.text.SoftWrapView;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uma pintura do editor (texto + linhas pautadas) numa BufferedImage do tamanho da janela,
+ * com o documento rolado até o meio, como o JScrollPane pinta.
+ * – Headless: não precisa de display
+ * – Com o FlatLaf instalado, como no App: só a UI dele usa a SoftWrapView na quebra de linha
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LineRuledTextAreaBenchmark {
+
+    private static final int W = 360, H = 600;
+
+    @Param({"1000", "100000", "1000000"})
+    int chars;
+
+    @Param({"false", "true"})
+    boolean antialias;
+
+    private LineRuledTextArea area;
+    private BufferedImage img;
+    private int scrollY;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FlatDarkLaf.setup();
+        area = new LineRuledTextArea();
+        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 14));
+        area.setLineWrap(true);
+        area.setWrapStyleWord(true);
+        area.setText(BenchHome.text(chars));
+        if (!(area.getUI().getRootView(area).getView(0) instanceof SoftWrapView)) {
+            throw new IllegalStateException("o editor não está com a SoftWrapView");
+        }
+        area.setSize(W, Integer.MAX_VALUE / 2);              // largura fixa para a quebra de linha
+        area.setSize(W, area.getPreferredSize().height);
+        scrollY = Math.max(0, area.getHeight() / 2 - H / 2);
+        img = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @Benchmark
+    public BufferedImage paintComponent() {
+        Graphics2D g = img.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, antialias
+                    ? RenderingHints.VALUE_TEXT_ANTIALIAS_LCD_HRGB : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+            g.translate(0, -scrollY);
+            g.setClip(0, scrollY, W, H);
+            area.paintComponent(g);
+        } finally {
+            g.dispose();
+        }
+        return img;
+    }
+}
@@ -0,0 +1,208 @@
+package org.docknotas.ui.components;
+
+import com.formdev.flatlaf.FlatDarkLaf;
+import org.docknotas.settings.AppSettings;
+import org.docknotas.storage.BenchHome;
+import org.docknotas.ui.BlockinhoFrame;
+import org.docknotas.ui.util.UiTheme;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Orçamento de pintura dos componentes desenhados à mão (./gradlew paintBudget; no check, paintBudgetGate).
+ * – Cada caso = tamanho × tema × prioridade (× zoom, onde a fonte muda), pintado numa BufferedImage (headless)
+ * – Mede o tempo por pintura (p50/p90/p99/max, com o createGraphics da vez) e os bytes alocados por pintura
+ * – O pior p90 de cada componente é comparado com paint-budget.properties; estourou = sai com 1
+ *   (o p99 de 300 quadros pega pausas do GC/agendador e vai só para o relatório)
+ * – Argumentos opcionais: --time-slack N (orçamento de tempo × N; os bytes continuam exatos) e o arquivo do relatório em JSON
+ */
+public final class PaintBudget {
+
+    /** JIT aquecido uma vez por componente; depois um pouco por caso. */
+    private static final int TARGET_WARMUP = 2000, WARMUP = 100, FRAMES = 300;
+    private static final String[] THEMES = {"dark", "light"};
+    private static final int[] ZOOMS = {50, 100, 200};
+    private static final String[] PRIORITIES = {"cinza", "vermelho", "azul"};
+
+    private static final Dimension[] WINDOW = { new Dimension(280, 180), new Dimension(360, 240), new Dimension(1200, 900) };
+    private static final Dimension[] HEADER = { new Dimension(120, 28), new Dimension(360, 28), new Dimension(1200, 28) };
+    private static final Dimension[] HANDLE = { new Dimension(90, 28), new Dimension(28, 90) };
+
+    private static final String TEXT = BenchHome.text(20_000);
+
+    /** Componente montado para um caso, com tema/zoom/prioridade já nas preferências. */
+    private interface Subject { JComponent build(AppSettings s, Dimension size); }
+
+    /** @param zoom se o zoom muda a pintura (só a fonte do editor) */
+    private record Target(String name, Dimension[] sizes, boolean zoom, Subject subject) {}
+
+    private record Result(String target, String label, long p50, long p90, long p99, long max, long bytesPerPaint) {}
+
+    private static final List<Target> TARGETS = List.of(
+            new Target("LineRuledTextArea", WINDOW, true, PaintBudget::textArea),
+            new Target("NoteCard", WINDOW, false, (s, d) -> new NoteCard(s)),
+            new Target("BlockinhoFrame.Card", WINDOW, false, (s, d) -> new BlockinhoFrame.Card(s)),
+            new Target("HeaderBar", HEADER, false, (s, d) -> new HeaderBar(null, null)),
+            new Target("DockBar.Handle", HANDLE, false, (s, d) -> {
+                DockBar.Handle h = new DockBar.Handle(s);
+                h.setOrientation(d.height > d.width ? "vertical" : "horizontal");
+                return h;
+            }));
+
+    private PaintBudget() {}
+
+    public static void main(String[] args) throws Exception {
+        long slack = 1;
+        String report = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("--time-slack".equals(args[i]) && i + 1 < args.length) slack = Long.parseLong(args[++i]);
+            else report = args[i];
+        }
+        try { FlatDarkLaf.setup(); } catch (Exception ignore) {}
+
+        List<Result> results = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> {
+            for (Target t : TARGETS) results.addAll(run(t));
+        });
+
+        Properties budget = new Properties();
+        try (InputStream in = PaintBudget.class.getResourceAsStream("/paint-budget.properties")) {
+            if (in != null) budget.load(in);
+        }
+
+        Map<String, Result> worst = new LinkedHashMap<>();
+        for (Result r : results) {
+            worst.merge(r.target() + ".p90", r, (a, b) -> b.p90() > a.p90() ? b : a);
+            worst.merge(r.target() + ".bytes", r, (a, b) -> b.bytesPerPaint() > a.bytesPerPaint() ? b : a);
+        }
+
+        List<String> over = new ArrayList<>();
+        System.out.printf("%-22s %9s %9s %9s %9s %12s%n", "componente (pior caso)", "p50 µs", "p90 µs", "p99 µs", "max µs", "bytes/pint.");
+        for (Target t : TARGETS) {
+            Result p = worst.get(t.name() + ".p90"), b = worst.get(t.name() + ".bytes");
+            System.out.printf("%-22s %9d %9d %9d %9d %12d   (%s | %s)%n", t.name(),
+                    p.p50() / 1000, p.p90() / 1000, p.p99() / 1000, p.max() / 1000, b.bytesPerPaint(), p.label(), b.label());
+            check(budget, t.name() + ".p90Micros", slack, p.p90() / 1000, p.label(), over);
+            check(budget, t.name() + ".bytesPerPaint", 1, b.bytesPerPaint(), b.label(), over);
+        }
+
+        if (report != null) {
+            Path out = Path.of(report);
+            if (out.getParent() != null) Files.createDirectories(out.getParent());
+            Files.writeString(out, json(results), StandardCharsets.UTF_8);
+            System.out.println("relatório: " + out);
+        }
+
+        if (!over.isEmpty()) {
+            over.forEach(System.err::println);
+            System.exit(1);
+        }
+        System.exit(0); // EDT/FlatLaf deixam threads vivas
+    }
+
+    private static List<Result> run(Target t) {
+        JComponent first = build(t, t.sizes()[0], THEMES[0], 100, PRIORITIES[0]);
+        BufferedImage warm = new BufferedImage(first.getWidth(), first.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        for (int i = 0; i < TARGET_WARMUP; i++) paintOnce(first, warm);
+
+        List<Result> out = new ArrayList<>();
+        for (Dimension d : t.sizes())
+            for (String theme : THEMES)
+                for (int zoom : t.zoom() ? ZOOMS : new int[]{100})
+                    for (String pri : PRIORITIES) {
+                        String label = d.width + "x" + d.height + " " + theme + " " + zoom + "% " + pri;
+                        out.add(measure(t.name(), label, build(t, d, theme, zoom, pri)));
+                    }
+        return out;
+    }
+
+    private static JComponent build(Target t, Dimension d, String theme, int zoom, String pri) {
+        AppSettings s = new AppSettings();
+        s.setTheme(theme);
+        s.setZoomPercent(zoom);
+        s.setPriorityColor(pri);
+        JComponent c = t.subject().build(s, d);
+        c.setSize(d);
+        c.doLayout();
+        return c;
+    }
+
+    private static Result measure(String target, String label, JComponent c) {
+        BufferedImage img = new BufferedImage(c.getWidth(), c.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        for (int i = 0; i < WARMUP; i++) paintOnce(c, img);
+
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] ns = new long[FRAMES];
+        long bytes0 = mx.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < FRAMES; i++) {
+            long t0 = System.nanoTime();
+            paintOnce(c, img);
+            ns[i] = System.nanoTime() - t0;
+        }
+        long bytes = (mx.getCurrentThreadAllocatedBytes() - bytes0) / FRAMES;
+
+        Arrays.sort(ns);
+        return new Result(target, label, pct(ns, 50), pct(ns, 90), pct(ns, 99), ns[ns.length - 1], bytes);
+    }
+
+    private static void paintOnce(JComponent c, BufferedImage img) {
+        Graphics2D g = img.createGraphics();
+        try { c.paint(g); } finally { g.dispose(); }
+    }
+
+    /** Como o NotesWindow monta o editor: cores do tema, fonte com zoom, espaçamento das preferências. */
+    private static JComponent textArea(AppSettings s, Dimension d) {
+        LineRuledTextArea a = new LineRuledTextArea();
+        UiTheme.Palette p = UiTheme.palette(s);
+        a.setBackground(p.editorBg);
+        a.setForeground(p.editorFg);
+        a.setGuidelineColor(p.guideline);
+        a.setZoom(s.getFontSize(), s.getZoomPercent());
+        a.setLineHeight(s.getLineSpacing());
+        a.setLineWrap(true);
+        a.setWrapStyleWord(true);
+        a.setText(TEXT);
+        return a;
+    }
+
+    private static void check(Properties budget, String key, long slack, long value, String label, List<String> over) {
+        String max = budget.getProperty(key);
+        if (max == null) return;
+        long limit;
+        try { limit = Long.parseLong(max.trim()); } catch (NumberFormatException e) { throw new IllegalArgumentException("paint-budget.properties: " + key, e); }
+        limit *= slack;
+        if (value > limit) over.add("ORÇAMENTO ESTOURADO " + key + ": " + value + " > " + limit + " (" + label + ")");
+    }
+
+    /** Nearest-rank sobre valores ordenados. */
+    private static long pct(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static String json(List<Result> results) {
+        StringBuilder sb = new StringBuilder("{\"frames\":").append(FRAMES).append(",\"unit\":\"ns\",\"cases\":[");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"component\":\"").append(r.target()).append("\",\"case\":\"").append(r.label())
+              .append("\",\"p50\":").append(r.p50()).append(",\"p90\":").append(r.p90())
+              .append(",\"p99\":").append(r.p99()).append(",\"max\":").append(r.max())
+              .append(",\"bytesPerPaint\":").append(r.bytesPerPaint()).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+}
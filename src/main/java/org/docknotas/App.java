@@ -4,35 +4,82 @@ import com.formdev.flatlaf.FlatDarkLaf;   // << tema moderno
 import org.docknotas.settings.AppSettings;
 import org.docknotas.storage.Storage;
 import org.docknotas.ui.components.DockBar;
+import org.docknotas.ui.util.UiTheme;
 import org.docknotas.ui.windows.NotesWindow;
 
 import javax.swing.*;
+import java.awt.Image;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Partida em etapas:
+ * 1) preferências, nota ativa e ícones em threads de fundo, em paralelo com o Look & Feel
+ * 2) a barrinha aparece assim que as preferências chegam
+ * 3) o NotesWindow é montado logo depois, ou só no primeiro clique se iniciar minimizado
+ * --benchmark-startup mede essa partida; --cds-training a percorre uma vez para a lista de classes do AppCDS,
+ * e --cds-dump monta o arquivo com ela onde o app está (CdsArchive; nunca numa partida normal)
+ */
 public class App {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--benchmark-startup")) {
+            StartupBenchmark.run(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals(CdsArchive.FLAG)) System.exit(CdsArchive.dumpNow());
+        boolean training = args.length > 0 && args[0].equals(CdsTraining.FLAG);
+        if (training) CdsTraining.prepare();
+        StartupTrace.mark("main");
+
+        ExecutorService io = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "docknotas-startup");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletableFuture<AppSettings> settingsF = CompletableFuture.supplyAsync(() -> {
+            Storage.ensureDirs();
+            AppSettings s = Storage.loadSettings();
+            StartupTrace.mark("settings");
+            return s;
+        }, io);
+        CompletableFuture<String> textF = settingsF.thenApplyAsync(s -> {
+                    String text = Storage.preloadNotes();
+                    StartupTrace.mark("notes");
+                    return text;
+                }, io)
+                .exceptionally(e -> null);           // a janela lê de novo
+        CompletableFuture<List<Image>> iconsF = CompletableFuture.supplyAsync(UiTheme::loadAppIcons, io)
+                .exceptionally(e -> List.of());      // ícone padrão do Swing
+
         // Look & Feel moderno (FlatLaf – dark). Troque por FlatLightLaf se quiser claro.
         try { FlatDarkLaf.setup(); } catch (Exception ignore) {}
+        StartupTrace.mark("laf");
 
+        AppSettings settings = settingsF.join();
         SwingUtilities.invokeLater(() -> {
-            Storage.ensureDirs();
-            AppSettings settings = Storage.loadSettings();
-
-            NotesWindow notes = new NotesWindow(settings);
-            DockBar dock = new DockBar(notes, settings);
-
-            // fechar = salvar
-            notes.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
-            notes.addWindowListener(new java.awt.event.WindowAdapter() {
-                @Override public void windowClosing(java.awt.event.WindowEvent e) {
-                    try {
-                        Storage.saveNotes(notes.getEditorText());
-                        Storage.saveSettings(settings);
-                    } catch (Exception ignored) {}
-                }
-            });
+            DockBar dock = new DockBar(() -> createNotesWindow(settings, textF.join(), iconsF.join()), settings);
 
             // A barrinha decide como iniciar (minimizado/aberto)
             dock.startAccordingToSettings();
+            if (training) CdsTraining.exercise(dock, settings);
+        });
+    }
+
+    private static NotesWindow createNotesWindow(AppSettings settings, String text, List<Image> icons) {
+        NotesWindow notes = new NotesWindow(settings, text, icons);
+
+        // fechar = salvar
+        notes.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        notes.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override public void windowClosing(java.awt.event.WindowEvent e) {
+                try {
+                    notes.flushNotes();
+                    Storage.flushSettings(settings);
+                } catch (Exception ignored) {}
+            }
         });
+        return notes;
     }
 }
@@ -0,0 +1,112 @@
+package org.docknotas;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * --cds-dump: monta o arquivo AppCDS na pasta em que o app está e sai.
+ * – O JDK 17 amarra o arquivo ao caminho e à data do jar: um arquivo feito no build não serve no app instalado
+ *   (o jpackage copia o jar de novo e o instalador escolhe a pasta)
+ * – O build grava só a lista de classes da partida (docknotas.classlist, --cds-training), que não depende do caminho
+ * – Só quando pedido (tarefa cdsArchive, ou uma vez depois de instalar): a partida normal nunca mexe na pasta
+ *   do app nem no .cfg do launcher
+ * – java -Xshare:dump monta docknotas.jsa com a lista e só então liga o arquivo no .cfg do launcher
+ *   (um SharedArchiveFile que não existe desligaria até o CDS do runtime)
+ * – Jar, JVM e pasta iguais aos de docknotas.jsa.src = nada a refazer; pasta só de leitura = sai com erro
+ */
+final class CdsArchive {
+
+    static final String FLAG = "--cds-dump";
+    static final String CLASS_LIST = "docknotas.classlist";
+    static final String ARCHIVE = "docknotas.jsa";
+    private static final String SOURCE = ARCHIVE + ".src";
+    private static final String OPTION = "java-options=-XX:SharedArchiveFile=$APPDIR/" + ARCHIVE;
+
+    private static final long DUMP_MS = 120_000;
+
+    private CdsArchive() {}
+
+    /** Monta (ou confirma) o arquivo; código de saída do processo. */
+    static int dumpNow() {
+        try {
+            if (refresh()) return 0;
+            System.err.println("AppCDS: sem " + CLASS_LIST + " gravável ao lado do jar");
+        } catch (IOException | InterruptedException e) {
+            System.err.println("AppCDS: " + e.getMessage());
+        }
+        return 1;
+    }
+
+    /** Arquivo em dia com o jar e ligado no .cfg; false = sem lista de classes ou pasta só de leitura. */
+    private static boolean refresh() throws IOException, InterruptedException {
+        Path jar = jar();
+        if (jar == null) return false;
+        Path dir = jar.getParent();
+        Path list = dir.resolve(CLASS_LIST), jsa = dir.resolve(ARCHIVE), src = dir.resolve(SOURCE);
+        if (!Files.isRegularFile(list) || !Files.isWritable(dir)) return false;
+
+        String stamp = jar + "\n" + Files.getLastModifiedTime(jar).toMillis() + "\n" + Files.size(jar)
+                + "\n" + System.getProperty("java.home") + "\n" + System.getProperty("java.vm.version") + "\n";
+        boolean current = Files.isRegularFile(jsa) && Files.isRegularFile(src)
+                && stamp.equals(Files.readString(src, StandardCharsets.UTF_8));
+        if (!current) {
+            Path tmp = dir.resolve(ARCHIVE + ".tmp");
+            Files.deleteIfExists(tmp);
+            String exe = System.getProperty("os.name", "").startsWith("Windows") ? "java.exe" : "java";
+            Process p = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", exe).toString(),
+                    "-Xshare:dump", "-XX:SharedClassListFile=" + list, "-XX:SharedArchiveFile=" + tmp,
+                    "-cp", jar.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(dir.resolve(ARCHIVE + ".log").toFile())
+                    .start();
+            if (!p.waitFor(DUMP_MS, TimeUnit.MILLISECONDS)) {
+                p.destroyForcibly();
+                Files.deleteIfExists(tmp);
+                throw new IOException("java -Xshare:dump passou de " + DUMP_MS / 1000 + " s");
+            }
+            if (p.exitValue() != 0 || !Files.isRegularFile(tmp)) {
+                Files.deleteIfExists(tmp);
+                throw new IOException("java -Xshare:dump saiu com " + p.exitValue() + " (ver " + ARCHIVE + ".log)");
+            }
+            Files.deleteIfExists(src); // arquivo novo sem .src = refeito na próxima, nunca aceito pela metade
+            if (Files.exists(jsa)) jsa.toFile().setWritable(true); // o dump grava só leitura (Windows não troca)
+            Files.move(tmp, jsa, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.writeString(src, stamp, StandardCharsets.UTF_8);
+        }
+        try (Stream<Path> s = Files.list(dir)) {
+            for (Path cfg : s.filter(f -> f.getFileName().toString().endsWith(".cfg")).toList()) link(cfg);
+        }
+        return true;
+    }
+
+    /** Acrescenta o SharedArchiveFile nas opções da JVM do launcher (uma vez). */
+    private static void link(Path cfg) throws IOException {
+        List<String> lines = new ArrayList<>(Files.readAllLines(cfg, StandardCharsets.UTF_8));
+        if (lines.contains(OPTION)) return;
+        int at = lines.indexOf("[JavaOptions]");
+        if (at < 0) {
+            lines.add("");
+            lines.add("[JavaOptions]");
+            at = lines.size() - 1;
+        }
+        lines.add(at + 1, OPTION);
+        Path tmp = cfg.resolveSibling(cfg.getFileName() + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, cfg, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Jar do app (pasta app/ do jpackage); null fora de um jar. */
+    private static Path jar() {
+        try {
+            Path p = Path.of(CdsArchive.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            return Files.isRegularFile(p) ? p.toAbsolutePath() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.docknotas;
+
+import org.docknotas.settings.AppSettings;
+import org.docknotas.storage.Storage;
+import org.docknotas.ui.components.ContextMenuFactory;
+import org.docknotas.ui.components.DockBar;
+import org.docknotas.ui.windows.NotesWindow;
+
+import javax.swing.*;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * --cds-training: roda a partida uma vez e sai, para a JVM gravar as classes usadas na lista do AppCDS
+ * (-XX:DumpLoadedClassList; ver a tarefa cdsArchive do Gradle e o CdsArchive, que monta o arquivo com ela no --cds-dump).
+ * – Pasta de dados temporária (user.home trocado antes do Storage carregar): as notas do usuário não são tocadas
+ * – Abre o NotesWindow, monta o popup do ContextMenuFactory e os menus da janela, pinta uma vez
+ * – Sai com System.exit; travou = halt (lista incompleta: a tarefa cdsArchive falha)
+ */
+final class CdsTraining {
+
+    static final String FLAG = "--cds-training";
+
+    /** Tempo para a carga da nota e as threads de fundo da partida rodarem antes de sair. */
+    private static final int SETTLE_MS = 1500;
+    private static final long WATCHDOG_MS = 60_000;
+
+    private CdsTraining() {}
+
+    /** Antes de qualquer acesso ao Storage. */
+    static void prepare() {
+        Path home;
+        try { home = Files.createTempDirectory("docknotas-cds"); }
+        catch (IOException e) { throw new IllegalStateException("sem pasta temporária para o treino", e); }
+        System.setProperty("user.home", home.toString());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteTree(home), "docknotas-cds-cleanup"));
+
+        Thread t = new Thread(() -> {
+            try { Thread.sleep(WATCHDOG_MS); } catch (InterruptedException ignored) {}
+            Runtime.getRuntime().halt(2);
+        }, "docknotas-cds-watchdog");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Na EDT, logo depois da barrinha aparecer. */
+    static void exercise(DockBar dock, AppSettings settings) {
+        NotesWindow notes = dock.openNotes();
+        JRootPane root = notes.getRootPane();
+
+        Runnable none = () -> {};
+        JPopupMenu popup = ContextMenuFactory.build(root, settings, notes::flushNotes, none, none,
+                id -> {}, text -> {}, none, none, none, none);
+        popup.show(root, 0, 0);
+
+        JMenuBar mb = notes.getJMenuBar();
+        for (int i = 0; mb != null && i < mb.getMenuCount(); i++) {
+            JMenu m = mb.getMenu(i);
+            if (m == null) continue;
+            m.setPopupMenuVisible(true);
+            m.setPopupMenuVisible(false);
+        }
+
+        // uma pintura completa fora da tela, além da que o Swing agenda
+        BufferedImage img = new BufferedImage(Math.max(1, notes.getWidth()), Math.max(1, notes.getHeight()),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        try {
+            root.paint(g);
+            popup.paint(g);
+        } finally {
+            g.dispose();
+        }
+        popup.setVisible(false);
+
+        Timer done = new Timer(SETTLE_MS, e -> {
+            notes.flushNotes();
+            Storage.flushSettings(settings);
+            System.exit(0);
+        });
+        done.setRepeats(false);
+        done.start();
+    }
+
+    private static void deleteTree(Path dir) {
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try { Files.deleteIfExists(p); } catch (IOException ignored) {}
+            });
+        } catch (IOException ignored) {}
+    }
+}
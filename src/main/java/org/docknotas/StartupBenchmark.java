@@ -0,0 +1,178 @@
+package org.docknotas;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * --benchmark-startup [N]: N partidas a frio (uma JVM nova por rodada) com StartupTrace ligado.
+ * – Precisa de um display (no Linux sem tela: xvfb-run)
+ * – Cada rodada roda numa pasta de dados temporária (-Ddocknotas.home), semeada com uma cópia das preferências
+ *   e notas da JVM que chamou (sem backups/ e index/) e apagada no fim: a partida grava (pastas, migração,
+ *   índice de busca), e nada disso chega à pasta real
+ * – Os outros -Ddocknotas.* são repassados
+ * – Saída: JSON com min/p50/p90/p95/p99/max e as amostras de cada marca, em ms desde o início da JVM
+ */
+final class StartupBenchmark {
+
+    private static final int DEFAULT_RUNS = 10;
+    private static final long RUN_TIMEOUT_S = 60;
+    /** Pastas da pasta de dados que não entram na cópia da rodada (grandes, e a partida não depende delas). */
+    private static final Set<String> NOT_COPIED = Set.of("backups", "index");
+
+    private StartupBenchmark() {}
+
+    static void run(String[] args) {
+        int runs = DEFAULT_RUNS;
+        if (args.length > 1) {
+            try { runs = Math.max(1, Integer.parseInt(args[1])); } catch (NumberFormatException ignored) {}
+        }
+
+        Map<String, List<Long>> samples = new LinkedHashMap<>();
+        samples.put("jvm", new ArrayList<>());
+        for (String m : StartupTrace.MARKS) samples.put(m, new ArrayList<>());
+        int failed = 0;
+
+        for (int i = 1; i <= runs; i++) {
+            Map<String, Long> r = launch();
+            if (r == null) {
+                failed++;
+                System.err.println("run " + i + "/" + runs + ": falhou");
+                continue;
+            }
+            for (Map.Entry<String, Long> e : r.entrySet()) {
+                List<Long> l = samples.get(e.getKey());
+                if (l != null && e.getValue() >= 0) l.add(e.getValue());
+            }
+            System.err.println("run " + i + "/" + runs + ": " + r);
+        }
+        System.out.println(report(runs, failed, samples));
+    }
+
+    /** Uma partida; marcas da linha STARTUP ou null se não veio. */
+    private static Map<String, Long> launch() {
+        Path home;
+        try { home = seedHome(); }
+        catch (IOException e) { return null; }
+
+        List<String> cmd = new ArrayList<>();
+        cmd.add(ProcessHandle.current().info().command().orElse("java"));
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add("-Ddocknotas.startupTrace=true");
+        cmd.add("-Ddocknotas.home=" + home);
+        System.getProperties().stringPropertyNames().stream()
+                .filter(k -> k.startsWith("docknotas.") && !k.equals("docknotas.startupTrace") && !k.equals("docknotas.home"))
+                .forEach(k -> cmd.add("-D" + k + "=" + System.getProperty(k)));
+        cmd.add(App.class.getName());
+
+        Process p = null;
+        try {
+            p = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            Map<String, Long> marks = null;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+                for (String line; (line = in.readLine()) != null; ) {
+                    if (line.startsWith(StartupTrace.PREFIX)) marks = parse(line.substring(StartupTrace.PREFIX.length()));
+                }
+            }
+            if (!p.waitFor(RUN_TIMEOUT_S, TimeUnit.SECONDS)) return null;
+            return marks;
+        } catch (IOException | InterruptedException e) {
+            return null;
+        } finally {
+            if (p != null) {
+                p.destroyForcibly();
+                try { p.waitFor(RUN_TIMEOUT_S, TimeUnit.SECONDS); } catch (InterruptedException ignored) {}
+            }
+            deleteTree(home);
+        }
+    }
+
+    /** Pasta de dados da JVM que chamou (mesma regra do Storage, sem carregá-lo); só lida. */
+    private static Path sourceHome() {
+        return Path.of(System.getProperty("docknotas.home",
+                System.getProperty("user.home") + File.separator + ".docknotas"));
+    }
+
+    /** Pasta temporária da rodada, com a cópia das preferências e notas (menos NOT_COPIED). */
+    private static Path seedHome() throws IOException {
+        Path home = Files.createTempDirectory("docknotas-bench");
+        Path src = sourceHome();
+        if (!Files.isDirectory(src)) return home;
+        try (Stream<Path> s = Files.walk(src)) {
+            for (Path f : (Iterable<Path>) s::iterator) {
+                Path rel = src.relativize(f);
+                if (rel.toString().isEmpty() || NOT_COPIED.contains(rel.getName(0).toString())) continue;
+                Path to = home.resolve(rel.toString());
+                if (Files.isDirectory(f)) Files.createDirectories(to);
+                else Files.copy(f, to, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            deleteTree(home);
+            throw e instanceof UncheckedIOException u ? u.getCause() : (IOException) e;
+        }
+        return home;
+    }
+
+    private static void deleteTree(Path dir) {
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(f -> {
+                try { Files.deleteIfExists(f); } catch (IOException ignored) {}
+            });
+        } catch (IOException ignored) {}
+    }
+
+    private static Map<String, Long> parse(String s) {
+        Map<String, Long> m = new LinkedHashMap<>();
+        for (String kv : s.trim().split(" ")) {
+            int eq = kv.indexOf('=');
+            if (eq <= 0) continue;
+            try { m.put(kv.substring(0, eq), Long.parseLong(kv.substring(eq + 1))); }
+            catch (NumberFormatException ignored) {}
+        }
+        return m;
+    }
+
+    private static String report(int runs, int failed, Map<String, List<Long>> samples) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"runs\":").append(runs).append(",\"failed\":").append(failed).append(",\"unit\":\"ms\",\"marks\":{");
+        boolean first = true;
+        for (Map.Entry<String, List<Long>> e : samples.entrySet()) {
+            long[] v = e.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            if (!first) sb.append(',');
+            first = false;
+            sb.append('"').append(e.getKey()).append("\":{\"n\":").append(v.length);
+            if (v.length > 0) {
+                sb.append(",\"min\":").append(v[0])
+                  .append(",\"p50\":").append(percentile(v, 50))
+                  .append(",\"p90\":").append(percentile(v, 90))
+                  .append(",\"p95\":").append(percentile(v, 95))
+                  .append(",\"p99\":").append(percentile(v, 99))
+                  .append(",\"max\":").append(v[v.length - 1]);
+            }
+            sb.append(",\"samples\":").append(Arrays.toString(v).replace(" ", "")).append('}');
+        }
+        return sb.append("}}").toString();
+    }
+
+    /** Nearest-rank sobre valores ordenados. */
+    private static long percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,54 @@
+package org.docknotas;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Marcas de tempo da partida, para o --benchmark-startup.
+ * – Ligado só com -Ddocknotas.startupTrace=true; fora disso mark() não faz nada
+ * – Cada marca vale na primeira vez, em ms desde o início da JVM
+ * – Quando o editor fica editável imprime uma linha "STARTUP k=v ..." e encerra o processo
+ */
+public final class StartupTrace {
+
+    public static final boolean ENABLED = Boolean.getBoolean("docknotas.startupTrace");
+
+    static final String PREFIX = "STARTUP ";
+    /** Na ordem em que costumam acontecer; "jvm" é sempre 0. */
+    static final String[] MARKS = {"main", "laf", "settings", "notes", "dockPaint", "editable"};
+
+    private static final long JVM_START = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli).orElse(System.currentTimeMillis());
+    private static final Map<String, Long> marks = new ConcurrentHashMap<>();
+
+    /** Partida que não chega ao editor não pode travar o benchmark. */
+    private static final long WATCHDOG_MS = 60_000;
+
+    static {
+        if (ENABLED) {
+            Thread t = new Thread(() -> {
+                try { Thread.sleep(WATCHDOG_MS); } catch (InterruptedException ignored) {}
+                Runtime.getRuntime().halt(2);
+            }, "docknotas-startup-watchdog");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private StartupTrace() {}
+
+    public static void mark(String name) {
+        if (!ENABLED) return;
+        if (marks.putIfAbsent(name, System.currentTimeMillis() - JVM_START) != null) return;
+        if ("editable".equals(name)) finish();
+    }
+
+    private static void finish() {
+        StringBuilder sb = new StringBuilder(PREFIX).append("jvm=0");
+        for (String m : MARKS) sb.append(' ').append(m).append('=').append(marks.getOrDefault(m, -1L));
+        System.out.println(sb);
+        System.out.flush();
+        Runtime.getRuntime().halt(0); // sem ganchos de saída: a rodada termina na marca (a pasta é temporária)
+    }
+}
@@ -1,13 +1,18 @@
 package org.docknotas.settings;
 
 import java.awt.*;
+import java.util.Objects;
 
 /**
  * Preferências do DockNotas.
  * Persistidas via Storage (settings.properties).
+ * Cada mudança real incrementa {@link #revision()}: o SettingsStore só grava quando ela muda.
  */
 public class AppSettings {
 
+    /** Contador de mudanças (dirty tracking); setters com o mesmo valor não contam. */
+    private volatile int revision = 0;
+
     /* ---------- Gerais ---------- */
     private boolean alwaysOnTop    = true;
     private boolean startMinimized = true;      // iniciar só com a janela visível? (UI decide)
@@ -24,9 +29,29 @@ public class AppSettings {
     /** Intensidade/força das cores (para UI que use prioridade/cor). */
     private int colorStrengthPercent = 100;     // 40..100
 
-    /** Cor de prioridade (compat) — "vermelho|laranja|amarelo|verde|azul|roxo|cinza". */
+    /** Cor de prioridade da nota ativa (o valor de cada nota fica no índice de notas) —
+     *  "vermelho|laranja|amarelo|verde|azul|roxo|cinza". */
     private String priorityColor = "cinza";
 
+    /** Persistir notas como diário de edições (append) + snapshot compactado. */
+    private boolean notesJournal = true;
+
+    /** Nota aberta (id em ~/.docknotas/notes/). */
+    private String activeNoteId = "main";
+
+    /** Linha do cursor ao sair (-1 = fim); notas grandes abrem primeiro em volta dela. */
+    private int caretLine = -1;
+
+    /** Backups automáticos conforme o volume de edição (SnapshotScheduler). */
+    private boolean autoBackup = true;
+
+    /** Retenção dos backups: os últimos N, e quantas horas/dias/semanas/meses guardar (um snapshot por faixa). */
+    private int backupKeepLast    = 10;         // 1..500
+    private int backupKeepHourly  = 24;         // 0..720
+    private int backupKeepDaily   = 14;         // 0..365
+    private int backupKeepWeekly  = 8;          // 0..260
+    private int backupKeepMonthly = 12;         // 0..120
+
     /* ---------- (Legado) Janela antiga - compat ---------- */
     private Point     noteWindowLocation = null;
     private Dimension noteWindowSize     = new Dimension(200, 520);
@@ -44,58 +69,124 @@ public class AppSettings {
     /* ===================== Getters / Setters ===================== */
 
     public boolean isAlwaysOnTop() { return alwaysOnTop; }
-    public void setAlwaysOnTop(boolean v) { alwaysOnTop = v; }
+    public void setAlwaysOnTop(boolean v) { if (alwaysOnTop != v) { alwaysOnTop = v; changed(); } }
 
     public boolean isStartMinimized() { return startMinimized; }
-    public void setStartMinimized(boolean v) { startMinimized = v; }
+    public void setStartMinimized(boolean v) { if (startMinimized != v) { startMinimized = v; changed(); } }
 
     public String getTheme() { return theme; }
     public void setTheme(String t) {
-        theme = (t == null || t.isBlank()) ? "dark" : t.toLowerCase();
+        String n = (t == null || t.isBlank()) ? "dark" : t.toLowerCase();
+        if (!Objects.equals(theme, n)) { theme = n; changed(); }
     }
 
     public int getFontSize() { return fontSize; }
-    public void setFontSize(int v) { fontSize = clamp(v, 10, 36); }
+    public void setFontSize(int v) {
+        int n = clamp(v, 10, 36);
+        if (fontSize != n) { fontSize = n; changed(); }
+    }
 
     public int getLineSpacing() { return lineSpacing; }
-    public void setLineSpacing(int v) { lineSpacing = clamp(v, 12, 40); }
+    public void setLineSpacing(int v) {
+        int n = clamp(v, 12, 40);
+        if (lineSpacing != n) { lineSpacing = n; changed(); }
+    }
 
     /** Zoom em % (50..200). */
     public int getZoomPercent() { return zoomPercent; }
-    public void setZoomPercent(int v) { zoomPercent = clamp(v, 50, 200); }
+    public void setZoomPercent(int v) {
+        int n = clamp(v, 50, 200);
+        if (zoomPercent != n) { zoomPercent = n; changed(); }
+    }
 
     /** Intensidade da cor em % (40..100). */
     public int getColorStrengthPercent() { return colorStrengthPercent; }
-    public void setColorStrengthPercent(int v) { colorStrengthPercent = clamp(v, 40, 100); }
+    public void setColorStrengthPercent(int v) {
+        int n = clamp(v, 40, 100);
+        if (colorStrengthPercent != n) { colorStrengthPercent = n; changed(); }
+    }
 
     /** Prioridade/cor (compat). */
     public String getPriorityColor() { return priorityColor; }
     public void setPriorityColor(String c) {
-        priorityColor = (c == null || c.isBlank()) ? "cinza" : c.toLowerCase();
+        String n = (c == null || c.isBlank()) ? "cinza" : c.toLowerCase();
+        if (!Objects.equals(priorityColor, n)) { priorityColor = n; changed(); }
+    }
+
+    /** Notas em modo diário (append-only) em vez de regravar o arquivo inteiro. */
+    public boolean isNotesJournal() { return notesJournal; }
+    public void setNotesJournal(boolean v) { if (notesJournal != v) { notesJournal = v; changed(); } }
+
+    public String getActiveNoteId() { return activeNoteId; }
+    public void setActiveNoteId(String id) {
+        String n = (id == null || !id.matches("[A-Za-z0-9_-]{1,40}")) ? "main" : id;
+        if (!Objects.equals(activeNoteId, n)) { activeNoteId = n; changed(); }
+    }
+
+    public int getCaretLine() { return caretLine; }
+    public void setCaretLine(int v) {
+        int n = Math.max(-1, v);
+        if (caretLine != n) { caretLine = n; changed(); }
+    }
+
+    public boolean isAutoBackup() { return autoBackup; }
+    public void setAutoBackup(boolean v) { if (autoBackup != v) { autoBackup = v; changed(); } }
+
+    /** Retenção avô-pai-filho dos backups. */
+    public int getBackupKeepLast() { return backupKeepLast; }
+    public void setBackupKeepLast(int v) {
+        int n = clamp(v, 1, 500);
+        if (backupKeepLast != n) { backupKeepLast = n; changed(); }
+    }
+
+    public int getBackupKeepHourly() { return backupKeepHourly; }
+    public void setBackupKeepHourly(int v) {
+        int n = clamp(v, 0, 720);
+        if (backupKeepHourly != n) { backupKeepHourly = n; changed(); }
+    }
+
+    public int getBackupKeepDaily() { return backupKeepDaily; }
+    public void setBackupKeepDaily(int v) {
+        int n = clamp(v, 0, 365);
+        if (backupKeepDaily != n) { backupKeepDaily = n; changed(); }
+    }
+
+    public int getBackupKeepWeekly() { return backupKeepWeekly; }
+    public void setBackupKeepWeekly(int v) {
+        int n = clamp(v, 0, 260);
+        if (backupKeepWeekly != n) { backupKeepWeekly = n; changed(); }
+    }
+
+    public int getBackupKeepMonthly() { return backupKeepMonthly; }
+    public void setBackupKeepMonthly(int v) {
+        int n = clamp(v, 0, 120);
+        if (backupKeepMonthly != n) { backupKeepMonthly = n; changed(); }
     }
 
     /* --------- legado (compat) --------- */
     public Point getNoteWindowLocation() { return noteWindowLocation; }
-    public void setNoteWindowLocation(Point p) { noteWindowLocation = p; }
+    public void setNoteWindowLocation(Point p) { if (!Objects.equals(noteWindowLocation, p)) { noteWindowLocation = p; changed(); } }
 
     public Dimension getNoteWindowSize() { return noteWindowSize; }
     public void setNoteWindowSize(Dimension d) {
         if (d != null) {
             int w = Math.max(240, d.width);
             int h = Math.max(160, d.height);
-            noteWindowSize = new Dimension(w, h);
+            Dimension n = new Dimension(w, h);
+            if (!Objects.equals(noteWindowSize, n)) { noteWindowSize = n; changed(); }
         }
     }
 
     /* --------- posição/tamanho atuais --------- */
     public Point getBarLocation() { return barLocation; }
-    public void setBarLocation(Point p) { barLocation = p; }
+    public void setBarLocation(Point p) { if (!Objects.equals(barLocation, p)) { barLocation = p; changed(); } }
 
     public String getBarOrientation() { return barOrientation; }
     public void setBarOrientation(String o) {
         if (o == null) o = "horizontal";
         String v = o.toLowerCase();
-        barOrientation = "vertical".equals(v) ? "vertical" : "horizontal";
+        String n = "vertical".equals(v) ? "vertical" : "horizontal";
+        if (!Objects.equals(barOrientation, n)) { barOrientation = n; changed(); }
     }
 
     public Dimension getNotePopupSize() { return notePopupSize; }
@@ -103,10 +194,22 @@ public class AppSettings {
         if (d != null) {
             int w = Math.max(200, d.width);
             int h = Math.max(160, d.height);
-            notePopupSize = new Dimension(w, h);
+            Dimension n = new Dimension(w, h);
+            if (!Objects.equals(notePopupSize, n)) { notePopupSize = n; changed(); }
         }
     }
 
+    /* ===================== Dirty tracking ===================== */
+
+    /** Muda a cada alteração real de preferência. */
+    public int revision() { return revision; }
+
+    /**
+     * Conta uma mudança; os setters chamam depois de trocar o campo: quem lê a revisão nova
+     * (volatile, SettingsStore em outra thread) vê também o valor novo, e nunca grava o antigo como "salvo".
+     */
+    private void changed() { revision++; }
+
     /* ===================== Util ===================== */
     private static int clamp(int v, int min, int max) {
         return Math.max(min, Math.min(max, v));
@@ -0,0 +1,323 @@
+package org.docknotas.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.IsoFields;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Backups deduplicados por blocos definidos pelo conteúdo (content-defined chunking).
+ * – Rolling hash (gear) decide onde cortar; o corte cai sempre depois de um '\n',
+ *   então uma edição só muda os blocos em volta dela
+ * – Cada bloco é gravado uma vez em chunks/xx/&lt;sha-256&gt;; um snapshot é só a lista de blocos,
+ *   em snapshots/&lt;nota&gt;/ (os blocos são compartilhados entre as notas)
+ * – Retenção avô-pai-filho (horas/dias/semanas/meses) e coleta dos blocos sem referência
+ */
+class BackupStore {
+
+    /** Blocos: mínimo, média (~2^13) e máximo, em bytes. */
+    static final int MIN_CHUNK = 2 * 1024;
+    static final int MAX_CHUNK = 64 * 1024;
+    private static final long CUT_MASK = (1L << 13) - 1;
+
+    private static final String MANIFEST_MAGIC = "DNB1";
+    private static final String MANIFEST_EXT = ".manifest";
+
+    /** Tabela do gear hash; semente fixa para os cortes serem os mesmos entre versões. */
+    private static final long[] GEAR = new long[256];
+    static {
+        SplittableRandom r = new SplittableRandom(0x646F636B6E6F7461L);
+        for (int i = 0; i < GEAR.length; i++) GEAR[i] = r.nextLong();
+    }
+
+    /** Quantos snapshots manter: os últimos N, e um por hora, por dia, por semana ISO e por mês. */
+    record Retention(int last, int hourly, int daily, int weekly, int monthly) {}
+
+    /** Resultado de um backup: id do snapshot (0 = nada mudou), blocos e bytes novos gravados. */
+    record Result(long snapshotId, int chunks, int newChunks, long newBytes) {}
+
+    private final Path chunksDir;
+    private final Path snapshotsRoot;
+    private volatile Path snapshotsDir; // da nota ativa (troca sem esperar um backup em andamento)
+
+    BackupStore(Path root, String note) {
+        this.chunksDir = root.resolve("chunks");
+        this.snapshotsRoot = root.resolve("snapshots");
+        useNote(note);
+    }
+
+    /** Passa a listar/restaurar os snapshots da nota {@code note}. */
+    void useNote(String note) {
+        snapshotsDir = snapshotsRoot.resolve(note);
+    }
+
+    /** Snapshots de antes das várias notas (soltos em snapshots/) passam a ser da nota {@code note}. */
+    synchronized void adoptLegacySnapshots(String note) throws IOException {
+        if (!Files.isDirectory(snapshotsRoot)) return;
+        Path target = snapshotsRoot.resolve(note);
+        try (Stream<Path> s = Files.list(snapshotsRoot)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                if (!p.getFileName().toString().endsWith(MANIFEST_EXT)) continue;
+                Files.createDirectories(target);
+                Files.move(p, target.resolve(p.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /* ===================== backup ===================== */
+
+    /**
+     * Grava um snapshot de {@code data} na nota {@code note}: só os blocos que ainda não existem vão para o disco.
+     * Conteúdo idêntico ao último snapshot não gera snapshot novo.
+     */
+    synchronized Result backup(String note, byte[] data, Retention keep) throws IOException {
+        Path dir = snapshotsRoot.resolve(note);
+        Files.createDirectories(chunksDir);
+        Files.createDirectories(dir);
+
+        String whole = sha256Hex(data, 0, data.length);
+        List<Long> ids = snapshotIds(dir);
+        if (!ids.isEmpty()) {
+            Manifest last = readManifest(manifestPath(dir, ids.get(ids.size() - 1)));
+            if (last != null && last.sha.equals(whole) && last.size == data.length) {
+                return new Result(0, last.chunks.size(), 0, 0);
+            }
+        }
+
+        StringBuilder m = new StringBuilder(64 + data.length / 100);
+        m.append(MANIFEST_MAGIC).append(' ').append(data.length).append(' ').append(whole).append('\n');
+        int chunks = 0, fresh = 0;
+        long freshBytes = 0;
+        for (int off = 0; off < data.length; ) {
+            int end = nextCut(data, off, data.length);
+            String h = sha256Hex(data, off, end - off);
+            Path p = chunkPath(h);
+            if (!Files.exists(p)) {
+                Storage.writeAtomically(p, Arrays.copyOfRange(data, off, end));
+                fresh++;
+                freshBytes += end - off;
+            }
+            m.append(h).append(' ').append(end - off).append('\n');
+            chunks++;
+            off = end;
+        }
+
+        // id = instante (ms); nunca repete nem volta no tempo
+        long id = Math.max(System.currentTimeMillis(), ids.isEmpty() ? 0 : ids.get(ids.size() - 1) + 1);
+        Storage.writeAtomically(manifestPath(dir, id), m.toString().getBytes(StandardCharsets.US_ASCII));
+
+        prune(dir, keep);
+        return new Result(id, chunks, fresh, freshBytes);
+    }
+
+    /**
+     * Fim do bloco que começa em {@code from}: primeiro '\n' depois de o hash pedir corte.
+     * Sem '\n' até MAX_CHUNK, corta numa fronteira de caractere UTF-8.
+     */
+    static int nextCut(byte[] b, int from, int to) {
+        int max = Math.min(to, from + MAX_CHUNK);
+        if (to - from <= MIN_CHUNK) return to;
+        long h = 0;
+        boolean armed = false;
+        int lastNl = -1;
+        for (int i = from; i < max; i++) {
+            byte c = b[i];
+            h = (h << 1) + GEAR[c & 0xFF];
+            if (c == '\n') {
+                lastNl = i;
+                if (armed) return i + 1;
+            }
+            if (!armed && i - from >= MIN_CHUNK && (h & CUT_MASK) == 0) armed = true;
+        }
+        if (max == to) return to;
+        if (lastNl >= from + MIN_CHUNK) return lastNl + 1;
+        int cut = max;
+        while (cut > from + 1 && (b[cut] & 0xC0) == 0x80) cut--; // não partir um caractere
+        return cut;
+    }
+
+    /* ===================== leitura ===================== */
+
+    /** Ids (instante em ms) dos snapshots, do mais antigo ao mais novo. */
+    synchronized List<Long> snapshotIds() throws IOException {
+        return snapshotIds(snapshotsDir);
+    }
+
+    private static List<Long> snapshotIds(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            s.forEach(p -> {
+                String n = p.getFileName().toString();
+                if (!n.endsWith(MANIFEST_EXT)) return;
+                try { ids.add(Long.parseLong(n.substring(0, n.length() - MANIFEST_EXT.length()))); }
+                catch (NumberFormatException ignored) {}
+            });
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /** Remonta o conteúdo de um snapshot (confere o hash de cada bloco). */
+    synchronized byte[] restore(long id) throws IOException {
+        Manifest m = readManifest(id);
+        if (m == null) throw new IOException("Backup não encontrado: " + id);
+        byte[] out = new byte[(int) m.size];
+        int pos = 0;
+        for (int i = 0; i < m.chunks.size(); i++) {
+            byte[] c = Files.readAllBytes(chunkPath(m.chunks.get(i)));
+            if (c.length != m.lengths.get(i) || !sha256Hex(c, 0, c.length).equals(m.chunks.get(i))) {
+                throw new IOException("Bloco corrompido no backup " + id);
+            }
+            System.arraycopy(c, 0, out, pos, c.length);
+            pos += c.length;
+        }
+        return out;
+    }
+
+    /** Hashes dos blocos de um snapshot, em ordem. */
+    synchronized List<String> chunksOf(long id) throws IOException {
+        Manifest m = readManifest(id);
+        return m == null ? List.of() : m.chunks;
+    }
+
+    Path chunkPath(String hash) {
+        return chunksDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static Path manifestPath(Path dir, long id) {
+        return dir.resolve(id + MANIFEST_EXT);
+    }
+
+    private static final class Manifest {
+        long size;
+        String sha;
+        final List<String> chunks = new ArrayList<>();
+        final List<Integer> lengths = new ArrayList<>();
+    }
+
+    private Manifest readManifest(long id) {
+        return readManifest(manifestPath(snapshotsDir, id));
+    }
+
+    private static Manifest readManifest(Path file) {
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+            if (lines.isEmpty()) return null;
+            String[] h = lines.get(0).split(" ");
+            if (h.length != 3 || !MANIFEST_MAGIC.equals(h[0])) return null;
+            Manifest m = new Manifest();
+            m.size = Long.parseLong(h[1]);
+            m.sha = h[2];
+            for (int i = 1; i < lines.size(); i++) {
+                String[] c = lines.get(i).split(" ");
+                if (c.length != 2) continue;
+                m.chunks.add(c[0]);
+                m.lengths.add(Integer.parseInt(c[1]));
+            }
+            return m;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /* ===================== retenção + GC ===================== */
+
+    /** Aplica a retenção e apaga os blocos que nenhum snapshot restante usa. */
+    synchronized void prune(Retention keep) throws IOException {
+        prune(snapshotsDir, keep);
+    }
+
+    private void prune(Path dir, Retention keep) throws IOException {
+        List<Long> ids = snapshotIds(dir);
+        if (ids.isEmpty()) return;
+
+        Set<Long> kept = retained(ids, keep, ZoneId.systemDefault());
+        boolean removed = false;
+        for (long id : ids) {
+            if (!kept.contains(id)) { Files.deleteIfExists(manifestPath(dir, id)); removed = true; }
+        }
+        if (removed) collectGarbage();
+    }
+
+    /** Snapshots a manter: os últimos N e o mais novo de cada hora/dia/semana/mês, nas N faixas mais recentes. */
+    static Set<Long> retained(List<Long> ids, Retention keep, ZoneId zone) {
+        List<Long> newestFirst = new ArrayList<>(ids);
+        newestFirst.sort(Comparator.reverseOrder());
+
+        Set<Long> kept = new HashSet<>();
+        kept.add(newestFirst.get(0)); // sempre o último
+        kept.addAll(newestFirst.subList(0, Math.min(newestFirst.size(), keep.last())));
+        keepPerBucket(newestFirst, keep.hourly(),  zone, t -> t.getYear() * 1_000_000L + t.getDayOfYear() * 100L + t.getHour(), kept);
+        keepPerBucket(newestFirst, keep.daily(),   zone, t -> t.getYear() * 1_000L + t.getDayOfYear(), kept);
+        keepPerBucket(newestFirst, keep.weekly(),  zone, t -> t.get(IsoFields.WEEK_BASED_YEAR) * 100L + t.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR), kept);
+        keepPerBucket(newestFirst, keep.monthly(), zone, t -> t.getYear() * 100L + t.getMonthValue(), kept);
+        return kept;
+    }
+
+    private interface Bucket { long of(LocalDateTime t); }
+
+    private static void keepPerBucket(List<Long> newestFirst, int count, ZoneId zone, Bucket bucket, Set<Long> kept) {
+        long lastBucket = Long.MIN_VALUE;
+        int buckets = 0;
+        for (long id : newestFirst) {
+            if (buckets >= count) break;
+            long b = bucket.of(LocalDateTime.ofInstant(Instant.ofEpochMilli(id), zone));
+            if (b != lastBucket) {
+                kept.add(id);
+                lastBucket = b;
+                buckets++;
+            }
+        }
+    }
+
+    /** Blocos usados por algum snapshot, de qualquer nota; null se algum manifesto estiver ilegível. */
+    synchronized Set<String> referencedChunks() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        if (!Files.isDirectory(snapshotsRoot)) return referenced;
+        try (Stream<Path> s = Files.walk(snapshotsRoot, 2)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                if (!p.getFileName().toString().endsWith(MANIFEST_EXT)) continue;
+                Manifest m = readManifest(p);
+                if (m == null) return null;
+                referenced.addAll(m.chunks);
+            }
+        }
+        return referenced;
+    }
+
+    private void collectGarbage() throws IOException {
+        Set<String> referenced = referencedChunks();
+        if (referenced == null) return; // manifesto ilegível: melhor não apagar nada
+        if (!Files.isDirectory(chunksDir)) return;
+        try (Stream<Path> s = Files.walk(chunksDir, 2)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                if (Files.isRegularFile(p) && !referenced.contains(p.getFileName().toString())) {
+                    try { Files.deleteIfExists(p); } catch (IOException ignored) {}
+                }
+            }
+        }
+    }
+
+    /* ===================== util ===================== */
+
+    /** SHA-256 em hexadecimal: o nome do bloco (também usado pelo SearchIndex). */
+    static String sha256Hex(byte[] b, int off, int len) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(b, off, len);
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
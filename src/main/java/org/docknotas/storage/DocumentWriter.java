@@ -0,0 +1,199 @@
+package org.docknotas.storage;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * Texto de um Document gravado em UTF-8 direto num canal, sem String nem byte[] do tamanho da nota.
+ * – Sob o read-lock só se copiam chars (getText com partial return, folha a folha); codificar e gravar
+ *   no canal é sempre fora dele: um disco lento não trava a digitação
+ * – CharsetEncoder, buffer de cópia e ByteBuffer direto reaproveitados entre gravações
+ * – Copiado em trechos de CHUNK chars, um read-lock por trecho, com memória fixa.
+ *   Se o documento mudar no meio, a passada desiste (false: o NoteStore não troca o valor) e quem grava tenta de novo,
+ *   até OPTIMISTIC_PASSES vezes; depois lockWhole(): a passada seguinte copia tudo sob um read-lock só
+ *   (memória do tamanho do texto, só quando a digitação não deixou as outras terminarem) e nunca desiste
+ * – Tamanho e CRC32 do que foi gravado saem junto (cabeçalho do diário)
+ */
+final class DocumentWriter implements NoteStore.ValueWriter {
+
+    /** Chars copiados por read-lock. */
+    private static final int CHUNK = 64 * 1024;
+    /** Passadas em trechos antes de ler com o documento travado. */
+    static final int OPTIMISTIC_PASSES = 2;
+
+    /** Encoder e buffers de uma gravação; um fica guardado para a próxima. */
+    private static final class Codec {
+        final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)       // surrogate solto vira '?', como no getBytes
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final char[] copy = new char[CHUNK];
+        final CharBuffer chars = CharBuffer.allocate(8 * 1024);
+        final ByteBuffer bytes = ByteBuffer.allocateDirect(64 * 1024);
+    }
+
+    private static final AtomicReference<Codec> POOL = new AtomicReference<>();
+
+    private interface IoRunnable { void run() throws IOException; }
+
+    private final Document doc;
+    private final Runnable atStart;
+    private boolean whole;
+    private volatile boolean changed;
+
+    private long length;
+    private int crc;
+
+    /** @param atStart roda sob o read-lock no instante que o texto gravado retrata (uma vez por passada) */
+    DocumentWriter(Document doc, Runnable atStart) {
+        this.doc = doc;
+        this.atStart = atStart;
+    }
+
+    /** As próximas passadas copiam o documento inteiro sob um read-lock só: writeTo só falha por IOException. */
+    void lockWhole() { whole = true; }
+
+    /** Bytes gravados pela última passada completa. */
+    long length() { return length; }
+
+    /** CRC32 desses bytes. */
+    int crc() { return crc; }
+
+    @Override public boolean writeTo(WritableByteChannel out) throws IOException {
+        Codec c = POOL.getAndSet(null);
+        if (c == null) c = new Codec();
+        DocumentListener watch = new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { changed = true; }
+            @Override public void removeUpdate(DocumentEvent e) { changed = true; }
+            @Override public void changedUpdate(DocumentEvent e) { }
+        };
+        changed = false;
+        doc.addDocumentListener(watch);
+        try {
+            Pass p = new Pass(c, out);
+            if (whole) {
+                List<char[]> all = new ArrayList<>();
+                locked(() -> {
+                    p.begin();
+                    while (p.pos < p.end) all.add(p.copy(new char[Math.min(CHUNK, p.end - p.pos)]));
+                });
+                for (char[] a : all) p.put(a, 0, a.length);
+            } else {
+                locked(p::begin);
+                char[] buf = c.copy;
+                int[] n = new int[1];
+                while (!changed && p.pos < p.end) {
+                    n[0] = 0;
+                    locked(() -> { if (!changed) n[0] = p.copy(buf, Math.min(CHUNK, p.end - p.pos)); });
+                    p.put(buf, 0, n[0]); // fora do lock: encoder e canal
+                }
+                if (changed) return false;
+            }
+            p.finish();
+            length = p.count;
+            crc = (int) p.crc.getValue();
+            return true;
+        } finally {
+            doc.removeDocumentListener(watch);
+            c.encoder.reset();
+            c.chars.clear();
+            c.bytes.clear();
+            POOL.set(c);
+        }
+    }
+
+    /** r sob o read-lock do documento (render), com o IOException de volta a quem chamou. */
+    private void locked(IoRunnable r) throws IOException {
+        IOException[] err = new IOException[1];
+        doc.render(() -> {
+            try { r.run(); } catch (IOException e) { err[0] = e; }
+        });
+        if (err[0] != null) throw err[0];
+    }
+
+    /** Uma passada pelo documento: chars copiados → encoder → buffer direto → canal. */
+    private final class Pass {
+        final CharsetEncoder encoder;
+        final CharBuffer chars;
+        final ByteBuffer bytes;
+        final WritableByteChannel out;
+        final Segment seg = new Segment();
+        final CRC32 crc = new CRC32();
+        int pos, end;
+        long count;
+
+        Pass(Codec c, WritableByteChannel out) {
+            this.encoder = c.encoder;
+            this.chars = c.chars;
+            this.bytes = c.bytes;
+            this.out = out;
+            seg.setPartialReturn(true);
+        }
+
+        void begin() {
+            atStart.run();
+            end = doc.getLength();
+        }
+
+        /** Copia os próximos dst.length chars para dst; sob o read-lock (os trechos apontam para o conteúdo vivo). */
+        char[] copy(char[] dst) throws IOException {
+            copy(dst, dst.length);
+            return dst;
+        }
+
+        /** Copia os próximos n chars para o começo de dst; sob o read-lock. */
+        int copy(char[] dst, int n) throws IOException {
+            for (int at = 0; at < n; ) {
+                try { doc.getText(pos, n - at, seg); }
+                catch (BadLocationException e) { throw new IOException(e); }
+                System.arraycopy(seg.array, seg.offset, dst, at, seg.count);
+                at += seg.count;
+                pos += seg.count;
+            }
+            return n;
+        }
+
+        /** Passa pelo CharBuffer: um surrogate alto no fim de um trecho espera o par no próximo. */
+        void put(char[] a, int off, int n) throws IOException {
+            while (n > 0) {
+                int k = Math.min(n, chars.remaining());
+                chars.put(a, off, k);
+                off += k;
+                n -= k;
+                chars.flip();
+                while (encoder.encode(chars, bytes, false).isOverflow()) drain();
+                chars.compact();
+            }
+        }
+
+        void finish() throws IOException {
+            chars.flip();
+            while (encoder.encode(chars, bytes, true).isOverflow()) drain();
+            while (encoder.flush(bytes).isOverflow()) drain();
+            drain();
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            count += bytes.remaining();
+            int start = bytes.position();
+            crc.update(bytes);
+            bytes.position(start);
+            while (bytes.hasRemaining()) out.write(bytes);
+            bytes.clear();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.docknotas.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * NoteStore de um arquivo por chave dentro de ~/.docknotas (o formato de sempre).
+ * – put: temporário + rename atômico (também em fluxo, com ValueWriter)
+ * – append: canal aberto sob demanda para o último diário usado
+ */
+public class FlatFileNoteStore implements NoteStore {
+
+    private final Path root;
+
+    private String appendKey;     // chave do canal de append aberto
+    private FileChannel appendCh;
+
+    public FlatFileNoteStore(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override public byte[] get(String key) throws IOException {
+        Path f = path(key);
+        return Files.exists(f) ? Files.readAllBytes(f) : null;
+    }
+
+    @Override public byte[] head(String key, int max) throws IOException {
+        Path f = path(key);
+        if (!Files.exists(f)) return null;
+        try (InputStream in = Files.newInputStream(f)) { return in.readNBytes(max); }
+    }
+
+    @Override public synchronized void put(String key, byte[] value) throws IOException {
+        if (key.equals(appendKey)) closeAppend();
+        Storage.writeAtomically(path(key), value);
+    }
+
+    @Override public synchronized boolean put(String key, ValueWriter w) throws IOException {
+        if (key.equals(appendKey)) closeAppend();
+        return Storage.writeAtomically(path(key), w);
+    }
+
+    @Override public synchronized void append(String key, byte[] data) throws IOException {
+        if (!key.equals(appendKey)) {
+            closeAppend();
+            Path f = path(key);
+            Files.createDirectories(f.getParent());
+            appendCh = FileChannel.open(f, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            appendKey = key;
+        }
+        ByteBuffer b = ByteBuffer.wrap(data);
+        while (b.hasRemaining()) appendCh.write(b);
+        appendCh.force(false);
+    }
+
+    @Override public synchronized void delete(String key) throws IOException {
+        if (key.equals(appendKey)) closeAppend();
+        Files.deleteIfExists(path(key));
+    }
+
+    @Override public boolean exists(String key) {
+        return Files.exists(path(key));
+    }
+
+    @Override public long size(String key) {
+        try { return Files.size(path(key)); } catch (IOException e) { return 0; }
+    }
+
+    @Override public long modified(String key) {
+        try { return Files.getLastModifiedTime(path(key)).toMillis(); } catch (IOException e) { return 0; }
+    }
+
+    /** Só lista a pasta do prefixo (p.ex. "notes/"), sem descer em subpastas. */
+    @Override public List<String> keys(String prefix) throws IOException {
+        int slash = prefix.lastIndexOf('/');
+        String dir = prefix.substring(0, slash + 1);
+        List<String> out = new ArrayList<>();
+        Path d = path(dir.isEmpty() ? "." : dir);
+        if (!Files.isDirectory(d)) return out;
+        try (Stream<Path> s = Files.list(d)) {
+            s.filter(Files::isRegularFile)
+             .map(p -> dir + p.getFileName())
+             .filter(k -> k.startsWith(prefix) && !k.endsWith(".tmp"))
+             .sorted()
+             .forEach(out::add);
+        }
+        return out;
+    }
+
+    @Override public Path file(String key) {
+        Path f = path(key);
+        return Files.exists(f) ? f : null;
+    }
+
+    @Override public synchronized void close() {
+        closeAppend();
+    }
+
+    private void closeAppend() {
+        if (appendCh == null) return;
+        try { appendCh.close(); } catch (IOException ignored) {}
+        appendCh = null;
+        appendKey = null;
+    }
+
+    private Path path(String key) {
+        Path p = root.resolve(key).normalize();
+        if (!p.startsWith(root)) throw new IllegalArgumentException("chave fora da pasta: " + key);
+        return p;
+    }
+}
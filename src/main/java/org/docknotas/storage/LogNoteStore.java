@@ -0,0 +1,592 @@
+package org.docknotas.storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * NoteStore log-structured (no estilo Bitcask) em ~/.docknotas/store.
+ * – Toda gravação é um registro acrescentado ao segmento ativo (<n>.seg); nada é reescrito no lugar
+ * – Diretório de chaves em memória: chave → registros com o valor (put recomeça a lista, append acrescenta)
+ * – Registro com CRC32: na abertura os segmentos são relidos e a cauda quebrada do último é cortada
+ * – put em fluxo: o valor vai para um temporário fora do lock; sob o lock só a cópia para o segmento
+ * – Segmentos fechados com mais lixo que dados são compactados (merge) numa thread de fundo;
+ *   o resultado ganha um .hint para a próxima abertura não precisar ler os valores
+ */
+public class LogNoteStore implements NoteStore {
+
+    /** Tamanho a partir do qual o segmento ativo é fechado e outro começa. */
+    private static final long SEGMENT_BYTES = 4L * 1024 * 1024;
+    /** Merge só quando os segmentos fechados somam isso (e mais da metade é lixo). */
+    private static final long MERGE_MIN_BYTES = 1024 * 1024;
+
+    private static final byte PUT = 'P', APPEND = 'A', DELETE = 'D', MERGED = 'M';
+    /** crc(4) tipo(1) instante(8) tamanho da chave(2) tamanho do valor(4) */
+    private static final int HEADER = 4 + 1 + 8 + 2 + 4;
+    private static final int HINT_MAGIC = 0x444E4831; // "DNH1"
+    private static final byte[] NONE = new byte[0];
+
+    private static final class Segment {
+        final long id;
+        final Path file;
+        FileChannel ch;
+        long size;  // bytes gravados
+        long live;  // bytes de registros ainda em uso
+
+        Segment(long id, Path file, FileChannel ch) throws IOException {
+            this.id = id; this.file = file; this.ch = ch; this.size = ch.size();
+        }
+    }
+
+    /** Um registro com (parte de) um valor. */
+    private record Part(Segment seg, long pos, int recLen, int valueOff) {
+        int valueLen() { return recLen - valueOff; }
+    }
+
+    private static final class Entry {
+        final List<Part> parts = new ArrayList<>(1);
+        long size, modified;
+    }
+
+    private final Path dir;
+    private final TreeMap<String, Entry> keydir = new TreeMap<>();
+    private final List<Segment> segments = new ArrayList<>(); // por id; o último é o ativo
+    private Segment active;
+    private boolean merging, closed;
+
+    private final ExecutorService mergeExec = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "docknotas-store-merge");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    public LogNoteStore(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        open();
+    }
+
+    /* ===================== leitura ===================== */
+
+    @Override public synchronized byte[] get(String key) throws IOException {
+        Entry e = keydir.get(key);
+        if (e == null) return null;
+        byte[] out = new byte[Math.toIntExact(e.size)];
+        int at = 0;
+        for (Part p : e.parts) at += readValue(p, out, at);
+        return out;
+    }
+
+    @Override public synchronized byte[] head(String key, int max) throws IOException {
+        Entry e = keydir.get(key);
+        if (e == null) return null;
+        byte[] out = new byte[(int) Math.min(max, e.size)];
+        int at = 0;
+        for (Part p : e.parts) {
+            if (at == out.length) break;
+            ByteBuffer b = ByteBuffer.wrap(out, at, Math.min(p.valueLen(), out.length - at));
+            readFully(p.seg.ch, b, p.pos + p.valueOff);
+            at = b.position();
+        }
+        return out;
+    }
+
+    @Override public synchronized boolean exists(String key) {
+        return keydir.containsKey(key);
+    }
+
+    @Override public synchronized long size(String key) {
+        Entry e = keydir.get(key);
+        return e == null ? 0 : e.size;
+    }
+
+    @Override public synchronized long modified(String key) {
+        Entry e = keydir.get(key);
+        return e == null ? 0 : e.modified;
+    }
+
+    @Override public synchronized List<String> keys(String prefix) {
+        return new ArrayList<>(keydir.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet());
+    }
+
+    /** Lê o registro inteiro, confere o CRC e copia o valor para {@code out}. */
+    private static int readValue(Part p, byte[] out, int at) throws IOException {
+        ByteBuffer rec = ByteBuffer.allocate(p.recLen);
+        readFully(p.seg.ch, rec, p.pos);
+        if (rec.getInt(0) != crc(rec.array(), 4, p.recLen - 4)) {
+            throw new IOException("registro corrompido em " + p.seg.file.getFileName() + " @" + p.pos);
+        }
+        System.arraycopy(rec.array(), p.valueOff, out, at, p.valueLen());
+        return p.valueLen();
+    }
+
+    /* ===================== escrita ===================== */
+
+    @Override public synchronized void put(String key, byte[] value) throws IOException {
+        long now = System.currentTimeMillis();
+        Part p = write(PUT, key, value, now);
+        apply(PUT, key, p, now);
+        maybeMerge();
+    }
+
+    /**
+     * O ValueWriter escreve num temporário da pasta (sem o lock, sem o valor em memória); o CRC do registro
+     * sai de uma releitura do temporário, e sob o lock só o cabeçalho e um transferTo vão para o segmento.
+     */
+    @Override public boolean put(String key, ValueWriter w) throws IOException {
+        byte[] k = keyBytes(key);
+        Path tmp = Files.createTempFile(dir, "put.", ".tmp"); // a abertura apaga sobras
+        try {
+            try (FileChannel stage = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (!w.writeTo(stage)) return false;
+                long len = stage.size();
+                if (len > Integer.MAX_VALUE - HEADER - k.length) throw new IOException("valor grande demais");
+                long now = System.currentTimeMillis();
+                ByteBuffer head = header(PUT, now, k, (int) len);
+                CRC32 c = new CRC32();
+                c.update(head.array(), 4, head.limit() - 4);
+                ByteBuffer b = ByteBuffer.allocate(64 * 1024);
+                for (long at = 0; at < len; ) {
+                    b.clear();
+                    int n = stage.read(b, at);
+                    if (n < 0) throw new EOFException();
+                    b.flip();
+                    c.update(b);
+                    at += n;
+                }
+                head.putInt(0, (int) c.getValue());
+                synchronized (this) {
+                    Segment seg = writable();
+                    long pos = seg.size;
+                    writeFully(seg.ch, head, pos);
+                    seg.ch.position(pos + head.limit());
+                    for (long at = 0; at < len; ) at += stage.transferTo(at, len - at, seg.ch);
+                    seg.ch.force(false);
+                    seg.size += head.limit() + len;
+                    apply(PUT, key, new Part(seg, pos, (int) (head.limit() + len), head.limit()), now);
+                    maybeMerge();
+                }
+                return true;
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override public synchronized void append(String key, byte[] data) throws IOException {
+        long now = System.currentTimeMillis();
+        Part p = write(APPEND, key, data, now);
+        apply(APPEND, key, p, now);
+        maybeMerge();
+    }
+
+    @Override public synchronized void delete(String key) throws IOException {
+        if (!keydir.containsKey(key)) return;
+        long now = System.currentTimeMillis();
+        apply(DELETE, key, write(DELETE, key, NONE, now), now);
+        maybeMerge();
+    }
+
+    private Part write(byte type, String key, byte[] value, long now) throws IOException {
+        writable();
+        byte[] k = keyBytes(key);
+        ByteBuffer rec = record(type, now, k, value);
+        long pos = active.size;
+        writeFully(active.ch, rec, pos);
+        active.ch.force(false);
+        active.size += rec.limit();
+        return new Part(active, pos, rec.limit(), HEADER + k.length);
+    }
+
+    /** Segmento ativo para a próxima gravação (troca por um novo quando passa de SEGMENT_BYTES). */
+    private Segment writable() throws IOException {
+        if (closed) throw new IOException("store fechado");
+        if (active.size >= SEGMENT_BYTES) {
+            active = openSegment(active.id + 1);
+            segments.add(active);
+        }
+        return active;
+    }
+
+    private static byte[] keyBytes(String key) throws IOException {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        if (k.length > 0xFFFF) throw new IOException("chave grande demais");
+        return k;
+    }
+
+    /** Atualiza o diretório de chaves (gravação nova, releitura de segmento ou hint). */
+    private void apply(byte type, String key, Part p, long time) {
+        switch (type) {
+            case PUT -> {
+                Entry e = keydir.computeIfAbsent(key, k -> new Entry());
+                release(e);
+                add(e, p, time);
+            }
+            case APPEND -> add(keydir.computeIfAbsent(key, k -> new Entry()), p, time);
+            case DELETE -> {
+                Entry e = keydir.remove(key);
+                if (e != null) release(e);
+            }
+            default -> { } // MERGED: marcador, sem dados
+        }
+    }
+
+    private static void add(Entry e, Part p, long time) {
+        e.parts.add(p);
+        e.size += p.valueLen();
+        e.modified = time;
+        p.seg.live += p.recLen;
+    }
+
+    /** Os registros da chave viraram lixo. */
+    private static void release(Entry e) {
+        for (Part p : e.parts) p.seg.live -= p.recLen;
+        e.parts.clear();
+        e.size = 0;
+    }
+
+    /* ===================== abertura / recuperação ===================== */
+
+    private void open() throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) s::iterator) {
+                String n = f.getFileName().toString();
+                if (n.endsWith(".merge") || n.endsWith(".tmp")) Files.deleteIfExists(f); // merge interrompido
+                else if (n.endsWith(".seg")) {
+                    try { files.put(Long.parseLong(n.substring(0, n.length() - 4)), f); }
+                    catch (NumberFormatException ignored) {}
+                }
+            }
+        }
+
+        // queda entre o rename do merge e a remoção dos segmentos antigos: o resultado já os cobre
+        for (Long id : new ArrayList<>(files.descendingKeySet())) {
+            Path f = files.get(id);
+            if (f == null) continue;
+            long from = mergedFrom(f);
+            if (from < 0) continue;
+            for (Long old : new ArrayList<>(files.subMap(from, true, id, false).keySet())) {
+                Files.deleteIfExists(files.remove(old));
+                Files.deleteIfExists(hintFile(old));
+            }
+        }
+
+        for (Map.Entry<Long, Path> f : files.entrySet()) {
+            Segment seg = openSegment(f.getKey());
+            segments.add(seg);
+            if (!loadHint(seg)) replay(seg, f.getKey().equals(files.lastKey()));
+        }
+
+        Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last == null || last.size >= SEGMENT_BYTES) {
+            last = openSegment(last == null ? 1 : last.id + 1);
+            segments.add(last);
+        }
+        active = last;
+        maybeMerge();
+    }
+
+    /** Relê um segmento registro a registro; no último, a cauda inválida é cortada. */
+    private void replay(Segment seg, boolean last) throws IOException {
+        long pos = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(seg.file), 1 << 16))) {
+            byte[] h = new byte[HEADER];
+            while (pos + HEADER <= seg.size) {
+                in.readFully(h);
+                ByteBuffer hb = ByteBuffer.wrap(h);
+                int crc = hb.getInt();
+                byte type = hb.get();
+                long time = hb.getLong();
+                int klen = hb.getShort() & 0xFFFF;
+                int vlen = hb.getInt();
+                if (vlen < 0 || pos + HEADER + klen + vlen > seg.size) break;
+
+                byte[] body = new byte[klen + vlen];
+                in.readFully(body);
+                CRC32 c = new CRC32();
+                c.update(h, 4, HEADER - 4);
+                c.update(body);
+                if ((int) c.getValue() != crc) break;
+
+                String key = new String(body, 0, klen, StandardCharsets.UTF_8);
+                apply(type, key, new Part(seg, pos, HEADER + klen + vlen, HEADER + klen), time);
+                pos += HEADER + klen + vlen;
+            }
+        } catch (EOFException ignored) {}
+
+        if (pos < seg.size && last) {
+            seg.ch.truncate(pos);
+            seg.size = pos;
+        }
+    }
+
+    /** Se o segmento começa com o marcador de merge, o primeiro id que ele substitui; senão -1. */
+    private static long mergedFrom(Path f) {
+        try (InputStream in = Files.newInputStream(f)) {
+            byte[] r = in.readNBytes(HEADER + 8);
+            if (r.length < HEADER + 8 || r[4] != MERGED) return -1;
+            ByteBuffer b = ByteBuffer.wrap(r);
+            if (b.getInt(0) != crc(r, 4, r.length - 4) || b.getShort(13) != 0 || b.getInt(15) != 8) return -1;
+            return b.getLong(HEADER);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /* ===================== merge ===================== */
+
+    private void maybeMerge() {
+        if (merging || closed) return;
+        long size = 0, live = 0;
+        for (Segment s : segments) {
+            if (s == active) continue;
+            size += s.size;
+            live += s.live;
+        }
+        if (size < MERGE_MIN_BYTES || live * 2 > size) return;
+        merging = true;
+        mergeExec.execute(() -> {
+            try { merge(); }
+            catch (IOException ignored) { /* os segmentos antigos continuam valendo */ }
+            finally { synchronized (this) { merging = false; } }
+        });
+    }
+
+    private record Pending(List<Part> parts, long modified) {}
+    private record Written(long pos, int recLen, int valueOff, long modified) {}
+
+    /**
+     * Regrava os valores vivos de todos os segmentos fechados num só (com o id do mais novo deles).
+     * A cópia roda fora do lock; só a troca final bloqueia leitores e escritores.
+     */
+    private void merge() throws IOException {
+        List<Segment> old;
+        Map<String, Pending> todo = new LinkedHashMap<>();
+        synchronized (this) {
+            if (closed) return;
+            old = new ArrayList<>(segments.subList(0, segments.size() - 1));
+            if (old.isEmpty()) return;
+            Set<Segment> inOld = Collections.newSetFromMap(new IdentityHashMap<>());
+            inOld.addAll(old);
+            for (Map.Entry<String, Entry> kv : keydir.entrySet()) {
+                // partes antigas vêm sempre antes das do segmento ativo
+                List<Part> prefix = new ArrayList<>();
+                for (Part p : kv.getValue().parts) {
+                    if (!inOld.contains(p.seg)) break;
+                    prefix.add(p);
+                }
+                if (!prefix.isEmpty()) todo.put(kv.getKey(), new Pending(prefix, kv.getValue().modified));
+            }
+        }
+
+        Segment newest = old.get(old.size() - 1);
+        Path tmp = dir.resolve(newest.file.getFileName() + ".merge");
+        Map<String, Written> written = new LinkedHashMap<>();
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            long pos = 0;
+            ByteBuffer marker = record(MERGED, System.currentTimeMillis(), NONE,
+                    ByteBuffer.allocate(8).putLong(old.get(0).id).array());
+            pos += writeFully(out, marker, pos);
+            for (Map.Entry<String, Pending> kv : todo.entrySet()) {
+                Pending pd = kv.getValue();
+                int len = 0;
+                for (Part p : pd.parts) len += p.valueLen();
+                byte[] v = new byte[len];
+                int at = 0;
+                for (Part p : pd.parts) at += readValue(p, v, at); // segmentos fechados: leitura sem lock
+                byte[] k = kv.getKey().getBytes(StandardCharsets.UTF_8);
+                ByteBuffer rec = record(PUT, pd.modified, k, v);
+                written.put(kv.getKey(), new Written(pos, rec.limit(), HEADER + k.length, pd.modified));
+                pos += writeFully(out, rec, pos);
+            }
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        Segment merged;
+        synchronized (this) {
+            if (closed) { Files.deleteIfExists(tmp); return; }
+            newest.ch.close();
+            try {
+                Files.deleteIfExists(hintFile(newest.id));
+                moveAtomically(tmp, newest.file);
+            } catch (IOException e) {
+                newest.ch = FileChannel.open(newest.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+            for (Segment s : old) {
+                if (s == newest) continue;
+                s.ch.close();
+                Files.deleteIfExists(s.file);
+                Files.deleteIfExists(hintFile(s.id));
+            }
+            merged = openSegment(newest.id);
+            segments.removeAll(old);
+            segments.add(0, merged);
+
+            for (Map.Entry<String, Written> kv : written.entrySet()) {
+                Entry e = keydir.get(kv.getKey());
+                List<Part> was = todo.get(kv.getKey()).parts;
+                // mudou durante a cópia (put/delete no segmento ativo): a cópia é lixo
+                if (e == null || e.parts.size() < was.size() || !e.parts.subList(0, was.size()).equals(was)) continue;
+                Written w = kv.getValue();
+                e.parts.subList(0, was.size()).clear();
+                e.parts.add(0, new Part(merged, w.pos, w.recLen, w.valueOff));
+                merged.live += w.recLen;
+            }
+        }
+        writeHint(merged, written);
+    }
+
+    /* ===================== hint ===================== */
+
+    /** Índice do segmento compactado: chave, posição e tamanho de cada registro, sem os valores. */
+    private void writeHint(Segment seg, Map<String, Written> entries) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entries.size() * 48);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(HINT_MAGIC);
+            out.writeLong(seg.size);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Written> kv : entries.entrySet()) {
+                byte[] k = kv.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(k.length);
+                out.write(k);
+                out.writeLong(kv.getValue().pos);
+                out.writeInt(kv.getValue().recLen);
+                out.writeLong(kv.getValue().modified);
+            }
+            out.flush();
+            out.writeInt(crc(bytes.toByteArray(), 0, bytes.size()));
+            Storage.writeAtomically(hintFile(seg.id), bytes.toByteArray());
+        } catch (IOException ignored) {
+            // sem hint a próxima abertura relê o segmento
+        }
+    }
+
+    private boolean loadHint(Segment seg) {
+        Path f = hintFile(seg.id);
+        if (!Files.exists(f)) return false;
+        try {
+            byte[] b = Files.readAllBytes(f);
+            ByteBuffer in = ByteBuffer.wrap(b);
+            if (b.length < 20 || in.getInt(b.length - 4) != crc(b, 0, b.length - 4)
+                    || in.getInt() != HINT_MAGIC || in.getLong() != seg.size) return false;
+
+            // confere tudo antes de mexer no diretório de chaves
+            int n = in.getInt();
+            List<HintEntry> parsed = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                byte[] k = new byte[in.getShort() & 0xFFFF];
+                in.get(k);
+                long pos = in.getLong();
+                int recLen = in.getInt();
+                long modified = in.getLong();
+                if (pos < 0 || recLen < HEADER + k.length || pos + recLen > seg.size) return false;
+                parsed.add(new HintEntry(new String(k, StandardCharsets.UTF_8),
+                        new Part(seg, pos, recLen, HEADER + k.length), modified));
+            }
+            for (HintEntry e : parsed) apply(PUT, e.key, e.part, e.modified);
+            return true;
+        } catch (RuntimeException | IOException e) {
+            return false;
+        }
+    }
+
+    private record HintEntry(String key, Part part, long modified) {}
+
+    /* ===================== util ===================== */
+
+    @Override public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        mergeExec.shutdown();
+        for (Segment s : segments) {
+            try { s.ch.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path f = dir.resolve(String.format("%010d.seg", id));
+        return new Segment(id, f, FileChannel.open(f, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+    }
+
+    private Path hintFile(long id) {
+        return dir.resolve(String.format("%010d.hint", id));
+    }
+
+    /** Cabeçalho e chave de um registro de {@code valueLen} bytes, com o CRC ainda zerado. */
+    private static ByteBuffer header(byte type, long time, byte[] key, int valueLen) {
+        ByteBuffer b = ByteBuffer.allocate(HEADER + key.length);
+        b.putInt(0).put(type).putLong(time).putShort((short) key.length).putInt(valueLen).put(key);
+        b.flip();
+        return b;
+    }
+
+    private static ByteBuffer record(byte type, long time, byte[] key, byte[] value) {
+        ByteBuffer b = ByteBuffer.allocate(HEADER + key.length + value.length);
+        b.putInt(0).put(type).putLong(time).putShort((short) key.length).putInt(value.length).put(key).put(value);
+        b.putInt(0, crc(b.array(), 4, b.capacity() - 4));
+        b.flip();
+        return b;
+    }
+
+    private static int writeFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        int n = b.remaining();
+        while (b.hasRemaining()) pos += ch.write(b, pos);
+        return n;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) {
+            int n = ch.read(b, pos);
+            if (n < 0) throw new EOFException();
+            pos += n;
+        }
+    }
+
+    private static void moveAtomically(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static int crc(byte[] b, int off, int len) {
+        CRC32 c = new CRC32();
+        c.update(b, off, len);
+        return (int) c.getValue();
+    }
+}
@@ -0,0 +1,145 @@
+package org.docknotas.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * notes.txt mapeado em memória (FileChannel.map) para carga progressiva de notas grandes.
+ * – Índice de início de linha (em bytes) montado sob demanda, em blocos
+ * – Decodifica só o trecho de linhas pedido (sem String do arquivo inteiro)
+ * – A varredura calcula o CRC32 do snapshot, usado para validar o diário
+ */
+public class MappedNotes implements Closeable {
+
+    /** Abaixo disso ler tudo de uma vez é mais rápido que carregar aos poucos. */
+    static final long MIN_BYTES = 1024 * 1024;
+    private static final int SCAN_BLOCK = 1024 * 1024;
+
+    private final NotesJournal journal;
+    private final FileChannel channel;
+    private MappedByteBuffer buf;
+    private final int size;
+
+    private int[] lineStarts = new int[4096];
+    private int lines = 1;          // lineStarts[0] = 0
+    private int scanned = 0;        // bytes já varridos
+    private final CRC32 crc = new CRC32();
+
+    MappedNotes(Path file, NotesJournal journal) throws IOException {
+        this.journal = journal;
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        size = (int) channel.size();
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    /* ===================== índice de linhas ===================== */
+
+    /** Varre o arquivo até conhecer o início da linha {@code line} (ou até o fim). */
+    public synchronized void indexUntil(int line) {
+        while (lines <= line && scanned < size) {
+            int end = Math.min(size, scanned + SCAN_BLOCK);
+            for (int i = scanned; i < end; i++) {
+                if (buf.get(i) == '\n') {
+                    if (lines == lineStarts.length) lineStarts = Arrays.copyOf(lineStarts, lines * 2);
+                    lineStarts[lines++] = i + 1;
+                }
+            }
+            crc.update(buf.slice(scanned, end - scanned));
+            scanned = end;
+        }
+    }
+
+    /** Varre o resto do arquivo. */
+    public void indexAll() {
+        indexUntil(Integer.MAX_VALUE);
+    }
+
+    public synchronized boolean isFullyIndexed() { return scanned == size; }
+
+    /** Linhas conhecidas até agora (todas, depois de indexAll). */
+    public synchronized int lineCount() { return lines; }
+
+    /** Início (em bytes) da linha; {@code lineCount()} devolve o tamanho do arquivo. */
+    public synchronized int lineStart(int line) {
+        return line >= lines ? size : lineStarts[line];
+    }
+
+    public int sizeBytes() { return size; }
+
+    /** Linha que começa no byte {@code offset} (um início de linha; senão a linha que o contém). Depois de indexAll. */
+    public synchronized int lineAt(int offset) {
+        int i = Arrays.binarySearch(lineStarts, 0, lines, offset);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+     * Início (em bytes) da linha {@code n} linhas antes do fim, varrendo de trás para frente:
+     * a primeira tela no fim da nota sem indexar o arquivo inteiro.
+     */
+    public synchronized int tailStart(int n) {
+        int seen = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            if (buf.get(i) == '\n' && ++seen > n) return i + 1;
+        }
+        return 0;
+    }
+
+    /* ===================== leitura ===================== */
+
+    /** Texto das linhas [from, to). */
+    public String decodeLines(int from, int to) {
+        return decode(lineStart(from), lineStart(to));
+    }
+
+    /** Texto dos bytes [a, b) (a e b em início de linha). */
+    public String decode(int a, int b) {
+        if (b <= a) return "";
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(buf.slice(a, b - a))
+                    .toString();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Depois da varredura completa: passa ao diário o tamanho e o CRC deste snapshot, para o NotesSaver
+     * conferir o diário sem ler o arquivo de novo. Não grava nada (o diário desta nota, mesmo que outra já esteja ativa).
+     */
+    public void adoptAsSnapshot() {
+        indexAll();
+        journal.knowSnapshot(size, (int) crc.getValue());
+    }
+
+    /**
+     * Fecha o arquivo e desfaz o mapeamento já, sem esperar o GC
+     * (no Windows um arquivo mapeado não pode ser substituído pelo rename do snapshot).
+     */
+    @Override
+    public synchronized void close() {
+        try { channel.close(); } catch (IOException ignored) {}
+        ByteBuffer b = buf;
+        buf = null;
+        if (b == null) return;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            java.lang.reflect.Field f = unsafeClass.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(f.get(null), b);
+        } catch (Exception | LinkageError ignored) {
+            // sem jdk.unsupported: o mapeamento some quando o GC coletar o buffer
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.docknotas.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice das notas em notes/index.tsv (chave do NoteStore): id, tamanho, modificação, prioridade e título, uma linha por nota.
+ * – Lido só quando alguém pede a lista (menu de notas), nunca na inicialização
+ * – Só a nota ativa é conferida no disco; as outras não mudam enquanto não estão abertas
+ */
+class NoteIndex {
+
+    private static final int TITLE_CHARS = 60;
+
+    private static final String DIR = "notes/";
+    private static final String INDEX_KEY = DIR + "index.tsv";
+
+    private final NoteStore store;
+    private Map<String, NoteInfo> notes; // null = ainda não lido
+
+    NoteIndex(NoteStore store) {
+        this.store = store;
+    }
+
+    static String textKey(String id)    { return DIR + id + ".txt"; }
+    static String journalKey(String id) { return DIR + id + ".journal"; }
+
+    synchronized List<NoteInfo> list() {
+        return new ArrayList<>(loaded().values());
+    }
+
+    synchronized NoteInfo get(String id) {
+        return loaded().get(id);
+    }
+
+    synchronized void put(NoteInfo n) {
+        loaded().put(n.id(), n);
+        save();
+    }
+
+    /** Atualiza tamanho, data e título a partir do arquivo da nota (prioridade é mantida). */
+    synchronized NoteInfo refresh(String id, String defaultPriority) {
+        NoteInfo old = loaded().get(id);
+        String key = textKey(id);
+        long size = 0, modified = System.currentTimeMillis();
+        String title = old != null ? old.title() : "";
+        try {
+            if (store.exists(key)) {
+                size = store.size(key);
+                modified = store.modified(key);
+                title = firstLine(store.head(key, 4096));
+            }
+        } catch (IOException ignored) {}
+        NoteInfo n = new NoteInfo(id, title, size, modified, old != null ? old.priority() : defaultPriority);
+        if (!n.equals(old)) put(n);
+        return n;
+    }
+
+    /* ===================== persistência ===================== */
+
+    private Map<String, NoteInfo> loaded() {
+        if (notes != null) return notes;
+        notes = new LinkedHashMap<>();
+        try {
+            byte[] data = store.get(INDEX_KEY);
+            if (data == null) return rebuild();
+            for (String line : new String(data, StandardCharsets.UTF_8).split("\n")) {
+                String[] c = line.split("\t", 5);
+                if (c.length < 5 || c[0].isEmpty()) continue;
+                try {
+                    notes.put(c[0], new NoteInfo(c[0], c[4], Long.parseLong(c[1]), Long.parseLong(c[2]), c[3]));
+                } catch (NumberFormatException ignored) {}
+            }
+        } catch (IOException ignored) {}
+        return notes;
+    }
+
+    /** Sem índice (primeira vez ou apagado): monta a partir das notas/*.txt do store. */
+    private Map<String, NoteInfo> rebuild() {
+        try {
+            for (String key : store.keys(DIR)) {
+                if (!key.endsWith(".txt")) continue;
+                refresh(key.substring(DIR.length(), key.length() - 4), "cinza");
+            }
+        } catch (IOException ignored) {}
+        return notes;
+    }
+
+    private void save() {
+        StringBuilder sb = new StringBuilder(notes.size() * 64);
+        for (NoteInfo n : notes.values()) {
+            sb.append(n.id()).append('\t').append(n.size()).append('\t').append(n.modified()).append('\t')
+              .append(n.priority()).append('\t').append(clean(n.title())).append('\n');
+        }
+        try { store.put(INDEX_KEY, sb.toString().getBytes(StandardCharsets.UTF_8)); }
+        catch (IOException ignored) {}
+    }
+
+    /** Primeira linha não vazia do começo da nota. */
+    private static String firstLine(byte[] head) {
+        if (head == null) return "";
+        for (String line : new String(head, StandardCharsets.UTF_8).split("\n")) {
+            String t = line.strip();
+            if (!t.isEmpty()) return clean(t.length() > TITLE_CHARS ? t.substring(0, TITLE_CHARS) : t);
+        }
+        return "";
+    }
+
+    private static String clean(String s) {
+        return s == null ? "" : s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ').replace('\uFFFD', ' ').strip();
+    }
+}
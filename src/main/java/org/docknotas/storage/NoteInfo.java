@@ -0,0 +1,12 @@
+package org.docknotas.storage;
+
+/** Metadados de uma nota (linha do notes/index.tsv); o texto fica em notes/&lt;id&gt;.txt. */
+public record NoteInfo(String id, String title, long size, long modified, String priority) {
+
+    NoteInfo withPriority(String p) { return new NoteInfo(id, title, size, modified, p); }
+
+    /** Título para menus: primeira linha, ou "(vazia)". */
+    public String label() {
+        return title == null || title.isBlank() ? "(vazia)" : title;
+    }
+}
@@ -0,0 +1,65 @@
+package org.docknotas.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Onde ficam preferências, notas e o índice das notas: valores binários por chave.
+ * – Chaves são caminhos relativos: "settings.properties", "notes/<id>.txt", "notes/<id>.journal", "notes/index.tsv"
+ * – put troca o valor inteiro de forma atômica; append acrescenta ao fim (diário) e já força para o disco
+ * – put com ValueWriter: o valor é escrito em fluxo (texto do editor sem cópia inteira em memória)
+ * – Implementações: FlatFileNoteStore (um arquivo por chave) e LogNoteStore (segmentos só de append)
+ */
+public interface NoteStore extends Closeable {
+
+    /** Valor inteiro; null se a chave não existe. */
+    byte[] get(String key) throws IOException;
+
+    /** Até {@code max} bytes do começo do valor (título da nota, cabeçalho do diário). */
+    byte[] head(String key, int max) throws IOException;
+
+    void put(String key, byte[] value) throws IOException;
+
+    /** Produz um valor escrevendo no canal; false = descartar o que escreveu (nada é trocado). */
+    interface ValueWriter { boolean writeTo(WritableByteChannel out) throws IOException; }
+
+    /**
+     * Troca o valor pelo que {@code w} escrever; false se w desistiu.
+     * Padrão: junta tudo em memória e chama put; FlatFileNoteStore e LogNoteStore escrevem num temporário.
+     */
+    default boolean put(String key, ValueWriter w) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!w.writeTo(Channels.newChannel(out))) return false;
+        put(key, out.toByteArray());
+        return true;
+    }
+
+    /** Acrescenta ao valor (cria a chave se preciso). */
+    void append(String key, byte[] data) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    boolean exists(String key);
+
+    /** Tamanho do valor em bytes (0 se não existe). */
+    long size(String key);
+
+    /** Instante da última gravação em ms (0 se não existe). */
+    long modified(String key);
+
+    /** Chaves que começam com {@code prefix}, em ordem. */
+    List<String> keys(String prefix) throws IOException;
+
+    /**
+     * Arquivo que contém exatamente o valor, para mapear em memória (MappedNotes);
+     * null quando o backend não guarda assim.
+     */
+    default Path file(String key) { return null; }
+
+    @Override void close();
+}
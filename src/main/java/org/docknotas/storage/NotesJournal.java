@@ -0,0 +1,185 @@
+package org.docknotas.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Diário append-only das edições de uma nota (chave notes/<id>.journal no NoteStore).
+ * – Cabeçalho: "DNJ1" + tamanho + CRC32 do snapshot ao qual as edições se aplicam
+ * – Registro: tipo ('I'/'R'), offset, tamanho, [texto UTF-8], CRC32 do registro
+ * Um diário cujo cabeçalho não bate com o notes.txt é ignorado (snapshot mais novo).
+ * – Leitura (overlay) não mexe em nada: carga, exportação, backup e busca só sobrepõem o diário em memória
+ * – Escrita só pelo NotesSaver, via Storage sob NOTE_LOCK: antes do primeiro append o diário é conferido
+ *   (cabeçalho do snapshot atual, cauda íntegra); não conferiu = a próxima gravação é um snapshot (reset)
+ */
+class NotesJournal {
+
+    private static final int MAGIC = 0x444E4A31; // "DNJ1"
+    static final int HEADER_BYTES = 4 + 8 + 4;
+
+    /** Uma edição do documento: inserção (offset, texto) ou remoção (offset, tamanho). */
+    static final class Edit {
+        final boolean insert;
+        final int offset;
+        final int length;
+        final String text;
+
+        private Edit(boolean insert, int offset, int length, String text) {
+            this.insert = insert; this.offset = offset; this.length = length; this.text = text;
+        }
+        static Edit insert(int offset, String text) { return new Edit(true, offset, text.length(), text); }
+        static Edit remove(int offset, int length)  { return new Edit(false, offset, length, null); }
+    }
+
+    private final NoteStore store;
+    private final String key;
+
+    /** Diário conferido: cabeçalho do snapshot atual e cauda íntegra (acrescentar não perde nada). */
+    private boolean appendable;
+    /** Tamanho/CRC do snapshot já conhecidos (reset ou varredura do MappedNotes); -1 = ler o snapshot para conferir. */
+    private long knownLength = -1;
+    private int knownCrc;
+
+    NotesJournal(NoteStore store, String key) {
+        this.store = store;
+        this.key = key;
+    }
+
+    /* ===================== leitura ===================== */
+
+    /** Bytes do diário (null se não existe). */
+    synchronized byte[] read() throws IOException {
+        return store.get(key);
+    }
+
+    /**
+     * Texto do snapshot com as edições do diário aplicadas, só em memória.
+     * Diário de outro snapshot é ignorado; a leitura para no primeiro registro corrompido (queda no meio de uma gravação).
+     */
+    static String overlay(byte[] snapshot, byte[] journal) {
+        String base = new String(snapshot, StandardCharsets.UTF_8);
+        if (journal == null) return base;
+        ByteBuffer buf = ByteBuffer.wrap(journal);
+        if (!header(buf, snapshot.length, crc(snapshot, 0, snapshot.length))) return base;
+
+        StringBuilder sb = new StringBuilder(base);
+        Edit e;
+        while ((e = read(buf)) != null && apply(sb, e)) ;
+        return sb.toString();
+    }
+
+    private static boolean header(ByteBuffer buf, long snapshotLength, int snapshotCrc) {
+        return buf.remaining() >= HEADER_BYTES
+                && buf.getInt() == MAGIC
+                && buf.getLong() == snapshotLength
+                && buf.getInt() == snapshotCrc;
+    }
+
+    private static Edit read(ByteBuffer buf) {
+        int start = buf.position();
+        if (buf.remaining() < 1 + 4 + 4 + 4) return null;
+        byte type = buf.get();
+        int offset = buf.getInt(), length = buf.getInt();
+        if ((type != 'I' && type != 'R') || offset < 0 || length < 0) return null;
+
+        String text = null;
+        if (type == 'I') {
+            if (buf.remaining() < length + 4) return null;
+            text = new String(buf.array(), buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+        }
+        int end = buf.position();
+        if (buf.remaining() < 4 || buf.getInt() != crc(buf.array(), start, end - start)) return null;
+        return type == 'I' ? Edit.insert(offset, text) : Edit.remove(offset, length);
+    }
+
+    private static boolean apply(StringBuilder sb, Edit e) {
+        if (e.offset > sb.length()) return false;
+        if (e.insert) {
+            sb.insert(e.offset, e.text);
+        } else {
+            if (e.offset + e.length > sb.length()) return false;
+            sb.delete(e.offset, e.offset + e.length);
+        }
+        return true;
+    }
+
+    /* ===================== escrita ===================== */
+
+    /** Pode acrescentar sem conferir de novo? */
+    synchronized boolean isAppendable() { return appendable; }
+
+    /** Tamanho e CRC do snapshot em disco, já calculados por quem o leu inteiro (MappedNotes). */
+    synchronized void knowSnapshot(long snapshotLength, int snapshotCrc) {
+        knownLength = snapshotLength;
+        knownCrc = snapshotCrc;
+    }
+
+    /**
+     * Confere o diário contra o snapshot (null = lido agora) antes do primeiro append: cabeçalho igual
+     * e todos os registros íntegros até o fim. Não mexe no diário.
+     */
+    synchronized boolean verify(byte[] snapshot) throws IOException {
+        if (snapshot != null) knowSnapshot(snapshot.length, crc(snapshot, 0, snapshot.length));
+        byte[] data = store.get(key);
+        if (data == null || knownLength < 0) return appendable = false;
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        if (!header(buf, knownLength, knownCrc)) return appendable = false;
+        int good = buf.position();
+        while (read(buf) != null) good = buf.position();
+        return appendable = good == data.length;
+    }
+
+    /** Tamanho/CRC do snapshot são conhecidos (verify dispensa ler o snapshot)? */
+    synchronized boolean knowsSnapshot() { return knownLength >= 0; }
+
+    /** Acrescenta as edições e força para o disco (edição "confirmada"); só depois de verify ou reset. */
+    synchronized void append(List<Edit> edits) throws IOException {
+        if (!appendable) throw new IOException("diário não conferido: " + key);
+        if (edits.isEmpty()) return;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Edit e : edits) {
+            byte[] payload = e.insert ? e.text.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            ByteBuffer rec = ByteBuffer.allocate(1 + 4 + 4 + payload.length + 4);
+            rec.put((byte) (e.insert ? 'I' : 'R'))
+               .putInt(e.offset)
+               .putInt(e.insert ? payload.length : e.length)
+               .put(payload);
+            rec.putInt(crc(rec.array(), 0, rec.position()));
+            out.write(rec.array(), 0, rec.position());
+        }
+        appendable = false; // falhou no meio: cauda talvez corrompida até o próximo reset
+        store.append(key, out.toByteArray());
+        appendable = true;
+    }
+
+    /** Recomeça o diário (vazio) para um snapshot recém-gravado. */
+    void reset(byte[] snapshot) throws IOException {
+        reset(snapshot.length, crc(snapshot, 0, snapshot.length));
+    }
+
+    synchronized void reset(long snapshotLength, int snapshotCrc) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC)
+                .putLong(snapshotLength)
+                .putInt(snapshotCrc);
+        appendable = false;
+        store.put(key, h.array());
+        knowSnapshot(snapshotLength, snapshotCrc);
+        appendable = true;
+    }
+
+    synchronized long size() {
+        return store.size(key);
+    }
+
+    private static int crc(byte[] b, int off, int len) {
+        CRC32 c = new CRC32();
+        c.update(b, off, len);
+        return (int) c.getValue();
+    }
+}
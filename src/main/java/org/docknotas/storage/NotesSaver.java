@@ -0,0 +1,198 @@
+package org.docknotas.storage;
+
+import org.docknotas.ui.text.TextProperties;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Salvamento "write-behind" das notas.
+ * – Conta edições reais via DocumentListener (geração)
+ * – Agrupa rajadas de digitação (debounce) e grava numa thread própria
+ * – Nada de I/O na EDT: o teclado só incrementa um contador
+ * – Modo journaled: grava só as edições (NotesJournal) e compacta o snapshot
+ *   em segundo plano quando o diário passa de COMPACT_BYTES
+ */
+public class NotesSaver implements DocumentListener {
+
+    /** Silêncio mínimo depois da última edição antes de gravar. */
+    private static final long DEBOUNCE_MS  = 700;
+    /** Digitação contínua ainda grava pelo menos a cada MAX_DELAY_MS. */
+    private static final long MAX_DELAY_MS = 5000;
+    /** Tamanho do diário a partir do qual vale regravar o snapshot. */
+    private static final long COMPACT_BYTES = 2L * 1024 * 1024;
+
+    private final Document doc;
+    private final boolean journaled;
+    private final ConcurrentLinkedQueue<NotesJournal.Edit> pendingEdits = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "docknotas-notes-saver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong generation = new AtomicLong();
+    /** Caracteres inseridos + removidos pelo usuário (volume de edição, para o SnapshotScheduler). */
+    private final AtomicLong editedChars = new AtomicLong();
+    /** Gravações feitas (diário ou snapshot). */
+    private final AtomicLong writes = new AtomicLong();
+    private volatile long savedGeneration = 0;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile long firstDirtyNanos, lastEditNanos;
+
+    /** Mudanças feitas pelo próprio app (carga do arquivo) não contam como edição. EDT apenas. */
+    private boolean tracking = true;
+    /** Carga progressiva em andamento: documento parcial, nada de gravar. */
+    private volatile boolean loading;
+    /** Edições feitas durante a carga não cabem no diário: próxima gravação é snapshot. */
+    private volatile boolean needSnapshot;
+
+    public NotesSaver(Document doc) {
+        this(doc, false);
+    }
+
+    public NotesSaver(Document doc, boolean journaled) {
+        this.doc = doc;
+        this.journaled = journaled;
+        doc.addDocumentListener(this);
+    }
+
+    /* ===================== API ===================== */
+
+    /** Grava já (bloqueando) se houver edições pendentes. Usado no Ctrl+S e ao sair. */
+    public void flush() {
+        try {
+            exec.submit(this::writeIfDirty).get(10, TimeUnit.SECONDS);
+        } catch (Exception ignored) {}
+    }
+
+    /** Há edições ainda não gravadas? */
+    public boolean isDirty() { return generation.get() != savedGeneration; }
+
+    /** Executa (na EDT) mudanças no documento que já estão no disco, p.ex. o texto carregado. */
+    public void withoutTracking(Runnable r) {
+        tracking = false;
+        doc.putProperty(TextProperties.UNTRACKED, Boolean.TRUE);
+        try { r.run(); } finally {
+            tracking = true;
+            doc.putProperty(TextProperties.UNTRACKED, null);
+        }
+    }
+
+    /** Início da carga progressiva: o documento ainda não tem o arquivo inteiro. */
+    public void beginLoading() { loading = true; }
+
+    /** Fim da carga progressiva; grava (snapshot) o que o usuário editou enquanto isso. */
+    public void finishLoading() {
+        loading = false;
+        if (isDirty()) {
+            needSnapshot = true;
+            schedule();
+        }
+    }
+
+    public boolean isLoading() { return loading; }
+
+    /** Total de caracteres inseridos/removidos pelo usuário desde a abertura. */
+    public long editedChars() { return editedChars.get(); }
+
+    /** Gravações feitas desde a abertura (uma por rajada de digitação). */
+    long writes() { return writes.get(); }
+
+    /* ===================== DocumentListener ===================== */
+
+    @Override public void insertUpdate(DocumentEvent e) {
+        if (!tracking) return;
+        if (journaled && !loading) {
+            try { pendingEdits.add(NotesJournal.Edit.insert(e.getOffset(), doc.getText(e.getOffset(), e.getLength()))); }
+            catch (BadLocationException ignored) {}
+        }
+        edited(e.getLength());
+    }
+
+    @Override public void removeUpdate(DocumentEvent e) {
+        if (!tracking) return;
+        if (journaled && !loading) pendingEdits.add(NotesJournal.Edit.remove(e.getOffset(), e.getLength()));
+        edited(e.getLength());
+    }
+
+    @Override public void changedUpdate(DocumentEvent e) { /* só atributos: texto não mudou */ }
+
+    private void edited(int chars) {
+        generation.incrementAndGet();
+        editedChars.addAndGet(chars);
+        schedule();
+    }
+
+    private void schedule() {
+        lastEditNanos = System.nanoTime();
+        if (scheduled.compareAndSet(false, true)) {
+            firstDirtyNanos = lastEditNanos;
+            exec.schedule(this::tick, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /* ===================== thread de gravação ===================== */
+
+    private void tick() {
+        long now = System.nanoTime();
+        long quiet = now - lastEditNanos;
+        long debounce = TimeUnit.MILLISECONDS.toNanos(DEBOUNCE_MS);
+        if (quiet < debounce && now - firstDirtyNanos < TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MS)) {
+            exec.schedule(this::tick, debounce - quiet, TimeUnit.NANOSECONDS);
+            return;
+        }
+        scheduled.set(false);
+        writeIfDirty();
+    }
+
+    private void writeIfDirty() {
+        // durante a carga o documento está incompleto: gravar agora truncaria o arquivo
+        if (!isDirty() || loading) return;
+        if (journaled && !needSnapshot && appendJournal()) {
+            if (Storage.notesJournalSize() > COMPACT_BYTES) writeSnapshot();
+            return;
+        }
+        writeSnapshot();
+    }
+
+    /** Grava só as edições pendentes; false se o diário falhou (cai no snapshot). */
+    private boolean appendJournal() {
+        long[] gen = new long[1];
+        java.util.List<NotesJournal.Edit> batch = new java.util.ArrayList<>();
+        doc.render(() -> {
+            gen[0] = generation.get();
+            for (NotesJournal.Edit e; (e = pendingEdits.poll()) != null; ) batch.add(e);
+        });
+        try {
+            Storage.appendNotesJournal(batch);
+        } catch (java.io.IOException ex) {
+            return false;
+        }
+        savedGeneration = gen[0];
+        writes.incrementAndGet();
+        return true;
+    }
+
+    /** Regrava o texto completo (e recomeça o diário), direto do documento para o arquivo. */
+    private void writeSnapshot() {
+        // geração e edições pendentes lidas sob o read-lock, no instante que o snapshot retrata:
+        // as edições descartadas já estão nele
+        long[] gen = new long[1];
+        needSnapshot = true; // se a gravação falhar, as edições descartadas só voltam num snapshot
+        if (!Storage.saveNotes(doc, () -> {
+            gen[0] = generation.get();
+            pendingEdits.clear();
+        })) return;
+
+        needSnapshot = false;
+        savedGeneration = gen[0];
+        writes.incrementAndGet();
+    }
+}
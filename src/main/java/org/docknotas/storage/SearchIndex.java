@@ -0,0 +1,625 @@
+package org.docknotas.storage;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Índice invertido (termo → blocos + posições) da nota ativa e dos backups dela.
+ * – Indexa por bloco do BackupStore (mesmo corte, mesmo SHA-256): um bloco é indexado
+ *   uma vez só, venha ele da nota ou de qualquer backup
+ * – Edições na nota marcam um trecho sujo; em segundo plano só esse trecho é re-cortado,
+ *   até um corte novo voltar a casar com um antigo (o resto da nota não é lido nem hasheado)
+ * – Busca sem lock: lê um View imutável publicado pela thread do índice (a única que escreve)
+ * – Persistido em index/chunks.idx (um registro por bloco, com CRC) + index/live.lst
+ * – Termos em minúsculas e sem acento; o último termo da busca casa por prefixo
+ */
+public class SearchIndex implements DocumentListener {
+
+    private static final int MAGIC = 0x444E5831; // "DNX1"
+    /** Silêncio depois da última edição antes de re-cortar a nota. */
+    private static final long REINDEX_DELAY_MS = 1500;
+    private static final int MAX_TERM = 64;
+    private static final int PREVIEW_CHARS = 90;
+
+    /** Resultado de busca: nota atual (snapshotId 0) ou backup, posição e trecho da linha. */
+    public record Hit(long snapshotId, int offset, int length, String preview) {}
+
+    /**
+     * Postings de um termo: blocos em ordem crescente de id + posições (char) dentro de cada um.
+     * Só a thread do índice acrescenta; a busca lê {@link #seen}, publicado depois de cada add
+     * (os arrays só recebem escritas além do n publicado).
+     */
+    private static final class Postings {
+        record Seen(int n, int[] chunks, int[] ends, char[] offs) {}
+
+        private int n;
+        private int[] chunks = new int[2];
+        private int[] ends = new int[2];
+        private char[] offs = new char[4];
+        private int nOffs;
+        volatile Seen seen = new Seen(0, chunks, ends, offs);
+
+        void add(int chunk, char[] o, int len) {
+            if (n == chunks.length) {
+                chunks = Arrays.copyOf(chunks, n * 2);
+                ends = Arrays.copyOf(ends, n * 2);
+            }
+            if (nOffs + len > offs.length) offs = Arrays.copyOf(offs, Math.max(offs.length * 2, nOffs + len));
+            System.arraycopy(o, 0, offs, nOffs, len);
+            nOffs += len;
+            chunks[n] = chunk;
+            ends[n++] = nOffs;
+            seen = new Seen(n, chunks, ends, offs);
+        }
+    }
+
+    /**
+     * O que a busca enxerga: cópia dos metadados dos blocos [0, chunks) e a lista da nota atual.
+     * Trocado inteiro a cada atualização; postings de blocos ≥ chunks ainda não contam.
+     */
+    private record View(int chunks, String[] hashes, int[] charLength, long[] newestSnapshot, int[] offsetInSnapshot,
+                        int[] liveChunks, int[] liveStarts) {}
+
+    private static final View EMPTY = new View(0, new String[0], new int[0], new long[0], new int[0], new int[0], new int[0]);
+
+    private final Path file;
+    private final Path liveFile;
+    private final BackupStore backups;
+    private final Document doc;
+
+    // ---- lido pela busca ----
+    private final ConcurrentSkipListMap<String, Postings> terms = new ConcurrentSkipListMap<>();
+    private volatile View view = EMPTY;
+    private volatile boolean ready;
+
+    // ---- só a thread do índice ----
+    private final Map<String, Integer> chunkIds = new HashMap<>();
+    private final List<String> chunkHashes = new ArrayList<>();
+    private int[] charLength = new int[256];
+    private long[] newestSnapshot = new long[256];   // 0 = em nenhum backup
+    private int[] offsetInSnapshot = new int[256];
+    private List<Long> knownSnapshots = List.of();
+    private int[] liveChunks = new int[0];
+    private int[] liveStarts = new int[0];
+
+    // ---- trecho sujo da nota (coordenadas do documento atual), guardado por dirtyLock ----
+    private final Object dirtyLock = new Object();
+    private int dirtyFrom = Integer.MAX_VALUE, dirtyTo = -1, dirtyDelta;
+    private boolean dirtyAll = true;  // primeira passada: a nota inteira
+    private long edits;
+    private ScheduledFuture<?> pendingReindex;
+
+    private FileChannel out;
+    private final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "docknotas-index");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    SearchIndex(Path dir, BackupStore backups, Document doc) {
+        this.file = dir.resolve("chunks.idx");
+        this.liveFile = dir.resolve("live.lst");
+        this.backups = backups;
+        this.doc = doc;
+    }
+
+    /** Carrega o índice do disco e sincroniza com backups e nota, tudo em segundo plano. */
+    SearchIndex start() {
+        doc.addDocumentListener(this);
+        exec.execute(() -> {
+            try { load(); } catch (IOException ignored) {}
+            syncBackups();
+            reindexLive();
+            ready = true;
+        });
+        return this;
+    }
+
+    /** Backups novos ou podados: sincroniza na thread do índice. */
+    void backupsChanged() {
+        exec.execute(this::syncBackups);
+    }
+
+    /** Outra nota ficou ativa: os backups são outros (o texto chega pelo documento). */
+    void noteChanged() {
+        exec.execute(() -> {
+            knownSnapshots = null;
+            syncBackups();
+        });
+    }
+
+    public boolean isReady() { return ready; }
+
+    /* ===================== DocumentListener ===================== */
+
+    @Override public void insertUpdate(DocumentEvent e) { edited(e.getOffset(), e.getLength()); }
+    @Override public void removeUpdate(DocumentEvent e) { edited(e.getOffset(), -e.getLength()); }
+    @Override public void changedUpdate(DocumentEvent e) { }
+
+    /**
+     * Junta a edição ao trecho sujo [dirtyFrom, dirtyTo): antes dele o texto indexado não mudou,
+     * depois dele é o texto indexado deslocado de dirtyDelta chars. Na EDT, sob o write-lock.
+     */
+    private void edited(int off, int n) {
+        synchronized (dirtyLock) {
+            edits++;
+            if (n > 0) {
+                if (dirtyTo > off) dirtyTo += n;
+                dirtyTo = Math.max(dirtyTo, off + n);
+            } else {
+                if (dirtyTo > off) dirtyTo = Math.max(off, dirtyTo + n);
+                dirtyTo = Math.max(dirtyTo, off);
+            }
+            dirtyFrom = Math.min(dirtyFrom, off);
+            dirtyDelta += n;
+            if (pendingReindex != null) pendingReindex.cancel(false);
+            pendingReindex = exec.schedule(this::reindexLive, REINDEX_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /* ===================== busca ===================== */
+
+    /**
+     * Busca os termos da consulta (E lógico dentro de um bloco). O último termo casa por prefixo,
+     * a menos que a consulta termine em espaço. Ocorrências na nota atual vêm primeiro.
+     * Sem lock e com leitura de blocos de backup do disco: chamar fora da EDT.
+     */
+    public List<Hit> search(String query, int limit) {
+        View v = view;
+        List<String> q = new ArrayList<>();
+        tokenize(query == null ? "" : query, (t, at) -> q.add(t));
+        if (q.isEmpty()) return List.of();
+        boolean lastIsPrefix = !query.endsWith(" ");
+
+        // blocos que têm todos os termos
+        BitSet hitChunks = null;
+        List<Postings> first = null;
+        for (int i = 0; i < q.size(); i++) {
+            List<Postings> ps = lookup(q.get(i), lastIsPrefix && i == q.size() - 1);
+            BitSet set = new BitSet();
+            for (Postings p : ps) {
+                Postings.Seen ss = p.seen;
+                for (int k = 0; k < ss.n(); k++) if (ss.chunks()[k] < v.chunks) set.set(ss.chunks()[k]);
+            }
+            if (hitChunks == null) { hitChunks = set; first = ps; } else hitChunks.and(set);
+            if (hitChunks.isEmpty()) return List.of();
+        }
+        int len = q.get(0).length();
+
+        // bloco → posições na nota atual (o mesmo bloco pode aparecer mais de uma vez)
+        Map<Integer, List<Integer>> live = new HashMap<>();
+        for (int i = 0; i < v.liveChunks.length; i++) {
+            int c = v.liveChunks[i];
+            if (hitChunks.get(c)) live.computeIfAbsent(c, k -> new ArrayList<>()).add(v.liveStarts[i]);
+        }
+
+        List<Hit> liveHits = new ArrayList<>(), backupHits = new ArrayList<>();
+        Map<String, String> chunkText = new HashMap<>();
+        for (Postings p : first) {
+            Postings.Seen ss = p.seen;
+            int[] chunks = ss.chunks(), ends = ss.ends();
+            char[] offs = ss.offs();
+            for (int k = 0; k < ss.n(); k++) {
+                int c = chunks[k];
+                if (!hitChunks.get(c)) continue;
+                for (int j = k == 0 ? 0 : ends[k - 1]; j < ends[k]; j++) {
+                    int off = offs[j];
+                    List<Integer> starts = live.get(c);
+                    if (starts != null) {
+                        for (int s : starts) {
+                            if (liveHits.size() < limit) liveHits.add(new Hit(0, s + off, len, livePreview(s + off)));
+                        }
+                    } else if (v.newestSnapshot[c] != 0 && backupHits.size() < limit) {
+                        String text = chunkText.computeIfAbsent(v.hashes[c], this::readChunk);
+                        backupHits.add(new Hit(v.newestSnapshot[c], v.offsetInSnapshot[c] + off, len, preview(text, off)));
+                    }
+                }
+            }
+        }
+        liveHits.sort(Comparator.comparingInt(Hit::offset));
+        backupHits.sort(Comparator.comparingLong(Hit::snapshotId).reversed().thenComparingInt(Hit::offset));
+        List<Hit> all = new ArrayList<>(liveHits);
+        for (Hit h : backupHits) { if (all.size() >= limit) break; all.add(h); }
+        return all;
+    }
+
+    private List<Postings> lookup(String term, boolean prefix) {
+        if (!prefix) {
+            Postings p = terms.get(term);
+            return p == null ? List.of() : List.of(p);
+        }
+        return new ArrayList<>(terms.subMap(term, true, term + Character.MAX_VALUE, false).values());
+    }
+
+    private String livePreview(int offset) {
+        String[] s = new String[1];
+        int[] at = new int[1];
+        doc.render(() -> {
+            try {
+                int from = Math.max(0, offset - PREVIEW_CHARS), to = Math.min(doc.getLength(), offset + PREVIEW_CHARS);
+                if (to > from) { s[0] = doc.getText(from, to - from); at[0] = offset - from; }
+            } catch (BadLocationException ignored) {}
+        });
+        return preview(s[0], at[0]);
+    }
+
+    /** A linha em volta de {@code at}, cortada em PREVIEW_CHARS. */
+    private static String preview(String s, int at) {
+        if (s == null || s.isEmpty()) return "";
+        at = Math.max(0, Math.min(at, s.length()));
+        int a = s.lastIndexOf('\n', at - 1) + 1, b = s.indexOf('\n', at);
+        if (b < 0) b = s.length();
+        a = Math.max(a, at - PREVIEW_CHARS / 3);
+        b = Math.min(b, a + PREVIEW_CHARS);
+        return s.substring(a, b).strip();
+    }
+
+    private String readChunk(String hash) {
+        try { return new String(Files.readAllBytes(backups.chunkPath(hash)), StandardCharsets.UTF_8); }
+        catch (IOException e) { return ""; }
+    }
+
+    /** Publica para a busca o estado atual (cópia dos metadados; os arrays do View nunca mudam). */
+    private void publish() {
+        int n = chunkHashes.size();
+        view = new View(n, chunkHashes.toArray(new String[0]), Arrays.copyOf(charLength, n),
+                Arrays.copyOf(newestSnapshot, n), Arrays.copyOf(offsetInSnapshot, n), liveChunks, liveStarts);
+    }
+
+    /* ===================== indexação ===================== */
+
+    /** Trecho da nota lido sob o read-lock, com o estado sujo que ele cobre. */
+    private static final class Region {
+        int from, to, delta, docLength, start, end;
+        boolean all;
+        long edits;
+        byte[] bytes;
+    }
+
+    /**
+     * Re-corta só o trecho sujo da nota: começa num bloco antigo cujo corte não pode ter mudado
+     * (um corte olha até MAX_CHUNK bytes adiante) e para quando um corte novo, depois do trecho sujo,
+     * cai num corte antigo; dali em diante os blocos são os mesmos, só deslocados. Só blocos nunca vistos são tokenizados.
+     */
+    private void reindexLive() {
+        int[] oldChunks = liveChunks, oldStarts = liveStarts;
+        Region r = new Region();
+        doc.render(() -> {
+            synchronized (dirtyLock) {
+                r.all = dirtyAll || oldChunks.length == 0;
+                r.from = dirtyFrom;
+                r.to = dirtyTo;
+                r.delta = dirtyDelta;
+                r.edits = edits;
+                dirtyAll = false;
+                dirtyFrom = Integer.MAX_VALUE;
+                dirtyTo = -1;
+                dirtyDelta = 0;
+            }
+            r.docLength = doc.getLength();
+            if (r.all) {
+                r.start = 0;
+                r.end = r.docLength;
+            } else if (r.to >= 0) {
+                int k = Arrays.binarySearch(oldStarts, r.from - BackupStore.MAX_CHUNK);
+                k = k >= 0 ? k : Math.max(0, -k - 2);
+                r.start = oldStarts[k];
+                r.end = Math.min(r.docLength, r.to + 2 * BackupStore.MAX_CHUNK + 2);
+            }
+            if (r.all || r.to >= 0) r.bytes = copy(r.start, r.end, r);
+        });
+        if (r.bytes == null) return; // nada mudou
+
+        int keep = r.all ? 0 : Arrays.binarySearch(oldStarts, r.start); // blocos antigos antes do trecho
+        IntList ids = new IntList(), starts = new IntList();
+        for (int i = 0; i < keep; i++) { ids.add(oldChunks[i]); starts.add(oldStarts[i]); }
+
+        byte[] b = r.bytes;
+        int p = 0, pos = r.start;
+        int resync = -1; // primeiro bloco antigo reaproveitado depois do trecho
+        while (p < b.length) {
+            if (r.end < r.docLength && b.length - p <= BackupStore.MAX_CHUNK) {
+                // o corte precisa enxergar MAX_CHUNK bytes adiante: lê mais da nota, se ela não mudou
+                byte[] more = extend(r);
+                if (more == null) { reindexAllLater(); return; }
+                byte[] joined = Arrays.copyOfRange(b, p, b.length + more.length);
+                System.arraycopy(more, 0, joined, b.length - p, more.length);
+                b = joined;
+                p = 0;
+                continue;
+            }
+            int end = BackupStore.nextCut(b, p, b.length);
+            String hash = BackupStore.sha256Hex(b, p, end - p);
+            Integer id = chunkIds.get(hash);
+            if (id == null) id = add(hash, new String(b, p, end - p, StandardCharsets.UTF_8));
+            ids.add(id);
+            starts.add(pos);
+            pos += charLength[id];
+            p = end;
+
+            if (!r.all && pos >= r.to && pos < r.docLength) {
+                int j = Arrays.binarySearch(oldStarts, pos - r.delta);
+                if (j >= 0) { resync = j; break; }
+            }
+        }
+        if (resync >= 0) {
+            for (int i = resync; i < oldChunks.length; i++) { ids.add(oldChunks[i]); starts.add(oldStarts[i] + r.delta); }
+        }
+
+        int[] newChunks = ids.toArray();
+        boolean changed = !Arrays.equals(newChunks, oldChunks);
+        liveChunks = newChunks;
+        liveStarts = starts.toArray();
+        publish();
+        if (changed) {
+            StringBuilder lst = new StringBuilder(newChunks.length * 65);
+            for (int c : newChunks) { if (lst.length() > 0) lst.append('\n'); lst.append(chunkHashes.get(c)); }
+            try { Storage.writeAtomically(liveFile, lst.toString().getBytes(StandardCharsets.US_ASCII)); }
+            catch (IOException ignored) {}
+        }
+        flushOut();
+    }
+
+    /** Texto [from, to) da nota em UTF-8; sob o read-lock. Não termina no meio de um par surrogate. */
+    private byte[] copy(int from, int to, Region r) {
+        try {
+            if (to < r.docLength && to > from && Character.isHighSurrogate(doc.getText(to - 1, 1).charAt(0))) to++;
+            r.end = to;
+            return doc.getText(from, to - from).getBytes(StandardCharsets.UTF_8);
+        } catch (BadLocationException e) {
+            return new byte[0];
+        }
+    }
+
+    /** Mais um pedaço depois de r.end; null se a nota mudou desde que o trecho foi lido. */
+    private byte[] extend(Region r) {
+        byte[][] out = new byte[1][];
+        doc.render(() -> {
+            synchronized (dirtyLock) { if (edits != r.edits) return; }
+            out[0] = copy(r.end, Math.min(r.docLength, r.end + 4 * BackupStore.MAX_CHUNK), r);
+        });
+        return out[0];
+    }
+
+    /** A nota mudou no meio de um re-corte: a próxima passada re-corta tudo. */
+    private void reindexAllLater() {
+        synchronized (dirtyLock) { dirtyAll = true; }
+        exec.schedule(this::reindexLive, REINDEX_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Relê a lista de backups e indexa os blocos que ainda não estão no índice. */
+    private void syncBackups() {
+        List<Long> ids;
+        try { ids = backups.snapshotIds(); } catch (IOException e) { return; }
+        if (ids.equals(knownSnapshots)) return;
+
+        long[] newest = new long[0];
+        int[] offsetIn = new int[0];
+        for (long id : ids) {
+            List<String> chunks;
+            try { chunks = backups.chunksOf(id); } catch (IOException e) { continue; }
+            int pos = 0;
+            for (String h : chunks) {
+                Integer c = chunkIds.get(h);
+                if (c == null) c = add(h, readChunk(h));
+                if (c >= newest.length) {
+                    newest = Arrays.copyOf(newest, Math.max(256, c * 2));
+                    offsetIn = Arrays.copyOf(offsetIn, newest.length);
+                }
+                if (newest[c] != id) { newest[c] = id; offsetIn[c] = pos; } // primeira ocorrência no backup mais novo
+                pos += charLength[c];
+            }
+        }
+        Arrays.fill(newestSnapshot, 0);
+        System.arraycopy(newest, 0, newestSnapshot, 0, Math.min(newest.length, newestSnapshot.length));
+        System.arraycopy(offsetIn, 0, offsetInSnapshot, 0, Math.min(offsetIn.length, offsetInSnapshot.length));
+        knownSnapshots = ids;
+        publish();
+        flushOut();
+    }
+
+    /** Tokeniza um bloco novo, junta às postings e acrescenta o registro ao arquivo. */
+    private int add(String hash, String text) {
+        Map<String, CharList> local = new HashMap<>();
+        tokenize(text, (t, at) -> local.computeIfAbsent(t, k -> new CharList()).add((char) at));
+        int id = register(hash, text.length());
+        for (Map.Entry<String, CharList> e : local.entrySet()) {
+            terms.computeIfAbsent(e.getKey(), k -> new Postings()).add(id, e.getValue().a, e.getValue().n);
+        }
+        try { append(encode(hash, text.length(), local)); } catch (IOException ignored) {}
+        return id;
+    }
+
+    private int register(String hash, int chars) {
+        int id = chunkHashes.size();
+        chunkHashes.add(hash);
+        chunkIds.put(hash, id);
+        if (id == charLength.length) {
+            charLength = Arrays.copyOf(charLength, id * 2);
+            newestSnapshot = Arrays.copyOf(newestSnapshot, id * 2);
+            offsetInSnapshot = Arrays.copyOf(offsetInSnapshot, id * 2);
+        }
+        charLength[id] = chars;
+        return id;
+    }
+
+    /* ===================== tokenização ===================== */
+
+    private interface TokenSink { void term(String term, int at); }
+
+    /** Sequências de letras/dígitos, em minúsculas e sem acentos. */
+    private static void tokenize(String s, TokenSink sink) {
+        int n = s.length();
+        for (int i = 0; i < n; ) {
+            if (!Character.isLetterOrDigit(s.charAt(i))) { i++; continue; }
+            int a = i;
+            while (i < n && Character.isLetterOrDigit(s.charAt(i))) i++;
+            sink.term(normalize(s.substring(a, Math.min(i, a + MAX_TERM))), a);
+        }
+    }
+
+    private static String normalize(String t) {
+        String lower = t.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lower.length(); i++) {
+            if (lower.charAt(i) > 0x7F) {
+                return Normalizer.normalize(lower, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+            }
+        }
+        return lower;
+    }
+
+    private static final class CharList {
+        char[] a = new char[2];
+        int n;
+        void add(char c) {
+            if (n == a.length) a = Arrays.copyOf(a, n * 2);
+            a[n++] = c;
+        }
+    }
+
+    private static final class IntList {
+        int[] a = new int[16];
+        int n;
+        void add(int v) {
+            if (n == a.length) a = Arrays.copyOf(a, n * 2);
+            a[n++] = v;
+        }
+        int[] toArray() { return Arrays.copyOf(a, n); }
+    }
+
+    /* ===================== arquivo ===================== */
+
+    /**
+     * Registro: [tamanho][hash 32B][chars][nTermos]{[termo][nPos][deltas...]}[CRC32], inteiros em varint.
+     * Só ficam os blocos de backups existentes ou da última nota; o resto é descartado ao carregar.
+     */
+    private static byte[] encode(String hash, int chars, Map<String, CharList> local) {
+        ByteArrayOutputStream b = new ByteArrayOutputStream(64 + local.size() * 12);
+        b.writeBytes(HexFormat.of().parseHex(hash));
+        varint(b, chars);
+        varint(b, local.size());
+        for (Map.Entry<String, CharList> e : local.entrySet()) {
+            byte[] t = e.getKey().getBytes(StandardCharsets.UTF_8);
+            varint(b, t.length);
+            b.writeBytes(t);
+            CharList o = e.getValue();
+            varint(b, o.n);
+            int prev = 0;
+            for (int i = 0; i < o.n; i++) { varint(b, o.a[i] - prev); prev = o.a[i]; }
+        }
+        return b.toByteArray();
+    }
+
+    private void append(byte[] body) throws IOException {
+        if (out == null) {
+            boolean fresh = !Files.exists(file) || Files.size(file) == 0;
+            Files.createDirectories(file.getParent());
+            out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (fresh) write(ByteBuffer.allocate(4).putInt(MAGIC).flip());
+        }
+        ByteBuffer rec = ByteBuffer.allocate(4 + body.length + 4);
+        rec.putInt(body.length).put(body).putInt(crc(body, 0, body.length)).flip();
+        write(rec);
+    }
+
+    private void write(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) out.write(b);
+    }
+
+    private void flushOut() {
+        if (out == null) return;
+        try { out.force(false); } catch (IOException ignored) {}
+    }
+
+    /** Lê os registros válidos; compacta o arquivo se a maior parte for de blocos que sumiram. */
+    private void load() throws IOException {
+        if (!Files.exists(file)) return;
+        Set<String> wanted = backups.referencedChunks(); // null: manifesto ilegível, mantém tudo
+        if (wanted != null && Files.exists(liveFile)) wanted.addAll(Files.readAllLines(liveFile, StandardCharsets.US_ASCII));
+
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buf.remaining() < 4 || buf.getInt() != MAGIC) { Files.delete(file); return; }
+
+        ByteArrayOutputStream keep = new ByteArrayOutputStream();
+        int kept = 0, dropped = 0, good = buf.position();
+        while (buf.remaining() >= 8) {
+            int start = buf.position(), len = buf.getInt();
+            if (len < 34 || len > buf.remaining() - 4) break;
+            int body = buf.position();
+            buf.position(body + len);
+            if (buf.getInt() != crc(buf.array(), body, len)) break;
+            good = buf.position();
+
+            String hash = HexFormat.of().formatHex(buf.array(), body, body + 32);
+            if (wanted != null && !wanted.contains(hash)) { dropped++; continue; }
+            if (chunkIds.containsKey(hash)) continue;
+            decode(hash, ByteBuffer.wrap(buf.array(), body + 32, len - 32));
+            keep.write(buf.array(), start, good - start);
+            kept++;
+        }
+
+        if (dropped > kept || good < buf.limit()) {
+            // regrava só o que ficou (e sem cauda corrompida)
+            ByteBuffer h = ByteBuffer.allocate(4).putInt(MAGIC);
+            byte[] body = keep.toByteArray();
+            byte[] all = Arrays.copyOf(h.array(), 4 + body.length);
+            System.arraycopy(body, 0, all, 4, body.length);
+            Storage.writeAtomically(file, all);
+        }
+    }
+
+    private void decode(String hash, ByteBuffer b) {
+        int id = register(hash, varint(b));
+        int nTerms = varint(b);
+        char[] tmp = new char[16];
+        for (int i = 0; i < nTerms; i++) {
+            int tl = varint(b);
+            String term = new String(b.array(), b.position(), tl, StandardCharsets.UTF_8);
+            b.position(b.position() + tl);
+            int n = varint(b);
+            if (tmp.length < n) tmp = new char[n];
+            int prev = 0;
+            for (int k = 0; k < n; k++) { prev += varint(b); tmp[k] = (char) prev; }
+            terms.computeIfAbsent(term, k -> new Postings()).add(id, tmp, n);
+        }
+    }
+
+    /* ===================== util ===================== */
+
+    private static void varint(ByteArrayOutputStream b, int v) {
+        while ((v & ~0x7F) != 0) { b.write((v & 0x7F) | 0x80); v >>>= 7; }
+        b.write(v);
+    }
+
+    private static int varint(ByteBuffer b) {
+        int v = 0, shift = 0;
+        byte x;
+        do { x = b.get(); v |= (x & 0x7F) << shift; shift += 7; } while (x < 0);
+        return v;
+    }
+
+    private static int crc(byte[] b, int off, int len) {
+        CRC32 c = new CRC32();
+        c.update(b, off, len);
+        return (int) c.getValue();
+    }
+}
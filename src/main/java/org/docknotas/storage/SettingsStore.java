@@ -0,0 +1,95 @@
+package org.docknotas.storage;
+
+import org.docknotas.settings.AppSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gravação das preferências com "dirty tracking" e coalescência.
+ * – Só grava se AppSettings.revision() mudou desde a última gravação
+ * – No máximo uma gravação a cada MIN_INTERVAL_MS, numa thread própria
+ * – Valor trocado inteiro no NoteStore; o que estiver pendente é gravado ao sair
+ */
+class SettingsStore {
+
+    private static final long MIN_INTERVAL_MS = 1000;
+
+    private final NoteStore store;
+    private final String key;
+    private final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "docknotas-settings-saver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Object lock = new Object();       // estado abaixo
+    private final Object writeLock = new Object();  // uma gravação por vez
+    private AppSettings pending;
+    private int savedRevision = Integer.MIN_VALUE;
+    private boolean scheduled;
+    private long lastWriteNanos;
+
+    SettingsStore(NoteStore store, String key) {
+        this.store = store;
+        this.key = key;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::writePending, "docknotas-settings-flush"));
+    }
+
+    /** As preferências acabaram de ser lidas do disco: nada a gravar. */
+    void markClean(AppSettings s) {
+        synchronized (lock) {
+            pending = s;
+            savedRevision = s.revision();
+        }
+    }
+
+    /** Agenda a gravação (sem bloquear quem chama). */
+    void requestSave(AppSettings s) {
+        synchronized (lock) {
+            pending = s;
+            if (scheduled || s.revision() == savedRevision) return;
+            scheduled = true;
+            long sinceLast = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastWriteNanos);
+            exec.schedule(this::writePending, Math.max(0, MIN_INTERVAL_MS - sinceLast), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Grava já o que estiver pendente (saída do app). */
+    void flush(AppSettings s) {
+        synchronized (lock) { pending = s; }
+        writePending();
+    }
+
+    private void writePending() {
+        synchronized (writeLock) {
+            AppSettings s;
+            int rev;
+            synchronized (lock) {
+                scheduled = false;
+                s = pending;
+                if (s == null) return;
+                rev = s.revision();
+                if (rev == savedRevision) return;
+            }
+
+            Properties p = Storage.toProperties(s);
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+                p.store(out, "DockNotas settings");
+                store.put(key, out.toByteArray());
+            } catch (IOException e) {
+                return; // fica sujo: a próxima mudança tenta de novo
+            }
+
+            synchronized (lock) {
+                savedRevision = rev;
+                lastWriteNanos = System.nanoTime();
+            }
+        }
+    }
+}
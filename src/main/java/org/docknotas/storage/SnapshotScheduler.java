@@ -0,0 +1,98 @@
+package org.docknotas.storage;
+
+import org.docknotas.settings.AppSettings;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Backups automáticos guiados pelo volume de edição.
+ * – Dispara quando muito texto mudou (e já passou um intervalo mínimo)
+ *   ou quando qualquer edição ficou sem backup por tempo demais
+ * – Roda numa thread de prioridade mínima; a EDT nunca espera por ela
+ * – Conteúdo igual ao último backup não gera snapshot (BackupStore compara o hash)
+ */
+public class SnapshotScheduler {
+
+    /** De quanto em quanto tempo olhar o volume de edição. */
+    private static final long CHECK_MS = 30_000;
+    /** Caracteres editados que pedem um backup... */
+    private static final long VOLUME_CHARS = 4_096;
+    /** ...desde que o último tenha sido há pelo menos isso. */
+    private static final long MIN_INTERVAL_MS = 2 * 60_000;
+    /** Qualquer edição ganha um backup depois disso. */
+    private static final long MAX_INTERVAL_MS = 60 * 60_000;
+
+    /** Custo acumulado dos backups automáticos. */
+    public record Stats(long snapshots, long skipped, long newChunks, long bytesWritten, long millisSpent) {}
+
+    private final NotesSaver saver;
+    private final AppSettings settings;
+    private final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "docknotas-snapshots");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private long charsAtLast;
+    private long lastNanos = System.nanoTime();
+
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong newChunks = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong nanosSpent = new AtomicLong();
+
+    public SnapshotScheduler(NotesSaver saver, AppSettings settings) {
+        this.saver = saver;
+        this.settings = settings;
+    }
+
+    public SnapshotScheduler start() {
+        exec.scheduleWithFixedDelay(this::check, CHECK_MS, CHECK_MS, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    public Stats stats() {
+        return new Stats(snapshots.get(), skipped.get(), newChunks.get(), bytesWritten.get(),
+                TimeUnit.NANOSECONDS.toMillis(nanosSpent.get()));
+    }
+
+    /* ===================== thread de backup ===================== */
+
+    private void check() {
+        if (!settings.isAutoBackup() || saver.isLoading()) return;
+        long chars = saver.editedChars() - charsAtLast;
+        if (chars == 0) return;
+
+        long since = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastNanos);
+        boolean volume = chars >= VOLUME_CHARS && since >= MIN_INTERVAL_MS;
+        if (!volume && since < MAX_INTERVAL_MS) return;
+        snapshot();
+    }
+
+    private void snapshot() {
+        long t0 = System.nanoTime();
+        long chars = saver.editedChars();
+        try {
+            saver.flush(); // o backup lê o que está no disco
+            BackupStore.Result r = Storage.backup(settings);
+            if (r.snapshotId() == 0) {
+                skipped.incrementAndGet();
+            } else {
+                snapshots.incrementAndGet();
+                newChunks.addAndGet(r.newChunks());
+                bytesWritten.addAndGet(r.newBytes());
+            }
+            charsAtLast = chars;
+            lastNanos = System.nanoTime();
+        } catch (Exception ignored) {
+            // tenta de novo na próxima verificação
+        } finally {
+            nanosSpent.addAndGet(System.nanoTime() - t0);
+        }
+    }
+}
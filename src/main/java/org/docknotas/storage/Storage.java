@@ -4,26 +4,107 @@ import org.docknotas.settings.AppSettings;
 
 import java.awt.*;
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Properties;
 
-/** Persistência simples via arquivos na pasta ~/.docknotas */
+/**
+ * Persistência na pasta ~/.docknotas (ou -Ddocknotas.home=<pasta>, p.ex. nos benchmarks).
+ * Preferências, notas e índice das notas passam pelo NoteStore (-Ddocknotas.store=flat|log);
+ * backups e índice de busca têm formato próprio em backups/ e index/.
+ */
 public class Storage {
 
-    private static final String APP_DIR = System.getProperty("user.home")
-            + File.separator + ".docknotas";
+    private static final String APP_DIR = System.getProperty("docknotas.home",
+            System.getProperty("user.home") + File.separator + ".docknotas");
 
-    private static final Path SETTINGS_FILE = Path.of(APP_DIR, "settings.properties");
-    private static final Path NOTES_FILE    = Path.of(APP_DIR, "notes.txt");
-    private static final Path BACKUP_DIR    = Path.of(APP_DIR, "backups");
+    private static final String SETTINGS_KEY = "settings.properties";
+    private static final Path BACKUP_DIR     = Path.of(APP_DIR, "backups");
+
+    /** Chaves de antes das várias notas; migradas para notes/main.* na primeira execução. */
+    private static final String LEGACY_NOTES   = "notes.txt";
+    private static final String LEGACY_JOURNAL = "notes.journal";
+
+    /** Nota da instalação nova (e do notes.txt antigo). */
+    public static final String DEFAULT_NOTE = "main";
+
+    /** Preferências, notas e índice das notas. */
+    private static final NoteStore STORE = openStore();
+
+    /** Índice das notas (lido só quando a lista é pedida). */
+    private static final NoteIndex NOTES = new NoteIndex(STORE);
+
+    /** Nota ativa e diário de edições dela (modo journaled); trocados juntos sob NOTE_LOCK. */
+    private static final Object NOTE_LOCK = new Object();
+    private static volatile String activeNote = DEFAULT_NOTE;
+    private static volatile NotesJournal journal = new NotesJournal(STORE, NoteIndex.journalKey(DEFAULT_NOTE));
+
+    /** Backups deduplicados (blocos + manifestos por nota) em backups/. */
+    private static final BackupStore BACKUPS = new BackupStore(BACKUP_DIR, DEFAULT_NOTE);
+
+    /** Índice de busca da nota aberta (null até openSearchIndex). */
+    private static volatile SearchIndex INDEX;
+
+    /** Gravação coalescida das preferências. */
+    private static final SettingsStore SETTINGS = new SettingsStore(STORE, SETTINGS_KEY);
+
+    private static volatile boolean dirsReady = false;
 
     /* ---------------------------- infra ---------------------------- */
 
+    /** Cria as pastas uma vez; se sumirem depois, writeAtomically recria. */
     public static void ensureDirs() {
+        if (dirsReady) return;
         new File(APP_DIR).mkdirs();
         new File(BACKUP_DIR.toString()).mkdirs();
+        migrateLegacyNotes();
+        try { // nota inicial existe desde a primeira execução (lista de notas, troca de volta para ela)
+            String main = NoteIndex.textKey(DEFAULT_NOTE);
+            if (!STORE.exists(main)) STORE.put(main, new byte[0]);
+        } catch (IOException ignored) {}
+        dirsReady = true;
+    }
+
+    /** Backend escolhido por -Ddocknotas.store=flat|log (padrão: flat, um arquivo por chave). */
+    private static NoteStore openStore() {
+        NoteStore flat = new FlatFileNoteStore(Path.of(APP_DIR));
+        if (!"log".equalsIgnoreCase(System.getProperty("docknotas.store", "flat"))) return flat;
+        try {
+            NoteStore log = new LogNoteStore(Path.of(APP_DIR, "store"));
+            if (log.keys("").isEmpty()) importInto(log, flat);
+            return log;
+        } catch (IOException e) {
+            return flat; // store novo ilegível: segue com os arquivos
+        }
+    }
+
+    /** Primeira abertura do store log-structured: copia para ele as preferências e notas dos arquivos. */
+    private static void importInto(NoteStore to, NoteStore from) throws IOException {
+        java.util.List<String> keys = new java.util.ArrayList<>(java.util.List.of(SETTINGS_KEY, LEGACY_NOTES, LEGACY_JOURNAL));
+        keys.addAll(from.keys("notes/"));
+        for (String k : keys) {
+            byte[] v = from.get(k);
+            if (v != null) to.put(k, v);
+        }
+    }
+
+    /** notes.txt/notes.journal e backups antigos viram a nota "main". */
+    private static void migrateLegacyNotes() {
+        String target = NoteIndex.textKey(DEFAULT_NOTE);
+        if (!STORE.exists(LEGACY_NOTES) || STORE.exists(target)) return;
+        try {
+            byte[] j = STORE.get(LEGACY_JOURNAL);
+            if (j != null) STORE.put(NoteIndex.journalKey(DEFAULT_NOTE), j);
+            STORE.put(target, STORE.get(LEGACY_NOTES));
+            STORE.delete(LEGACY_JOURNAL);
+            STORE.delete(LEGACY_NOTES);
+            BACKUPS.adoptLegacySnapshots(DEFAULT_NOTE);
+        } catch (IOException ignored) {}
     }
 
     /* ------------------------ settings (load/save) ------------------------ */
@@ -33,20 +114,29 @@ public class Storage {
         AppSettings s = new AppSettings();
         Properties p = new Properties();
 
-        if (Files.exists(SETTINGS_FILE)) {
-            try (InputStream in = Files.newInputStream(SETTINGS_FILE)) {
-                p.load(in);
-            } catch (IOException ignored) {}
-        }
+        try {
+            byte[] data = STORE.get(SETTINGS_KEY);
+            if (data != null) p.load(new ByteArrayInputStream(data));
+        } catch (IOException ignored) {}
 
         // Gerais
         s.setAlwaysOnTop(Boolean.parseBoolean(p.getProperty("alwaysOnTop", "true")));
         s.setStartMinimized(Boolean.parseBoolean(p.getProperty("startMinimized", "true")));
         s.setTheme(p.getProperty("theme", "dark"));
+        s.setPriorityColor(p.getProperty("priorityColor", "cinza")); // cópia da prioridade da nota ativa
         s.setFontSize(parseInt(p.getProperty("fontSize"), 14));
         s.setLineSpacing(parseInt(p.getProperty("lineSpacing"), 20));
         s.setZoomPercent(parseInt(p.getProperty("zoomPercent"), 100));
         s.setColorStrengthPercent(parseInt(p.getProperty("colorStrengthPercent"), 100));
+        s.setNotesJournal(Boolean.parseBoolean(p.getProperty("notesJournal", "true")));
+        s.setCaretLine(parseInt(p.getProperty("caretLine"), -1));
+        s.setActiveNoteId(p.getProperty("activeNoteId", DEFAULT_NOTE));
+        s.setAutoBackup(Boolean.parseBoolean(p.getProperty("autoBackup", "true")));
+        s.setBackupKeepLast(parseInt(p.getProperty("backupKeepLast"), 10));
+        s.setBackupKeepHourly(parseInt(p.getProperty("backupKeepHourly"), 24));
+        s.setBackupKeepDaily(parseInt(p.getProperty("backupKeepDaily"), 14));
+        s.setBackupKeepWeekly(parseInt(p.getProperty("backupKeepWeekly"), 8));
+        s.setBackupKeepMonthly(parseInt(p.getProperty("backupKeepMonthly"), 12));
 
         // Local/Dimensão da janela principal (usamos os mesmos nomes já existentes)
         String barLoc = p.getProperty("barLocation", null);
@@ -76,21 +166,47 @@ public class Storage {
             s.setNoteWindowSize(new Dimension(parseInt(a[0], 420), parseInt(a[1], 520)));
         }
 
+        // nota ativa: abre direto a chave dela, sem ler o índice (custo constante)
+        if (!STORE.exists(NoteIndex.textKey(s.getActiveNoteId()))) s.setActiveNoteId(DEFAULT_NOTE);
+        useNote(s.getActiveNoteId());
+
+        SETTINGS.markClean(s);
         return s;
     }
 
+    /** Agenda a gravação das preferências (coalescida, fora da EDT). */
     public static void saveSettings(AppSettings s) {
         ensureDirs();
+        SETTINGS.requestSave(s);
+    }
+
+    /** Grava já as preferências pendentes (ao sair). */
+    public static void flushSettings(AppSettings s) {
+        ensureDirs();
+        SETTINGS.flush(s);
+    }
+
+    static Properties toProperties(AppSettings s) {
         Properties p = new Properties();
 
         // Gerais
         p.setProperty("alwaysOnTop", String.valueOf(s.isAlwaysOnTop()));
         p.setProperty("startMinimized", String.valueOf(s.isStartMinimized()));
         p.setProperty("theme", s.getTheme());
+        p.setProperty("priorityColor", s.getPriorityColor());
         p.setProperty("fontSize", String.valueOf(s.getFontSize()));
         p.setProperty("lineSpacing", String.valueOf(s.getLineSpacing()));
         p.setProperty("zoomPercent", String.valueOf(s.getZoomPercent()));
         p.setProperty("colorStrengthPercent", String.valueOf(s.getColorStrengthPercent()));
+        p.setProperty("notesJournal", String.valueOf(s.isNotesJournal()));
+        p.setProperty("caretLine", String.valueOf(s.getCaretLine()));
+        p.setProperty("activeNoteId", s.getActiveNoteId());
+        p.setProperty("autoBackup", String.valueOf(s.isAutoBackup()));
+        p.setProperty("backupKeepLast", String.valueOf(s.getBackupKeepLast()));
+        p.setProperty("backupKeepHourly", String.valueOf(s.getBackupKeepHourly()));
+        p.setProperty("backupKeepDaily", String.valueOf(s.getBackupKeepDaily()));
+        p.setProperty("backupKeepWeekly", String.valueOf(s.getBackupKeepWeekly()));
+        p.setProperty("backupKeepMonthly", String.valueOf(s.getBackupKeepMonthly()));
 
         // Posição/tamanho da janela principal
         if (s.getBarLocation() != null) {
@@ -110,60 +226,306 @@ public class Storage {
             p.setProperty("noteWindowSize",
                     s.getNoteWindowSize().width + "," + s.getNoteWindowSize().height);
         }
-
-        try (OutputStream out = Files.newOutputStream(SETTINGS_FILE)) {
-            p.store(out, "DockNotas settings");
-        } catch (IOException ignored) {}
+        return p;
     }
 
     /* --------------------------- notas (txt) --------------------------- */
 
+    /**
+     * Texto da nota ativa: snapshot com o diário de edições sobreposto em memória.
+     * Só lê (carga, exportação, backup, busca): diário de outro snapshot ou com cauda corrompida fica como está,
+     * e o NotesSaver o recomeça na próxima gravação.
+     */
     public static String loadNotes() {
         ensureDirs();
-        try {
-            if (!Files.exists(NOTES_FILE)) {
-                Files.writeString(NOTES_FILE, "", StandardCharsets.UTF_8);
+        byte[] snapshot, log = null;
+        synchronized (NOTE_LOCK) { // snapshot e diário do mesmo instante (saveNotes troca os dois sob o lock)
+            try {
+                snapshot = STORE.get(NoteIndex.textKey(activeNote));
+            } catch (IOException e) {
+                return "";
             }
-            return Files.readString(NOTES_FILE, StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            return "";
+            try { log = journal.read(); } catch (IOException ignored) {}
         }
+        return NotesJournal.overlay(snapshot == null ? new byte[0] : snapshot, log);
+    }
+
+    /**
+     * Texto da nota ativa para a partida, lido numa thread de fundo.
+     * null quando a nota é grande: a janela usa a carga progressiva (mapNotes).
+     */
+    public static String preloadNotes() {
+        MappedNotes big = mapNotes();
+        if (big == null) return loadNotes();
+        big.close();
+        return null;
     }
 
+    /** Grava o texto completo da nota ativa como novo snapshot e recomeça o diário. */
     public static void saveNotes(String text) {
         ensureDirs();
-        try {
-            Files.writeString(NOTES_FILE, text == null ? "" : text, StandardCharsets.UTF_8);
-        } catch (IOException ignored) {}
+        synchronized (NOTE_LOCK) {
+            try {
+                byte[] data = (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+                STORE.put(NoteIndex.textKey(activeNote), data);
+                journal.reset(data);
+            } catch (IOException ignored) {}
+        }
     }
 
-    public static void exportTo(File file) throws IOException {
+    /**
+     * Grava o texto do documento como snapshot da nota ativa e recomeça o diário, em fluxo (DocumentWriter):
+     * nem String nem byte[] do tamanho da nota. atStart roda sob o read-lock do documento no instante
+     * que o snapshot retrata.
+     * @return false se não gravou (erro de disco, ou nem a passada com o documento travado foi aceita)
+     */
+    static boolean saveNotes(javax.swing.text.Document doc, Runnable atStart) {
         ensureDirs();
-        if (file == null) return;
-        Files.copy(NOTES_FILE, file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        synchronized (NOTE_LOCK) {
+            try {
+                DocumentWriter w = new DocumentWriter(doc, atStart);
+                String key = NoteIndex.textKey(activeNote);
+                boolean saved = false;
+                for (int i = 0; i < DocumentWriter.OPTIMISTIC_PASSES && !saved; i++) {
+                    saved = STORE.put(key, w); // false = documento mudou no meio da passada
+                }
+                if (!saved) {
+                    w.lockWhole(); // última passada com o documento travado: não desiste
+                    if (!STORE.put(key, w)) return false;
+                }
+                journal.reset(w.length(), w.crc());
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Acrescenta edições ao diário da nota ativa (modo journaled), sob o mesmo lock dos snapshots.
+     * Diário que não confere com o snapshot (ou com cauda corrompida): IOException, e o NotesSaver grava um snapshot.
+     */
+    static void appendNotesJournal(java.util.List<NotesJournal.Edit> edits) throws IOException {
+        synchronized (NOTE_LOCK) {
+            NotesJournal j = journal;
+            if (!j.isAppendable()
+                    && !j.verify(j.knowsSnapshot() ? null : STORE.get(NoteIndex.textKey(activeNote)))) {
+                throw new IOException("diário não confere com o snapshot");
+            }
+            j.append(edits);
+        }
+    }
+
+    /**
+     * Abre a nota ativa mapeada em memória para carga progressiva.
+     * Devolve null quando não compensa (arquivo pequeno), quando há edições no diário a reaplicar
+     * ou quando o NoteStore não guarda a nota num arquivo próprio.
+     */
+    public static MappedNotes mapNotes() {
+        ensureDirs();
+        synchronized (NOTE_LOCK) {
+            try {
+                Path file = STORE.file(NoteIndex.textKey(activeNote));
+                long size = file != null ? Files.size(file) : 0;
+                if (size < MappedNotes.MIN_BYTES || size > Integer.MAX_VALUE) return null;
+                if (journal.size() > NotesJournal.HEADER_BYTES) return null;
+                return new MappedNotes(file, journal);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    /** Tamanho atual do diário, para decidir a compactação. */
+    static long notesJournalSize() {
+        return journal.size();
+    }
+
+    /* ----------------------------- várias notas ----------------------------- */
+
+    public static String activeNoteId() {
+        return activeNote;
+    }
+
+    /** Lista das notas (lê o índice na primeira chamada); a ativa é conferida no disco. */
+    public static java.util.List<NoteInfo> listNotes(AppSettings s) {
+        ensureDirs();
+        syncActiveNote(s);
+        return NOTES.list();
+    }
+
+    /** Cria uma nota vazia e devolve o id (não troca a nota ativa). */
+    public static String createNote() throws IOException {
+        ensureDirs();
+        String id;
+        long t = System.currentTimeMillis();
+        do { id = Long.toString(t++, 36); } while (STORE.exists(NoteIndex.textKey(id)));
+        STORE.put(NoteIndex.textKey(id), new byte[0]);
+        NOTES.put(new NoteInfo(id, "", 0, System.currentTimeMillis(), "cinza"));
+        return id;
+    }
+
+    /**
+     * Torna {@code id} a nota ativa: carrega a prioridade dela nas preferências.
+     * Quem chama grava antes as edições pendentes e depois põe o texto (loadNotes) no editor.
+     */
+    public static void switchNote(String id, AppSettings s) {
+        ensureDirs();
+        if (id == null || id.equals(activeNote) || !STORE.exists(NoteIndex.textKey(id))) return;
+        syncActiveNote(s);
+        useNote(id);
+        NoteInfo n = NOTES.refresh(id, "cinza");
+        s.setActiveNoteId(id);
+        s.setPriorityColor(n.priority());
+        s.setCaretLine(-1);
+        saveSettings(s);
+        SearchIndex index = INDEX;
+        if (index != null) index.noteChanged();
+    }
+
+    /** Prioridade (cor) da nota ativa: metadado da nota, espelhado nas preferências. */
+    public static void setNotePriority(AppSettings s, String color) {
+        s.setPriorityColor(color);
+        saveSettings(s);
+        syncActiveNote(s);
+    }
+
+    /** Prioridade (cor) gravada da nota {@code id}; "cinza" se ela não está no índice. */
+    public static String notePriority(String id) {
+        NoteInfo n = NOTES.get(id);
+        return n == null ? "cinza" : n.priority();
+    }
+
+    /** Tamanho/título da nota ativa conferidos no disco; a prioridade vale a das preferências. */
+    private static void syncActiveNote(AppSettings s) {
+        NoteInfo n = NOTES.refresh(activeNote, s.getPriorityColor());
+        if (!n.priority().equals(s.getPriorityColor())) NOTES.put(n.withPriority(s.getPriorityColor()));
+    }
+
+    private static void useNote(String id) {
+        synchronized (NOTE_LOCK) {
+            if (id.equals(activeNote)) return;
+            activeNote = id;
+            journal = new NotesJournal(STORE, NoteIndex.journalKey(id));
+            BACKUPS.useNote(id);
+        }
     }
 
-    public static void importFrom(File file) throws IOException {
+    /** Exporta o conteúdo atual (snapshot + diário) para um .txt. */
+    public static void exportTo(File file) throws IOException {
         ensureDirs();
         if (file == null) return;
-        String content = Files.readString(file.toPath(), StandardCharsets.UTF_8);
-        saveNotes(content);
+        Files.writeString(file.toPath(), loadNotes(), StandardCharsets.UTF_8);
+    }
+
+    /** Lê um .txt para importar; quem chama põe no editor e o NotesSaver persiste. */
+    public static String importFrom(File file) throws IOException {
+        if (file == null) return null;
+        return Files.readString(file.toPath(), StandardCharsets.UTF_8);
     }
 
     public static File notesFolder() {
         return new File(APP_DIR);
     }
 
-    public static void backupNow() {
+    /* ----------------------------- backups ----------------------------- */
+
+    /**
+     * Snapshot deduplicado das notas atuais: só os blocos alterados são gravados,
+     * depois aplica a retenção configurada. Conteúdo igual ao último backup não gera snapshot.
+     */
+    public static void backupNow(AppSettings s) {
+        try { backup(s); } catch (IOException ignored) {}
+    }
+
+    /** Mesmo que backupNow, devolvendo o que foi gravado (SnapshotScheduler). */
+    static BackupStore.Result backup(AppSettings s) throws IOException {
         ensureDirs();
-        String fname = "notes-" + System.currentTimeMillis() + ".txt";
-        try {
-            Files.copy(NOTES_FILE, BACKUP_DIR.resolve(fname));
-        } catch (IOException ignored) {}
+        String note, text;
+        synchronized (NOTE_LOCK) { // só a cópia: texto e nota do mesmo instante; blocos e disco fora do lock
+            note = activeNote;
+            text = loadNotes();
+        }
+        BackupStore.Result r = BACKUPS.backup(note, text.getBytes(StandardCharsets.UTF_8), retention(s));
+        SearchIndex index = INDEX;
+        if (index != null && r.snapshotId() != 0) index.backupsChanged();
+        return r;
+    }
+
+    /** Ids (instante em ms) dos backups da nota ativa, do mais antigo ao mais novo. */
+    public static java.util.List<Long> listBackups() {
+        try { return BACKUPS.snapshotIds(); } catch (IOException e) { return java.util.List.of(); }
+    }
+
+    /** Conteúdo de um backup. */
+    public static String readBackup(long id) throws IOException {
+        return new String(BACKUPS.restore(id), StandardCharsets.UTF_8);
+    }
+
+    /* ----------------------------- busca ----------------------------- */
+
+    /** Abre (em segundo plano) o índice de busca da nota e dos backups, em ~/.docknotas/index. */
+    public static SearchIndex openSearchIndex(javax.swing.text.Document doc) {
+        ensureDirs();
+        SearchIndex index = new SearchIndex(Path.of(APP_DIR, "index"), BACKUPS, doc).start();
+        INDEX = index;
+        return index;
+    }
+
+    private static BackupStore.Retention retention(AppSettings s) {
+        return new BackupStore.Retention(s.getBackupKeepLast(), s.getBackupKeepHourly(), s.getBackupKeepDaily(),
+                s.getBackupKeepWeekly(), s.getBackupKeepMonthly());
     }
 
     /* ----------------------------- util ----------------------------- */
 
+    /**
+     * Grava num temporário da mesma pasta, força para o disco e troca pelo destino com rename atômico.
+     * Sem o force, uma queda de energia logo após o rename pode deixar o destino vazio ou truncado.
+     */
+    static void writeAtomically(Path target, byte[] data) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                java.nio.ByteBuffer buf = java.nio.ByteBuffer.wrap(data);
+                while (buf.hasRemaining()) ch.write(buf);
+                ch.force(true);
+            }
+            replace(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** writeAtomically em fluxo: o temporário recebe o que w escrever; w desistiu = destino intacto, false. */
+    static boolean writeAtomically(Path target, NoteStore.ValueWriter w) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (!w.writeTo(ch)) return false;
+                ch.force(true);
+            }
+            replace(tmp, target);
+            return true;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Rename atômico do temporário (já no disco) sobre o destino; depois, fsync da pasta onde o SO permite. */
+    private static void replace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try (FileChannel dir = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            dir.force(true); // registra o rename; no Windows abrir pasta falha e o NTFS já faz isso
+        } catch (IOException ignored) {}
+    }
+
     private static int parseInt(String s, int def) {
         try { return Integer.parseInt(s); } catch (Exception e) { return def; }
     }
@@ -1,11 +1,19 @@
 package org.docknotas.ui;
 
 import org.docknotas.settings.AppSettings;
+import org.docknotas.storage.NotesSaver;
+import org.docknotas.storage.SearchIndex;
+import org.docknotas.storage.SnapshotScheduler;
 import org.docknotas.storage.Storage;
 import org.docknotas.ui.components.ContextMenuFactory;
+import org.docknotas.ui.components.FindBar;
 import org.docknotas.ui.components.HeaderBar;
 import org.docknotas.ui.components.LineRuledTextArea;
+import org.docknotas.ui.text.LazyNotesLoader;
+import org.docknotas.ui.util.ChromeCache;
+import org.docknotas.ui.util.ScreenGeometry;
 import org.docknotas.ui.util.UiTheme;
+import org.docknotas.ui.windows.SearchDialog;
 
 import javax.swing.*;
 import java.awt.*;
@@ -22,40 +30,20 @@ public class BlockinhoFrame extends JFrame {
 
     private final AppSettings settings;
     private final LineRuledTextArea textArea = new LineRuledTextArea();
-    private final JPanel card = new JPanel(new BorderLayout()) {
-        @Override protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            Graphics2D g2 = (Graphics2D) g.create();
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-            // fundo do card conforme tema
-            if ("light".equalsIgnoreCase(settings.getTheme())) {
-                g2.setColor(new Color(0xFAFAFA));
-            } else {
-                g2.setColor(new Color(0x111418));
-            }
-            int arc = 14;
-            g2.fillRoundRect(0, 0, getWidth(), getHeight(), arc, arc);
-
-            // borda
-            g2.setStroke(new BasicStroke(2f));
-            g2.setColor(UiTheme.priorityBorder(settings.getPriorityColor()));
-            g2.drawRoundRect(1, 1, getWidth()-2, getHeight()-2, arc, arc);
-
-            // faixa/tags lateral (cor da prioridade)
-            g2.setColor(UiTheme.priorityTag(settings.getPriorityColor()));
-            g2.fillRoundRect(6, 10, 6, getHeight()-20, 8, 8);
-
-            g2.dispose();
-        }
-    };
+    private final Card card;
 
     private JScrollPane scroll;
     private HeaderBar header;
+    private final NotesSaver saver;
+    private LazyNotesLoader loader; // null quando a nota foi lida de uma vez
+    private final SnapshotScheduler snapshots;
+    private final SearchIndex searchIndex;
+    private SearchDialog searchDialog; // criado no primeiro uso
 
     public BlockinhoFrame(AppSettings settings) {
         super("DockNotas");
         this.settings = settings;
+        this.card = new Card(settings);
 
         // aparência básica
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
@@ -68,14 +56,15 @@ public class BlockinhoFrame extends JFrame {
         Dimension initial = settings.getNotePopupSize() != null ? settings.getNotePopupSize() : new Dimension(420, 520);
         setSize(initial);
         if (settings.getBarLocation() != null) {
-            setLocation(settings.getBarLocation());
+            // dentro da área útil de um monitor ligado
+            setLocation(ScreenGeometry.fit(new Rectangle(settings.getBarLocation(), initial)));
         } else {
             setLocationRelativeTo(null);
         }
 
         // header/barrinha dentro da janela
         header = new HeaderBar(() -> {
-            try { Storage.saveNotes(textArea.getText()); } catch (Exception ignore) {}
+            try { flushNotes(); Storage.flushSettings(settings); } catch (Exception ignore) {}
             System.exit(0);
         }, this::showContextMenu);
 
@@ -87,11 +76,16 @@ public class BlockinhoFrame extends JFrame {
         textArea.setRequestFocusEnabled(true);
         textArea.setLineWrap(true);
         textArea.setWrapStyleWord(true);
-        textArea.setText(Storage.loadNotes());
         textArea.setLineHeight(settings.getLineSpacing());
         applyTheme(settings.getTheme());
         applyFontAndZoom();
-        textArea.addCaretListener(e -> Storage.saveNotes(textArea.getText()));
+        // Ctrl+roda / Ctrl+= / Ctrl+-: grava o zoom uma vez, quando o gesto para
+        textArea.setOnZoomSettled(z -> { settings.setZoomPercent(z); Storage.saveSettings(settings); });
+        saver = new NotesSaver(textArea.getDocument(), settings.isNotesJournal());
+        loader = LazyNotesLoader.start(textArea, saver, settings.getCaretLine());
+        if (loader == null) saver.withoutTracking(() -> textArea.setText(Storage.loadNotes()));
+        snapshots = new SnapshotScheduler(saver, settings).start();
+        searchIndex = Storage.openSearchIndex(textArea.getDocument());
 
         // A rolagem transparente acompanha o card
         scroll = new JScrollPane(textArea);
@@ -103,6 +97,7 @@ public class BlockinhoFrame extends JFrame {
         card.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
         card.setOpaque(true);
         card.add(scroll, BorderLayout.CENTER);
+        card.add(new FindBar(textArea), BorderLayout.SOUTH); // Ctrl+F
 
         add(card, BorderLayout.CENTER);
 
@@ -113,12 +108,13 @@ public class BlockinhoFrame extends JFrame {
             }
         });
 
-        // redimensionamento: salva tamanho
+        // redimensionamento: re-quebra e salva o tamanho uma vez, quando assenta
         addComponentListener(new java.awt.event.ComponentAdapter() {
             @Override public void componentResized(java.awt.event.ComponentEvent e) {
-                Dimension d = getSize();
-                settings.setNotePopupSize(d);
-                Storage.saveSettings(settings);
+                textArea.deferReflow(() -> {
+                    settings.setNotePopupSize(getSize());
+                    Storage.saveSettings(settings);
+                });
             }
             @Override public void componentMoved(java.awt.event.ComponentEvent e) {
                 Point p = getLocation();
@@ -142,22 +138,16 @@ public class BlockinhoFrame extends JFrame {
     }
 
     public void applyTheme(String themeName) {
-        boolean light = "light".equalsIgnoreCase(themeName);
-        if (light) {
-            textArea.setBackground(new Color(0xFAFAFA));
-            textArea.setForeground(Color.DARK_GRAY);
-        } else {
-            textArea.setBackground(new Color(0x111418));
-            textArea.setForeground(new Color(0xE8E8E8));
-        }
+        UiTheme.Palette p = UiTheme.palette(themeName, settings.getPriorityColor(), settings.getColorStrengthPercent());
+        textArea.setBackground(p.editorBg);
+        textArea.setForeground(p.editorFg);
+        textArea.setGuidelineColor(p.guideline);
         card.repaint();
         textArea.repaint();
     }
 
     public void applyFontAndZoom() {
-        float px = (float)(settings.getFontSize() * settings.getZoomPercent() / 100.0);
-        textArea.setFont(textArea.getFont().deriveFont(px));
-        textArea.repaint();
+        textArea.setZoom(settings.getFontSize(), settings.getZoomPercent());
     }
 
     public void applyLineSpacing(int spacing) {
@@ -170,21 +160,77 @@ public class BlockinhoFrame extends JFrame {
         header.repaint();
     }
 
+    /** Grava já as edições pendentes do editor e lembra a linha do cursor. */
+    public void flushNotes() {
+        // edições feitas durante a carga progressiva: termina a carga para gravá-las junto com a nota inteira
+        if (loader != null && saver.isLoading() && saver.isDirty()) loader.finishNow();
+        if (!saver.isLoading()) {
+            try { settings.setCaretLine(textArea.getLineOfOffset(textArea.getCaretPosition())); }
+            catch (Exception ignore) {}
+        }
+        saver.flush();
+    }
+
+    /** Busca na nota e nos backups. */
+    public void openSearch() {
+        if (searchDialog == null) searchDialog = new SearchDialog(this, searchIndex, textArea);
+        searchDialog.showAndFocus();
+    }
+
+    /** Troca a nota do editor (null = cria uma nova). */
+    public void switchNote(String id) {
+        if (saver.isLoading() || Storage.activeNoteId().equals(id)) return;
+        // grava a nota atual antes de criar a nova: falhou = nenhuma nota vazia sobrando no índice
+        flushNotes();
+        if (saver.isDirty()) {
+            JOptionPane.showMessageDialog(this, "Não foi possível gravar a nota atual.", "Erro", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        try {
+            if (id == null) id = Storage.createNote();
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        Storage.switchNote(id, settings);
+        loader = LazyNotesLoader.start(textArea, saver, -1);
+        if (loader == null) saver.withoutTracking(() -> textArea.setText(Storage.loadNotes()));
+        refreshPriorityColors();
+        requestTextFocus();
+    }
+
     public void requestTextFocus() {
         SwingUtilities.invokeLater(() -> {
             textArea.requestFocusInWindow();
-            textArea.setCaretPosition(textArea.getDocument().getLength());
+            if (!saver.isLoading()) textArea.setCaretPosition(textArea.getDocument().getLength());
         });
     }
 
     /* ===================== menu ===================== */
 
+    private void showBackupStats() {
+        SnapshotScheduler.Stats st = snapshots.stats();
+        JOptionPane.showMessageDialog(this,
+                "Automatic backups: " + st.snapshots() + " (unchanged, skipped: " + st.skipped() + ")\n"
+                        + "New chunks written: " + st.newChunks() + " (" + st.bytesWritten() / 1024 + " KB)\n"
+                        + "Time spent: " + st.millisSpent() + " ms\n"
+                        + "Backups kept: " + Storage.listBackups().size(),
+                "Info", JOptionPane.INFORMATION_MESSAGE);
+    }
+
     private void showContextMenu(MouseEvent trigger) {
         JPopupMenu menu = ContextMenuFactory.build(
                 this,
                 settings,
-                textArea::getText,
-                text -> { textArea.setText(text == null ? "" : text); requestTextFocus(); },
+                this::flushNotes,
+                this::openSearch,
+                this::showBackupStats,
+                this::switchNote,
+                text -> {
+                    if (loader != null) loader.cancel();
+                    textArea.setText(text == null ? "" : text);
+                    requestTextFocus();
+                },
                 // callbacks de UI:
                 () -> { applyTheme(settings.getTheme()); requestTextFocus(); },
                 () -> { applyFontAndZoom(); requestTextFocus(); },
@@ -204,4 +250,37 @@ public class BlockinhoFrame extends JFrame {
         int y = header.getHeight() + 4;
         menu.show(header, x, y);
     }
+
+    /** Card do editor: fundo conforme o tema, borda e faixa lateral na cor da prioridade. */
+    public static class Card extends JPanel {
+        private final AppSettings settings;
+
+        public Card(AppSettings settings) {
+            super(new BorderLayout());
+            this.settings = settings;
+        }
+
+        @Override protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            ChromeCache.draw(g, "blockinhoCard", UiTheme.palette(settings), getWidth(), getHeight(), Card::paintChrome);
+        }
+
+        private static void paintChrome(Graphics2D g2, UiTheme.Palette p, int w, int h) {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            // fundo do card conforme tema
+            g2.setColor(p.editorBg);
+            int arc = 14;
+            g2.fillRoundRect(0, 0, w, h, arc, arc);
+
+            // borda
+            g2.setStroke(new BasicStroke(2f));
+            g2.setColor(p.border);
+            g2.drawRoundRect(1, 1, w-2, h-2, arc, arc);
+
+            // faixa/tags lateral (cor da prioridade)
+            g2.setColor(p.tag);
+            g2.fillRoundRect(6, 10, 6, h-20, 8, 8);
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package org.docknotas.ui.components;
 
 import org.docknotas.settings.AppSettings;
+import org.docknotas.storage.NoteInfo;
 import org.docknotas.storage.Storage;
 import org.docknotas.ui.util.UiTheme;
 
@@ -14,7 +15,10 @@ public class ContextMenuFactory {
     public static JPopupMenu build(
             Component anchor,
             AppSettings settings,
-            java.util.function.Supplier<String> getText,
+            Runnable saveNotes,
+            Runnable openSearch,
+            Runnable showBackupStats,
+            java.util.function.Consumer<String> switchNote,
             java.util.function.Consumer<String> setText,
             Runnable onThemeApplied,
             Runnable onFontOrZoomApplied,
@@ -31,34 +35,50 @@ public class ContextMenuFactory {
                 new EmptyBorder(6,8,6,8)
         ));
 
+        // BUSCA (nota + backups)
+        menu.add(mi("Search...", openSearch));
+
+        // NOTAS (null = nova nota)
+        JMenu notas = theMenu("Notas");
+        String active = Storage.activeNoteId();
+        for (NoteInfo n : Storage.listNotes(settings)) {
+            JCheckBoxMenuItem it = themedCheck(n.label(), n.id().equals(active));
+            it.addActionListener(e -> switchNote.accept(n.id()));
+            notas.add(it);
+        }
+        notas.addSeparator();
+        notas.add(mi("Nova nota", () -> switchNote.accept(null)));
+        menu.add(notas);
+
         // FILE
         JMenu file = theMenu("File");
         file.add(mi("New (clear)", () -> {
             if (confirm(anchor, "Clear current notes?")) {
                 setText.accept("");
-                Storage.saveNotes("");
+                saveNotes.run();
             }
         }));
-        file.add(mi("Save", () -> Storage.saveNotes(getText.get())));
+        file.add(mi("Save", saveNotes));
         file.add(mi("Save As...", () -> {
             JFileChooser fc = new JFileChooser(); fc.setSelectedFile(new File("DockNotas.txt"));
             if (fc.showSaveDialog(anchor)==JFileChooser.APPROVE_OPTION) {
-                try { Storage.exportTo(fc.getSelectedFile()); } catch (Exception ex) { error(anchor, ex.getMessage()); }
+                try { saveNotes.run(); Storage.exportTo(fc.getSelectedFile()); } catch (Exception ex) { error(anchor, ex.getMessage()); }
             }
         }));
         file.addSeparator();
         file.add(mi("Import .txt...", () -> {
             JFileChooser fc = new JFileChooser();
             if (fc.showOpenDialog(anchor)==JFileChooser.APPROVE_OPTION) try {
-                Storage.importFrom(fc.getSelectedFile());
-                setText.accept(Storage.loadNotes());
+                String text = Storage.importFrom(fc.getSelectedFile());
+                if (text != null) setText.accept(text);
             } catch (Exception ex) { error(anchor, ex.getMessage()); }
         }));
         file.add(mi("Open notes folder", () -> { try { Desktop.getDesktop().open(Storage.notesFolder()); } catch (Exception ex) { error(anchor, ex.getMessage()); } }));
-        file.add(mi("Backup now", Storage::backupNow));
+        file.add(mi("Backup now", () -> { saveNotes.run(); Storage.backupNow(settings); }));
+        file.add(mi("Backup stats", showBackupStats));
         file.addSeparator();
         file.add(mi("Exit", () -> {
-            try { Storage.saveNotes(getText.get()); } catch (Exception ignore) {}
+            try { saveNotes.run(); Storage.flushSettings(settings); } catch (Exception ignore) {}
             System.exit(0);
         }));
         menu.add(file);
@@ -105,7 +125,7 @@ public class ContextMenuFactory {
         ButtonGroup pg = new ButtonGroup();
         for (String opt : new String[]{"Vermelho","Laranja","Amarelo","Verde","Azul","Roxo","Cinza"}) {
             JRadioButtonMenuItem it = themedRadio(opt, opt.equalsIgnoreCase(settings.getPriorityColor()));
-            it.addActionListener(e -> { settings.setPriorityColor(opt.toLowerCase()); Storage.saveSettings(settings); onPriorityApplied.run(); });
+            it.addActionListener(e -> { Storage.setNotePriority(settings, opt.toLowerCase()); onPriorityApplied.run(); });
             pg.add(it); prioridade.add(it);
         }
         cfg.add(prioridade);
@@ -125,6 +145,7 @@ public class ContextMenuFactory {
                 • ×: sair do programa
                 • Clique direito na barrinha: menu
                 • Ctrl+S: salvar
+                • Ctrl+F: localizar/substituir · Ctrl+Z / Ctrl+Y: desfazer/refazer
                 """)));
         help.add(mi("Sobre", () -> info(anchor, "DockNotas — barrinha + bloco com linhas (janela única)")));
         menu.add(help);
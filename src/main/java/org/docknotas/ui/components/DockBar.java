@@ -1,66 +1,63 @@
 package org.docknotas.ui.components;
 
+import org.docknotas.StartupTrace;
 import org.docknotas.settings.AppSettings;
+import org.docknotas.storage.NoteInfo;
 import org.docknotas.storage.Storage;
+import org.docknotas.ui.util.ChromeCache;
+import org.docknotas.ui.util.ScreenGeometry;
+import org.docknotas.ui.util.UiTheme;
 import org.docknotas.ui.windows.NotesWindow;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.function.Supplier;
 
 /**
  * Barrinha flutuante que cola nas bordas e abre/fecha o NotesWindow.
+ * – O NotesWindow só é montado na primeira vez que precisa aparecer
  * – Clique esquerdo: abre/fecha
+ * – Clique direito: lista de notas (trocar / nova)
  * – “×”: sair salvando
  * – Arrastar: move; com bloco aberto mantém ancorado ao lado/abaixo
- * – Orientação muda conforme borda mais próxima (H/V)
+ * – Orientação muda conforme borda mais próxima (H/V), na tela (monitor) onde a barrinha está
+ * – Arrasto no ritmo da tela (Drag): só move janelas; cola e grava ao soltar
  */
 public class DockBar {
 
     private final JWindow bar = new JWindow();
-    private final Handle handle = new Handle();
+    private final Handle handle;
 
-    private final NotesWindow notes;
+    private final Supplier<NotesWindow> notesFactory;
+    private NotesWindow notes; // null até a primeira abertura
     private final AppSettings settings;
 
-    private final Dimension sizeH = new Dimension(90, 28);
-    private final Dimension sizeV = new Dimension(28, 90);
-
-    /* ===== paleta pela prioridade (opacidade = intensidade %) ===== */
-    private static class Pri { final Color header; Pri(Color c){ header=c; } }
-    private Pri pri(String name){
-        if (name == null) name = "cinza";
-        int a = (int)(Math.max(40, Math.min(100, settings.getColorStrengthPercent()))/100.0 * 230);
-        return switch (name.toLowerCase()) {
-            case "vermelho" -> new Pri(new Color(196,44,44,a));
-            case "laranja"  -> new Pri(new Color(210,120,30,a));
-            case "amarelo"  -> new Pri(new Color(180,160,20,a));
-            case "verde"    -> new Pri(new Color(32,140,72,a));
-            case "azul"     -> new Pri(new Color(34,93,170,a));
-            case "roxo"     -> new Pri(new Color(108,54,160,a));
-            default         -> new Pri(new Color(30,30,36,a));
-        };
-    }
+    private static final Dimension sizeH = new Dimension(90, 28);
+    private static final Dimension sizeV = new Dimension(28, 90);
 
-    public DockBar(NotesWindow notes, AppSettings settings) {
-        this.notes = notes;
+    public DockBar(Supplier<NotesWindow> notesFactory, AppSettings settings) {
+        this.notesFactory = notesFactory;
         this.settings = settings;
+        this.handle = new Handle(settings);
 
         bar.setBackground(new Color(0,0,0,0));
         bar.setAlwaysOnTop(settings.isAlwaysOnTop());
         bar.getContentPane().add(handle);
-        handle.setPreferredSize(isVertical() ? sizeV : sizeH);
+        handle.setPreferredSize("vertical".equalsIgnoreCase(settings.getBarOrientation()) ? sizeV : sizeH);
         handle.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
         handle.setToolTipText("Clique: abrir/fechar • Arraste: mover • ×: sair");
         bar.pack();
 
         // posição inicial
-        if (settings.getBarLocation() != null) bar.setLocation(settings.getBarLocation());
+        // posição salva pode ser de um monitor que não está mais ligado
+        if (settings.getBarLocation() != null) bar.setLocation(ScreenGeometry.fit(new Rectangle(settings.getBarLocation(), bar.getSize())));
         else positionNearTaskbar();
 
         setOrientation(settings.getBarOrientation());
         hookMouse();
+        ScreenGeometry.watch(handle);
 
         bar.setVisible(false); // App decide quando mostrar
     }
@@ -71,25 +68,46 @@ public class DockBar {
         bar.toFront();
         if (settings.isStartMinimized()) {
             snapCollapsedToEdge();
+            // --benchmark-startup: simula o primeiro clique para medir até o editor
+            if (StartupTrace.ENABLED) SwingUtilities.invokeLater(this::openNotes);
         } else {
-            anchorStackedLayout();   // barrinha “em cima” e bloco colado na borda
-            notes.showAndFocus();
+            SwingUtilities.invokeLater(this::openNotes); // a barrinha pinta antes de montar o bloco
         }
     }
 
+    private NotesWindow notes() {
+        if (notes == null) notes = notesFactory.get();
+        return notes;
+    }
+
+    private boolean notesOpen() {
+        return notes != null && notes.isVisible();
+    }
+
+    /** Mostra o bloco colado à barrinha (clique, partida aberta, treino de CDS). */
+    public NotesWindow openNotes() {
+        anchorStackedLayout();   // barrinha “em cima” e bloco colado na borda
+        NotesWindow n = notes();
+        n.showAndFocus();
+        return n;
+    }
+
     /* ===================== interação ===================== */
     private void hookMouse() {
         // Clique normal abre/fecha; clicar no “×” sai
         handle.addMouseListener(new MouseAdapter() {
             @Override public void mouseClicked(MouseEvent e) {
+                if (SwingUtilities.isRightMouseButton(e)) {
+                    showNotesMenu(e.getPoint());
+                    return;
+                }
                 if (handle.isCloseHit(e.getPoint())) {
-                    try { Storage.saveNotes(notes.getEditorText()); } catch (Exception ignore) {}
+                    try { if (notes != null) notes.flushNotes(); Storage.flushSettings(settings); } catch (Exception ignore) {}
                     System.exit(0);
                     return;
                 }
-                if (!notes.isVisible()) {
-                    anchorStackedLayout();
-                    notes.showAndFocus();
+                if (!notesOpen()) {
+                    openNotes();
                 } else {
                     notes.setVisible(false);
                     snapCollapsedToEdge();
@@ -99,109 +117,134 @@ public class DockBar {
         });
 
         // Arrastar
-        MouseAdapter dragger = new MouseAdapter() {
-            Point start;
-            @Override public void mousePressed(MouseEvent e) { start = e.getPoint(); }
-            @Override public void mouseDragged(MouseEvent e) {
-                Point p = bar.getLocation();
-                bar.setLocation(p.x + e.getX() - start.x, p.y + e.getY() - start.y);
-
-                if (!notes.isVisible()) {
-                    snapCollapsedToEdge();
-                } else {
-                    updateOrientationByPosition();
-                    anchorPopup();
-                }
+        Drag drag = new Drag();
+        handle.addMouseListener(drag);
+        handle.addMouseMotionListener(drag);
+    }
 
-                settings.setBarLocation(bar.getLocation());
-                Storage.saveSettings(settings);
-            }
-            @Override public void mouseReleased(MouseEvent e) {
-                if (!notes.isVisible()) snapCollapsedToEdge();
-                settings.setBarLocation(bar.getLocation());
-                Storage.saveSettings(settings);
+    /**
+     * Arrasto da barrinha no ritmo da tela.
+     * – Eventos de movimento só guardam o destino; um Timer no intervalo de quadro (taxa de atualização do monitor)
+     *   aplica o último: dez eventos entre dois quadros = uma mudança de posição
+     * – Durante o arrasto só move as janelas (barrinha e, aberto, o bloco ao lado); a orientação só vira quando
+     *   cruza a faixa da borda (DockGeometry.verticalWhileDragging, com folga para não oscilar)
+     * – Ao soltar: aplica o que faltou, cola na borda (bloco fechado) e grava as preferências uma vez
+     */
+    private final class Drag extends MouseAdapter {
+        private static final int FALLBACK_HZ = 60;
+
+        private final Timer frame = new Timer(1000 / FALLBACK_HZ, e -> tick());
+        private Point grab;      // ponto agarrado, relativo à barrinha
+        private Point target;    // destino ainda não aplicado (tela)
+        private boolean moved;
+
+        Drag() { frame.setCoalesce(true); }
+
+        @Override public void mousePressed(MouseEvent e) {
+            if (!SwingUtilities.isLeftMouseButton(e)) return;
+            grab = e.getPoint();
+            target = null;
+            moved = false;
+            frame.setDelay(frameMillis());
+            ScreenGeometry.invalidate(); // telas relidas agora, não num quadro do arrasto
+        }
+
+        @Override public void mouseDragged(MouseEvent e) {
+            if (grab == null) return;
+            Point p = e.getLocationOnScreen();
+            target = new Point(p.x - grab.x, p.y - grab.y);
+            moved = true;
+            if (!frame.isRunning()) {
+                tick();          // o primeiro movimento sai na hora
+                frame.start();
             }
-        };
-        handle.addMouseListener(dragger);
-        handle.addMouseMotionListener(dragger);
+        }
+
+        @Override public void mouseReleased(MouseEvent e) {
+            if (grab == null) return;
+            grab = null;
+            frame.stop();
+            tick();
+            if (!moved) return;  // clique: o mouseClicked cuida
+
+            if (!notesOpen()) snapCollapsedToEdge();
+            settings.setBarOrientation(handle.orientation());
+            settings.setBarLocation(bar.getLocation());
+            Storage.saveSettings(settings);
+        }
+
+        /** Um quadro: aplica o último destino; sem movimento desde o quadro anterior, o Timer para. */
+        private void tick() {
+            if (target == null) { frame.stop(); return; }
+            bar.setLocation(target);
+            target = null;
+            if (!notesOpen()) return;
+
+            ScreenGeometry.Screen scr = screen(); // pode ter passado para outro monitor
+            boolean vertical = DockGeometry.verticalWhileDragging(scr.bounds(), bar.getLocation(), bar.getSize(),
+                    handle.isVertical(), sizeH);
+            if (vertical != handle.isVertical()) resizeFor(vertical);
+            notes.setLocation(DockGeometry.beside(scr.bounds(), scr.insets(), bar.getLocation(),
+                    bar.getSize(), notes.getSize(), vertical));
+        }
+
+        private int frameMillis() {
+            int hz = DisplayMode.REFRESH_RATE_UNKNOWN;
+            GraphicsConfiguration gc = bar.getGraphicsConfiguration();
+            if (gc != null) hz = gc.getDevice().getDisplayMode().getRefreshRate();
+            if (hz <= 0) hz = FALLBACK_HZ;
+            return Math.max(1, 1000 / hz);
+        }
+    }
+
+    /** Notas para trocar (a lista só é lida do índice aqui, não na partida). */
+    private void showNotesMenu(Point at) {
+        JPopupMenu menu = new JPopupMenu();
+        String active = Storage.activeNoteId();
+        for (NoteInfo n : Storage.listNotes(settings)) {
+            JCheckBoxMenuItem it = new JCheckBoxMenuItem(n.label(), n.id().equals(active));
+            it.addActionListener(e -> { notes().switchNote(n.id()); openAfterSwitch(); });
+            menu.add(it);
+        }
+        menu.addSeparator();
+        JMenuItem add = new JMenuItem("New note");
+        add.addActionListener(e -> { notes().newNote(); openAfterSwitch(); });
+        menu.add(add);
+        menu.show(handle, at.x, at.y);
+    }
+
+    private void openAfterSwitch() {
+        if (!notesOpen()) openNotes();
+        handle.repaint(); // cor da prioridade é da nota
     }
 
     /* ===================== layout/ancoragem ===================== */
 
     /** Barrinha “em cima” e bloco colado na borda apropriada. */
     private void anchorStackedLayout() {
-        Rectangle s = screenBounds(); Insets in = screenInsets();
-        Point b = bar.getLocation();
-        boolean vertical = isVertical();
-
-        if (vertical) {
-            boolean left = b.x < s.getCenterX();
-            int popX = left ? (s.x + in.left + 6) : (s.x + s.width - in.right - notes.getWidth() - 6);
-            int popY = clamp(s.y + in.top + 8, b.y - 8, s.y + s.height - in.bottom - notes.getHeight() - 8);
-            notes.setLocation(popX, popY);
-
-            int barX = left ? (popX + notes.getWidth() + 6) : (popX - bar.getWidth() - 6);
-            int barY = clamp(s.y + in.top + 8, popY - 8, s.y + s.height - in.bottom - bar.getHeight() - 8);
-            bar.setLocation(barX, barY);
-        } else {
-            boolean bottom = b.y > s.getCenterY();
-            int popY = bottom ? (s.y + s.height - in.bottom - notes.getHeight() - 6) : (s.y + in.top + 6);
-            int popX = clamp(s.x + in.left + 8,
-                    b.x - (notes.getWidth()/2) + (bar.getWidth()/2),
-                    s.x + s.width - in.right - notes.getWidth() - 8);
-            notes.setLocation(popX, popY);
-
-            int barY = bottom ? (popY - bar.getHeight() - 6) : (popY + notes.getHeight() + 6);
-            int barX = clamp(s.x + in.left + 8, b.x, s.x + s.width - in.right - bar.getWidth() - 8);
-            bar.setLocation(barX, barY);
-        }
+        NotesWindow notes = notes();
+        ScreenGeometry.Screen scr = screen();
+        DockGeometry.Stack st = DockGeometry.stacked(scr.bounds(), scr.insets(), bar.getLocation(),
+                bar.getSize(), notes.getSize(), isVertical());
+        notes.setLocation(st.notes());
+        bar.setLocation(st.bar());
 
         settings.setBarLocation(bar.getLocation());
         Storage.saveSettings(settings);
     }
 
-    /** Mantém o bloco ao lado/abaixo enquanto arrasta com bloco aberto. */
-    private void anchorPopup() {
-        Rectangle s = screenBounds(); Insets in = screenInsets(); Point b = bar.getLocation();
-        int px, py;
-        if (isVertical()) {
-            boolean atRight = b.x + bar.getWidth() > s.x + s.width - 60 - in.right;
-            px = atRight ? b.x - notes.getWidth() - 8 : b.x + bar.getWidth() + 8;
-            py = clamp(s.y + in.top + 8, b.y, s.y + s.height - notes.getHeight() - in.bottom - 8);
-        } else {
-            boolean bottom = b.y + bar.getHeight() > s.y + s.height - 60 - in.bottom;
-            px = clamp(s.x + in.left + 8, b.x, s.x + s.width - notes.getWidth() - in.right - 8);
-            py = bottom ? b.y - notes.getHeight() - 8 : b.y + bar.getHeight() + 8;
-        }
-        notes.setLocation(px, py);
-    }
-
     /** Cola a barrinha na borda mais próxima quando o bloco está fechado. */
     private void snapCollapsedToEdge() {
-        Rectangle s = screenBounds(); Insets in = screenInsets();
-        Point p = bar.getLocation();
-
-        int distLeft   = Math.abs(p.x - (s.x + in.left + 4));
-        int distRight  = Math.abs((s.x + s.width - in.right - bar.getWidth() - 4) - p.x);
-        int distTop    = Math.abs(p.y - (s.y + in.top + 4));
-        int distBottom = Math.abs((s.y + s.height - in.bottom - bar.getHeight() - 4) - p.y);
-
-        int min = Math.min(Math.min(distLeft, distRight), Math.min(distTop, distBottom));
-        if (min == distLeft || min == distRight) {
-            setOrientation("vertical");
-            int x = (min == distLeft) ? (s.x + in.left + 4) : (s.x + s.width - in.right - bar.getWidth() - 4);
-            int y = clamp(s.y + in.top + 8, p.y, s.y + s.height - in.bottom - bar.getHeight() - 8);
-            bar.setLocation(x, y);
-        } else {
-            setOrientation("horizontal");
-            int y = (min == distTop) ? (s.y + in.top + 4) : (s.y + s.height - in.bottom - bar.getHeight() - 4);
-            int x = clamp(s.x + in.left + 8, p.x, s.x + s.width - in.right - bar.getWidth() - 8);
-            bar.setLocation(x, y);
-        }
+        ScreenGeometry.Screen scr = screen();
+        DockGeometry.Snap snap = DockGeometry.snapToEdge(scr.bounds(), scr.insets(), bar.getLocation(),
+                bar.getSize(), sizeH, sizeV);
+        setOrientation(snap.vertical() ? "vertical" : "horizontal");
+        bar.setLocation(snap.bar());
     }
 
     private void positionNearTaskbar() {
-        Rectangle s = screenBounds(); Insets in = screenInsets();
+        ScreenGeometry.Screen scr = screen();
+        Rectangle s = scr.bounds(); Insets in = scr.insets();
         int x = s.x + s.width - sizeH.width - 12 - in.right;
         int y = s.y + s.height - sizeH.height - 12 - in.bottom;
         bar.setLocation(x, y);
@@ -213,24 +256,31 @@ public class DockBar {
         String ori = (o != null && o.equalsIgnoreCase("vertical")) ? "vertical" : "horizontal";
         settings.setBarOrientation(ori);
         Storage.saveSettings(settings);
-        handle.setOrientation(ori);
-        bar.setSize(isVertical() ? sizeV : sizeH);
-        bar.validate(); bar.repaint();
+        resizeFor("vertical".equals(ori));
     }
 
-    private void updateOrientationByPosition() {
-        Point p = bar.getLocation(); Rectangle s = screenBounds(); int margin = 30;
-        String o = "horizontal";
-        if (p.x <= s.x + margin || p.x + bar.getWidth() >= s.x + s.width - margin) o = "vertical";
-        setOrientation(o);
+    /** Só a janela (sem gravar): usado também durante o arrasto. */
+    private void resizeFor(boolean vertical) {
+        if (vertical == handle.isVertical() && bar.getSize().equals(vertical ? sizeV : sizeH)) return;
+        handle.setOrientation(vertical ? "vertical" : "horizontal");
+        bar.setSize(vertical ? sizeV : sizeH);
+        bar.validate(); bar.repaint();
     }
 
-    private boolean isVertical() { return "vertical".equalsIgnoreCase(settings.getBarOrientation()); }
+    /** Orientação na tela (no meio do arrasto pode ainda não estar nas preferências). */
+    private boolean isVertical() { return handle.isVertical(); }
 
     /* ===================== componente visual ===================== */
-    class Handle extends JComponent {
+    /** Alça desenhada da barrinha (cor da prioridade da nota ativa, grip e ×). */
+    static class Handle extends JComponent {
+        private final AppSettings settings;
         private String orientation = "horizontal";
-        private final int radius = 12;
+        private static final int RADIUS = 12;
+
+        Handle(AppSettings settings) { this.settings = settings; }
+
+        /** O que muda a alça além do tamanho (cor = UiTheme.Palette.handle, opacidade = intensidade %). */
+        private record Look(boolean vertical, UiTheme.Palette palette) {}
 
         void setOrientation(String o) {
             orientation = (o != null && o.equalsIgnoreCase("vertical")) ? "vertical" : "horizontal";
@@ -238,27 +288,39 @@ public class DockBar {
             revalidate(); repaint();
         }
 
+        boolean isVertical() { return "vertical".equals(orientation); }
+        String orientation() { return orientation; }
+
         boolean isCloseHit(Point p){
             Rectangle r = closeRect();
             return r != null && r.contains(p);
         }
 
         private Rectangle closeRect() {
+            return closeRect("vertical".equals(orientation), getWidth());
+        }
+
+        private static Rectangle closeRect(boolean vertical, int w) {
             int pad = 6, d = 14;
-            if ("vertical".equals(orientation)) return new Rectangle((getWidth()-d)/2, pad, d, d);
-            return new Rectangle(getWidth()-d-pad, pad, d, d);
+            if (vertical) return new Rectangle((w-d)/2, pad, d, d);
+            return new Rectangle(w-d-pad, pad, d, d);
         }
 
         @Override protected void paintComponent(Graphics g) {
-            Graphics2D g2 = (Graphics2D) g; g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            int w = getWidth(), h = getHeight();
+            StartupTrace.mark("dockPaint");
+            Look look = new Look("vertical".equals(orientation), UiTheme.palette(settings));
+            ChromeCache.draw(g, "dockHandle", look, getWidth(), getHeight(), Handle::paintChrome);
+        }
 
-            g2.setColor(pri(settings.getPriorityColor()).header);
-            g2.fillRoundRect(0,0,w,h,radius,radius);
+        private static void paintChrome(Graphics2D g2, Look look, int w, int h) {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            g2.setColor(look.palette().handle);
+            g2.fillRoundRect(0,0,w,h,RADIUS,RADIUS);
 
             // listras (grip)
-            g2.setColor(new Color(255,255,255,190));
-            if ("vertical".equals(orientation)) {
+            g2.setColor(UiTheme.GRIP);
+            if (look.vertical()) {
                 int midX = w/2, lineH = h/3;
                 g2.fillRoundRect(midX-1, lineH-8, 3, 28, 6, 6);
                 g2.fillRoundRect(midX-1, 2*lineH-8, 3, 28, 6, 6);
@@ -268,11 +330,11 @@ public class DockBar {
                 g2.fillRoundRect(x, midY+4, lineW, 3, 6, 6);
             }
 
-            // botão ×  (trecho igual ao que você referenciou)
-            Rectangle xr = closeRect();
-            g2.setColor(new Color(0,0,0,110));
+            // botão ×
+            Rectangle xr = closeRect(look.vertical(), w);
+            g2.setColor(UiTheme.CLOSE_BG);
             g2.fillOval(xr.x, xr.y, xr.width, xr.height);
-            g2.setColor(new Color(255,255,255,220));
+            g2.setColor(UiTheme.CLOSE_FG);
             int cx = xr.x + xr.width/2, cy = xr.y + xr.height/2;
             g2.setStroke(new BasicStroke(2f));
             g2.drawLine(cx-3, cy-3, cx+3, cy+3);
@@ -281,13 +343,8 @@ public class DockBar {
     }
 
     /* ===================== util tela ===================== */
-    private Rectangle screenBounds() {
-        GraphicsConfiguration gc = bar.getGraphicsConfiguration();
-        return gc.getBounds();
-    }
-    private Insets screenInsets() {
-        GraphicsConfiguration gc = bar.getGraphicsConfiguration();
-        return Toolkit.getDefaultToolkit().getScreenInsets(gc);
+    /** Monitor onde está o centro da barrinha (limites e insets em cache no ScreenGeometry). */
+    private ScreenGeometry.Screen screen() {
+        return ScreenGeometry.of(bar);
     }
-    private int clamp(int min, int val, int max){ return Math.max(min, Math.min(max, val)); }
 }
@@ -0,0 +1,96 @@
+package org.docknotas.ui.components;
+
+import org.docknotas.ui.util.ScreenGeometry;
+
+import java.awt.Dimension;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+
+/**
+ * Contas de posição da barrinha e do bloco, sem janelas (o DockBar aplica o resultado).
+ * – s = área da tela, in = bordas reservadas (barra de tarefas), b = posição atual da barrinha
+ * – Funções puras: dá para medir (JMH) e conferir sem display
+ */
+public final class DockGeometry {
+
+    private DockGeometry() {}
+
+    /** Barrinha colada numa borda; vertical = colada à esquerda/direita. */
+    public record Snap(Point bar, boolean vertical) {}
+
+    /** Bloco aberto e barrinha empilhados. */
+    public record Stack(Point notes, Point bar) {}
+
+    /**
+     * Borda mais próxima para a barrinha fechada.
+     * @param bar tamanho atual (mede a distância); sizeH/sizeV = tamanho depois de virar
+     */
+    public static Snap snapToEdge(Rectangle s, Insets in, Point b, Dimension bar, Dimension sizeH, Dimension sizeV) {
+        // área útil com 4px de folga; mesma conta de “borda mais próxima” do ScreenGeometry
+        Rectangle area = new Rectangle(s.x + in.left + 4, s.y + in.top + 4,
+                s.width - in.left - in.right - 8, s.height - in.top - in.bottom - 8);
+        ScreenGeometry.Edge edge = ScreenGeometry.nearestEdge(area, new Rectangle(b, bar));
+
+        if (edge == ScreenGeometry.Edge.LEFT || edge == ScreenGeometry.Edge.RIGHT) {
+            int x = (edge == ScreenGeometry.Edge.LEFT) ? (s.x + in.left + 4) : (s.x + s.width - in.right - sizeV.width - 4);
+            int y = clamp(s.y + in.top + 8, b.y, s.y + s.height - in.bottom - sizeV.height - 8);
+            return new Snap(new Point(x, y), true);
+        }
+        int y = (edge == ScreenGeometry.Edge.TOP) ? (s.y + in.top + 4) : (s.y + s.height - in.bottom - sizeH.height - 4);
+        int x = clamp(s.x + in.left + 8, b.x, s.x + s.width - in.right - sizeH.width - 8);
+        return new Snap(new Point(x, y), false);
+    }
+
+    /** Barrinha “em cima” e bloco colado na borda apropriada. */
+    public static Stack stacked(Rectangle s, Insets in, Point b, Dimension bar, Dimension notes, boolean vertical) {
+        if (vertical) {
+            boolean left = b.x < s.getCenterX();
+            int popX = left ? (s.x + in.left + 6) : (s.x + s.width - in.right - notes.width - 6);
+            int popY = clamp(s.y + in.top + 8, b.y - 8, s.y + s.height - in.bottom - notes.height - 8);
+
+            int barX = left ? (popX + notes.width + 6) : (popX - bar.width - 6);
+            int barY = clamp(s.y + in.top + 8, popY - 8, s.y + s.height - in.bottom - bar.height - 8);
+            return new Stack(new Point(popX, popY), new Point(barX, barY));
+        }
+        boolean bottom = b.y > s.getCenterY();
+        int popY = bottom ? (s.y + s.height - in.bottom - notes.height - 6) : (s.y + in.top + 6);
+        int popX = clamp(s.x + in.left + 8,
+                b.x - (notes.width/2) + (bar.width/2),
+                s.x + s.width - in.right - notes.width - 8);
+
+        int barY = bottom ? (popY - bar.height - 6) : (popY + notes.height + 6);
+        int barX = clamp(s.x + in.left + 8, b.x, s.x + s.width - in.right - bar.width - 8);
+        return new Stack(new Point(popX, popY), new Point(barX, barY));
+    }
+
+    /** Bloco ao lado/abaixo da barrinha enquanto ela é arrastada. */
+    public static Point beside(Rectangle s, Insets in, Point b, Dimension bar, Dimension notes, boolean vertical) {
+        if (vertical) {
+            boolean atRight = b.x + bar.width > s.x + s.width - 60 - in.right;
+            int px = atRight ? b.x - notes.width - 8 : b.x + bar.width + 8;
+            int py = clamp(s.y + in.top + 8, b.y, s.y + s.height - notes.height - in.bottom - 8);
+            return new Point(px, py);
+        }
+        boolean bottom = b.y + bar.height > s.y + s.height - 60 - in.bottom;
+        int px = clamp(s.x + in.left + 8, b.x, s.x + s.width - notes.width - in.right - 8);
+        int py = bottom ? b.y - notes.height - 8 : b.y + bar.height + 8;
+        return new Point(px, py);
+    }
+
+    /** Faixa junto às bordas esquerda/direita em que a barrinha fica vertical com o bloco aberto. */
+    static final int EDGE_MARGIN = 30;
+
+    /**
+     * Orientação durante o arrasto com o bloco aberto: vira vertical ao entrar na faixa da borda e só volta
+     * a horizontal depois de sair dela com folga da largura horizontal (senão a troca de tamanho 28↔90
+     * a faria oscilar a cada quadro na borda direita).
+     */
+    public static boolean verticalWhileDragging(Rectangle s, Point b, Dimension bar, boolean vertical, Dimension sizeH) {
+        int left = s.x + EDGE_MARGIN, right = s.x + s.width - EDGE_MARGIN;
+        if (!vertical) return b.x <= left || b.x + bar.width >= right;
+        return b.x <= left + sizeH.width || b.x + bar.width >= right - sizeH.width;
+    }
+
+    static int clamp(int min, int val, int max){ return Math.max(min, Math.min(max, val)); }
+}
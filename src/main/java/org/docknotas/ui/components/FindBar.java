@@ -0,0 +1,485 @@
+package org.docknotas.ui.components;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Document;
+import javax.swing.text.Highlighter;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Barra de localizar/substituir do LineRuledTextArea.
+ * – A varredura roda numa thread própria sobre uma cópia do documento
+ *   (Horspool para texto literal, Pattern para regex)
+ * – Regex lê o texto por um CharSequence que desiste quando a busca é cancelada (nova busca, fechar)
+ *   ou passa de REGEX_MS: retrocesso catastrófico não prende a thread
+ * – Ocorrências chegam ao Highlighter em lotes, sem travar a EDT
+ * – "Replace all" troca ocorrência por ocorrência, de trás para frente, numa única edição
+ *   (um Ctrl+Z desfaz tudo; cursor e rolagem ficam onde estavam)
+ */
+public class FindBar extends JPanel {
+
+    /** Ocorrências enviadas à EDT por vez. */
+    private static final int BATCH = 512;
+    /** Acima disso só conta; pintar milhares de destaques deixa a rolagem lenta. */
+    private static final int MAX_HIGHLIGHTS = 2000;
+    /** Tempo máximo de uma varredura por regex. */
+    private static final long REGEX_MS = 10_000;
+
+    private static final Color MATCH = new Color(255, 200, 0, 90);
+    private static final Color NOT_FOUND = new Color(220, 80, 80);
+
+    private final LineRuledTextArea editor;
+    private final JTextField find = new JTextField(14);
+    private final JTextField replace = new JTextField(10);
+    private final JToggleButton matchCase = new JToggleButton("Aa");
+    private final JToggleButton regex = new JToggleButton(".*");
+    private final JLabel count = new JLabel(" ");
+    private final Highlighter.HighlightPainter painter = new DefaultHighlighter.DefaultHighlightPainter(MATCH);
+
+    private final ExecutorService exec = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "docknotas-find");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // ---- estado da EDT ----
+    /** Cada nova busca invalida os lotes da anterior. */
+    private volatile int scanGen;
+    /** Varredura/substituição em curso na thread de busca (cancelada com interrupção). */
+    private Future<?> task;
+    /** Muda a cada edição do documento; lotes de uma cópia antiga são descartados. */
+    private int docVersion;
+    private int[] starts = new int[256], ends = new int[256];
+    private int matches;
+    private boolean scanDone;
+    private final List<Object> tags = new ArrayList<>();
+    private final Timer rescan = new Timer(250, e -> startScan());
+
+    public FindBar(LineRuledTextArea editor) {
+        super(new FlowLayout(FlowLayout.LEFT, 4, 2));
+        this.editor = editor;
+        setOpaque(false);
+        setBorder(new EmptyBorder(2, 4, 2, 4));
+        setVisible(false);
+        rescan.setRepeats(false);
+
+        matchCase.setToolTipText("Match case");
+        regex.setToolTipText("Regular expression");
+        find.setToolTipText("Find (Enter: next, Shift+Enter: previous)");
+        replace.setToolTipText("Replace with");
+
+        add(find);
+        add(button("↑", "Previous", () -> step(-1)));
+        add(button("↓", "Next", () -> step(+1)));
+        add(matchCase);
+        add(regex);
+        add(count);
+        add(replace);
+        add(button("Replace", "Replace current match", this::replaceCurrent));
+        add(button("All", "Replace all", this::replaceAll));
+        add(button("×", "Close (Esc)", this::close));
+
+        find.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { startScan(); }
+            @Override public void removeUpdate(DocumentEvent e) { startScan(); }
+            @Override public void changedUpdate(DocumentEvent e) { }
+        });
+        matchCase.addActionListener(e -> startScan());
+        regex.addActionListener(e -> startScan());
+        find.addActionListener(e -> step(+1));
+        bind(find, KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, KeyEvent.SHIFT_DOWN_MASK), "findPrevious", () -> step(-1));
+        bind(this, KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "closeFind", this::close);
+
+        // edições no texto: a lista de ocorrências ficou velha
+        editor.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { documentChanged(); }
+            @Override public void removeUpdate(DocumentEvent e) { documentChanged(); }
+            @Override public void changedUpdate(DocumentEvent e) { }
+        });
+
+        // Ctrl+F no editor abre a barra
+        bind(editor, KeyStroke.getKeyStroke(KeyEvent.VK_F, Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()),
+                "openFind", this::open);
+    }
+
+    /* ===================== abrir/fechar ===================== */
+
+    /** Mostra a barra com a seleção atual (se curta) como texto a procurar. */
+    public void open() {
+        String sel = editor.getSelectedText();
+        if (sel != null && !sel.isEmpty() && sel.length() < 200 && sel.indexOf('\n') < 0) find.setText(sel);
+        setVisible(true);
+        revalidate();
+        find.selectAll();
+        find.requestFocusInWindow();
+        startScan();
+    }
+
+    public void close() {
+        scanGen++;
+        cancelTask();
+        clearMatches();
+        setVisible(false);
+        revalidate();
+        editor.requestFocusInWindow();
+    }
+
+    /* ===================== varredura ===================== */
+
+    private void documentChanged() {
+        docVersion++;
+        if (isVisible() && !find.getText().isEmpty()) rescan.restart();
+    }
+
+    private void startScan() {
+        int gen = ++scanGen;
+        cancelTask();
+        rescan.stop();
+        clearMatches();
+        find.setForeground(UIManager.getColor("TextField.foreground"));
+
+        String q = find.getText();
+        if (q.isEmpty()) { count.setText(" "); return; }
+        Pattern p;
+        try {
+            p = compile(q);
+        } catch (PatternSyntaxException ex) {
+            find.setForeground(NOT_FOUND);
+            count.setText("regex?");
+            return;
+        }
+        count.setText("…");
+        int version = docVersion;
+        boolean fold = !matchCase.isSelected();
+        Document doc = editor.getDocument();
+        task = exec.submit(() -> scan(gen, version, doc, q, p, fold));
+    }
+
+    private void cancelTask() {
+        if (task != null) task.cancel(true);
+        task = null;
+    }
+
+    /** null para busca literal. */
+    private Pattern compile(String q) {
+        if (!regex.isSelected()) return null;
+        return Pattern.compile(q, matchCase.isSelected() ? Pattern.MULTILINE
+                : Pattern.MULTILINE | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    private void scan(int gen, int version, Document doc, String q, Pattern p, boolean fold) {
+        String text = snapshot(doc);
+        if (text == null || gen != scanGen) return;
+
+        int[] batch = new int[BATCH * 2];
+        int[] n = {0};
+        MatchSink sink = (s, e) -> {
+            batch[n[0]++] = s;
+            batch[n[0]++] = e;
+            if (n[0] == batch.length) {
+                publish(gen, version, Arrays.copyOf(batch, n[0]), false);
+                n[0] = 0;
+            }
+            return gen == scanGen;
+        };
+        if (p == null) horspool(text, q, fold, sink);
+        else if (!regexScan(text, p, sink)) { tooSlow(gen); return; }
+        publish(gen, version, Arrays.copyOf(batch, n[0]), true);
+    }
+
+    private static String snapshot(Document doc) {
+        String[] text = new String[1];
+        doc.render(() -> {
+            try { text[0] = doc.getText(0, doc.getLength()); } catch (BadLocationException ignored) {}
+        });
+        return text[0];
+    }
+
+    private interface MatchSink { boolean match(int start, int end); }
+
+    /** Boyer-Moore-Horspool sem sobreposição; tabela de saltos em 256 baldes (conservadora). */
+    private static void horspool(String t, String pat, boolean fold, MatchSink sink) {
+        int m = pat.length(), n = t.length();
+        char[] p = new char[m];
+        for (int i = 0; i < m; i++) p[i] = fold ? fold(pat.charAt(i)) : pat.charAt(i);
+        int[] shift = new int[256];
+        Arrays.fill(shift, m);
+        for (int i = 0; i < m - 1; i++) shift[p[i] & 0xFF] = m - 1 - i;
+
+        int i = 0;
+        while (i <= n - m) {
+            int j = m - 1;
+            while (j >= 0 && (fold ? fold(t.charAt(i + j)) : t.charAt(i + j)) == p[j]) j--;
+            if (j < 0) {
+                if (!sink.match(i, i + m)) return;
+                i += m;
+            } else {
+                char last = fold ? fold(t.charAt(i + m - 1)) : t.charAt(i + m - 1);
+                i += shift[last & 0xFF];
+            }
+        }
+    }
+
+    private static char fold(char c) {
+        return c < 0x80 ? (c >= 'A' && c <= 'Z' ? (char) (c + 32) : c) : Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /** false = desistiu (cancelada ou passou de REGEX_MS). */
+    private static boolean regexScan(String t, Pattern p, MatchSink sink) {
+        Matcher m = p.matcher(new Cancellable(t));
+        try {
+            while (m.find()) {
+                if (m.end() == m.start()) continue; // ocorrências vazias não servem para destacar
+                if (!sink.match(m.start(), m.end())) return true;
+            }
+            return true;
+        } catch (CancellationException e) {
+            return false;
+        }
+    }
+
+    /** Avisa na barra que o regex desistiu por tempo (cancelada = uma busca nova já cuida da barra). */
+    private void tooSlow(int gen) {
+        if (Thread.currentThread().isInterrupted()) return;
+        SwingUtilities.invokeLater(() -> {
+            if (gen != scanGen) return;
+            count.setText("regex too slow");
+            find.setForeground(NOT_FOUND);
+        });
+    }
+
+    /**
+     * Texto para o Matcher: a cada 4096 leituras confere a interrupção da thread (Future.cancel) e o prazo,
+     * e desiste com CancellationException. O Pattern lê tudo por charAt, então nenhum laço escapa.
+     */
+    private static final class Cancellable implements CharSequence {
+        private final String s;
+        private final long deadline = System.nanoTime() + REGEX_MS * 1_000_000;
+        private int reads;
+
+        Cancellable(String s) { this.s = s; }
+
+        @Override public char charAt(int index) {
+            if ((++reads & 0xFFF) == 0
+                    && (Thread.currentThread().isInterrupted() || System.nanoTime() - deadline > 0)) {
+                throw new CancellationException();
+            }
+            return s.charAt(index);
+        }
+
+        @Override public int length() { return s.length(); }
+        @Override public CharSequence subSequence(int start, int end) { return s.subSequence(start, end); }
+        @Override public String toString() { return s; }
+    }
+
+    /* ===================== EDT: lotes ===================== */
+
+    private void publish(int gen, int version, int[] batch, boolean done) {
+        SwingUtilities.invokeLater(() -> {
+            if (gen != scanGen) return;
+            if (version != docVersion) { startScan(); return; } // texto mudou durante a varredura
+
+            Highlighter hl = editor.getHighlighter();
+            for (int i = 0; i < batch.length; i += 2) {
+                if (matches == starts.length) {
+                    starts = Arrays.copyOf(starts, matches * 2);
+                    ends = Arrays.copyOf(ends, matches * 2);
+                }
+                starts[matches] = batch[i];
+                ends[matches++] = batch[i + 1];
+                if (tags.size() < MAX_HIGHLIGHTS) {
+                    try { tags.add(hl.addHighlight(batch[i], batch[i + 1], painter)); }
+                    catch (BadLocationException ignored) {}
+                }
+            }
+            scanDone = done;
+            updateCount();
+            find.setForeground(done && matches == 0 ? NOT_FOUND : UIManager.getColor("TextField.foreground"));
+        });
+    }
+
+    private void clearMatches() {
+        Highlighter hl = editor.getHighlighter();
+        for (int i = tags.size() - 1; i >= 0; i--) hl.removeHighlight(tags.get(i));
+        tags.clear();
+        matches = 0;
+        scanDone = false;
+    }
+
+    private void updateCount() {
+        int cur = currentIndex();
+        String total = matches + (scanDone ? "" : "…");
+        count.setText(cur >= 0 ? (cur + 1) + "/" + total : total);
+    }
+
+    /** Índice da ocorrência selecionada no editor, ou -1. */
+    private int currentIndex() {
+        int i = Arrays.binarySearch(starts, 0, matches, editor.getSelectionStart());
+        return i >= 0 && ends[i] == editor.getSelectionEnd() ? i : -1;
+    }
+
+    /* ===================== navegação ===================== */
+
+    private void step(int dir) {
+        if (matches == 0) return;
+        int caret = dir > 0 ? editor.getSelectionEnd() : editor.getSelectionStart();
+        int i = Arrays.binarySearch(starts, 0, matches, caret);
+        if (dir > 0) {
+            if (i < 0) i = -i - 1;
+            if (i >= matches) i = 0;
+        } else {
+            i = (i < 0 ? -i - 1 : i) - 1;
+            if (i < 0) i = matches - 1;
+        }
+        select(i);
+    }
+
+    private void select(int i) {
+        editor.select(starts[i], ends[i]);
+        editor.getCaret().setSelectionVisible(true);
+        try {
+            Rectangle r = editor.modelToView2D(starts[i]).getBounds();
+            r.height *= 3;
+            editor.scrollRectToVisible(r);
+        } catch (BadLocationException | NullPointerException ignored) {}
+        updateCount();
+    }
+
+    /* ===================== substituir ===================== */
+
+    private void replaceCurrent() {
+        int i = currentIndex();
+        if (i < 0) { step(+1); return; }
+        String with = replacement(editor.getSelectedText());
+        if (with == null) return;
+        int at = starts[i];
+        editor.runAsSingleEdit(() -> editor.replaceSelection(with));
+        // a varredura recomeça sozinha (documento mudou); segue a partir daqui
+        editor.setCaretPosition(Math.min(at + with.length(), editor.getDocument().getLength()));
+    }
+
+    /** Substituição para um trecho isolado (regex: grupos $1 etc. do próprio trecho). */
+    private String replacement(String matched) {
+        String r = replace.getText();
+        if (!regex.isSelected() || matched == null) return r;
+        try {
+            return compile(find.getText()).matcher(matched).replaceFirst(r);
+        } catch (RuntimeException ex) {
+            count.setText("regex?");
+            return null;
+        }
+    }
+
+    /** Calcula as trocas numa thread e aplica todas de uma vez na EDT, como uma edição só. */
+    private void replaceAll() {
+        String q = find.getText();
+        if (q.isEmpty()) return;
+        Pattern p;
+        try { p = compile(q); } catch (PatternSyntaxException ex) { return; }
+        String repl = replace.getText();
+        boolean fold = !matchCase.isSelected();
+        int version = docVersion;
+        int gen = ++scanGen;
+        cancelTask();
+        Document doc = editor.getDocument();
+        count.setText("…");
+
+        task = exec.submit(() -> {
+            String text = snapshot(doc);
+            if (text == null) return;
+            List<int[]> spans = new ArrayList<>();
+            List<String> with = new ArrayList<>();
+            if (p == null) {
+                horspool(text, q, fold, (s, e) -> {
+                    spans.add(new int[]{s, e});
+                    with.add(repl);
+                    return true;
+                });
+            } else {
+                Matcher m = p.matcher(new Cancellable(text));
+                StringBuilder piece = new StringBuilder();
+                int last = 0;
+                try {
+                    while (m.find()) {
+                        if (m.end() == m.start()) continue;
+                        piece.setLength(0);
+                        m.appendReplacement(piece, repl); // texto desde a troca anterior + substituição
+                        spans.add(new int[]{m.start(), m.end()});
+                        with.add(piece.substring(m.start() - last));
+                        last = m.end();
+                    }
+                } catch (CancellationException e) {
+                    tooSlow(gen); // nada é trocado pela metade
+                    return;
+                } catch (RuntimeException e) { // $9 sem grupo, \ solto na substituição
+                    SwingUtilities.invokeLater(() -> { if (gen == scanGen) count.setText("regex?"); });
+                    return;
+                }
+            }
+            SwingUtilities.invokeLater(() -> applyReplaceAll(gen, version, spans, with));
+        });
+    }
+
+    private void applyReplaceAll(int gen, int version, List<int[]> spans, List<String> with) {
+        if (gen != scanGen) return;
+        if (version != docVersion) { replaceAll(); return; }
+        if (spans.isEmpty()) { startScan(); return; }
+
+        // o cursor anda junto com as trocas antes dele
+        int caret = editor.getCaretPosition(), moved = caret;
+        for (int k = 0; k < spans.size() && spans.get(k)[1] <= caret; k++) {
+            moved += with.get(k).length() - (spans.get(k)[1] - spans.get(k)[0]);
+        }
+        Document doc = editor.getDocument();
+        editor.runAsSingleEdit(() -> {
+            try {
+                for (int k = spans.size() - 1; k >= 0; k--) { // de trás para frente: offsets continuam válidos
+                    int[] sp = spans.get(k);
+                    if (doc instanceof AbstractDocument ad) {
+                        ad.replace(sp[0], sp[1] - sp[0], with.get(k), null);
+                    } else {
+                        doc.remove(sp[0], sp[1] - sp[0]);
+                        doc.insertString(sp[0], with.get(k), null);
+                    }
+                }
+            } catch (BadLocationException ignored) {}
+        });
+        editor.setCaretPosition(Math.max(0, Math.min(moved, doc.getLength())));
+        count.setText(spans.size() + " replaced");
+    }
+
+    /* ===================== util ===================== */
+
+    private static JButton button(String text, String tip, Runnable r) {
+        JButton b = new JButton(text);
+        b.setToolTipText(tip);
+        b.setMargin(new Insets(1, 4, 1, 4));
+        b.setFocusable(false);
+        b.addActionListener(e -> r.run());
+        return b;
+    }
+
+    private static void bind(JComponent c, KeyStroke ks, String name, Runnable r) {
+        c.getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).put(ks, name);
+        c.getActionMap().put(name, new AbstractAction() {
+            @Override public void actionPerformed(ActionEvent e) { r.run(); }
+        });
+    }
+}
@@ -1,5 +1,7 @@
 package org.docknotas.ui.components;
 
+import org.docknotas.ui.util.ChromeCache;
+import org.docknotas.ui.util.ScreenGeometry;
 import org.docknotas.ui.util.UiTheme;
 
 import javax.swing.*;
@@ -31,6 +33,7 @@ public class HeaderBar extends JComponent {
                 }
                 // começa arrastar
                 dragStart = e.getPoint();
+                ScreenGeometry.invalidate();
 
                 // clicou no × ?
                 if (closeRect().contains(e.getPoint())) {
@@ -47,7 +50,10 @@ public class HeaderBar extends JComponent {
                     w.setLocation(nx, ny);
                 }
             }
-            @Override public void mouseReleased(MouseEvent e) { dragStart = null; }
+            @Override public void mouseReleased(MouseEvent e) {
+                if (dragStart != null) keepReachable();
+                dragStart = null;
+            }
             @Override public void mouseClicked(MouseEvent e) {
                 // clique simples esquerdo abre menu também (toque de atalho)
                 if (SwingUtilities.isLeftMouseButton(e) && e.getClickCount() == 1) {
@@ -57,37 +63,53 @@ public class HeaderBar extends JComponent {
         };
         addMouseListener(mouse);
         addMouseMotionListener(mouse);
+        ScreenGeometry.watch(this);
+    }
+
+    /** Solta fora das telas (ou num monitor desligado): traz a barrinha de volta para a área útil do mais próximo. */
+    private void keepReachable() {
+        Window w = SwingUtilities.getWindowAncestor(this);
+        if (w == null || !isShowing()) return;
+        Rectangle strip = new Rectangle(getLocationOnScreen(), getSize());
+        Point p = ScreenGeometry.fit(strip);
+        if (p.x != strip.x || p.y != strip.y) w.setLocation(w.getX() + p.x - strip.x, w.getY() + p.y - strip.y);
     }
 
     private Rectangle closeRect() {
+        return closeRect(getWidth());
+    }
+
+    private static Rectangle closeRect(int w) {
         int pad = 6, d = 14;
-        return new Rectangle(getWidth()-d-pad, pad, d, d);
+        return new Rectangle(w-d-pad, pad, d, d);
     }
 
     @Override protected void paintComponent(Graphics g) {
-        Graphics2D g2 = (Graphics2D) g; g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        int w = getWidth(), h = getHeight();
+        // aparência fixa: a chave é só o tamanho
+        ChromeCache.draw(g, "headerBar", HeaderBar.class, getWidth(), getHeight(), HeaderBar::paintChrome);
+    }
+
+    private static void paintChrome(Graphics2D g2, Class<?> look, int w, int h) {
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         int radius = 12;
 
-        g2.setColor(UiTheme.headerColor());
+        g2.setColor(UiTheme.HEADER);
         g2.fillRoundRect(0,0,w,h,radius,radius);
 
         // listras
-        g2.setColor(new Color(255,255,255,190));
+        g2.setColor(UiTheme.GRIP);
         int midY = h/2, lineW = w/3, x = (w-lineW)/2;
         g2.fillRoundRect(x, midY-7, lineW, 3, 6, 6);
         g2.fillRoundRect(x, midY+4, lineW, 3, 6, 6);
 
         // botão ×
-        Rectangle xr = closeRect();
-        g2.setColor(new Color(0,0,0,110));
+        Rectangle xr = closeRect(w);
+        g2.setColor(UiTheme.CLOSE_BG);
         g2.fillOval(xr.x, xr.y, xr.width, xr.height);
-        g2.setColor(new Color(255,255,255,220));
+        g2.setColor(UiTheme.CLOSE_FG);
         int cx = xr.x + xr.width/2, cy = xr.y + xr.height/2;
         g2.setStroke(new BasicStroke(2f));
         g2.drawLine(cx-3, cy-3, cx+3, cy+3);
         g2.drawLine(cx+3, cy-3, cx-3, cy+3);
-
-        g2.dispose();
     }
 }
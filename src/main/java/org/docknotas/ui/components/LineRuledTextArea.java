@@ -1,23 +1,162 @@
 package org.docknotas.ui.components;
 
+import com.formdev.flatlaf.ui.FlatTextAreaUI;
+import org.docknotas.StartupTrace;
+import org.docknotas.ui.text.RopeContent;
+import org.docknotas.ui.text.SoftWrapView;
+import org.docknotas.ui.text.TextProperties;
+import org.docknotas.ui.util.FontCache;
+
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.PlainDocument;
+import javax.swing.text.View;
+import javax.swing.undo.CompoundEdit;
+import javax.swing.undo.UndoManager;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.function.IntConsumer;
 
-/** JTextArea com “linhas de caderno”. */
+/**
+ * JTextArea com “linhas de caderno” (conteúdo em RopeContent, bom para notas enormes).
+ * Desfazer/refazer com Ctrl+Z / Ctrl+Y; mudanças feitas pelo app (carga do arquivo) zeram o histórico.
+ * As linhas só são desenhadas dentro do clip (o piscar do cursor não percorre a nota inteira);
+ * cor e passo ficam em cache até mudar fundo, fonte ou espaçamento.
+ * Durante o redimensionamento ao vivo (deferReflow) a largura fica presa: o texto já quebrado só é cortado,
+ * e a nota inteira é re-quebrada uma vez quando a janela para de mudar de tamanho.
+ * Com quebra de linha, o texto é desenhado pela SoftWrapView (quebras em cache por parágrafo).
+ * Zoom (Ctrl+roda, Ctrl+= / Ctrl+- / Ctrl+0): durante o gesto só o recorte visível, já pintado, é escalado;
+ * a fonte (do FontCache) muda uma vez, com uma única re-quebra, quando o gesto para.
+ */
 public class LineRuledTextArea extends JTextArea {
 
     private int lineHeight = 20;
     private Color guidelineColor = null; // null => auto
 
+    /* ===== cache das linhas: refeito em setLineHeight/setFont/setBackground/setGuidelineColor ===== */
+    private Color lineColor;   // null = recalcular
+    private int lineStep;      // 0 = recalcular (junto com lineAscent)
+    private int lineAscent;
+
+    /* ===== redimensionamento ao vivo ===== */
+    private static final int SETTLE_MS = 200;
+    private int frozenWidth = -1;   // >= 0: largura presa até assentar
+    private Timer settle;
+    private Runnable whenSettled;
+    private JScrollPane frozenIn; private int frozenHPolicy;
+
+    /* ===== zoom progressivo ===== */
+    private static final int ZOOM_SETTLE_MS = 250;
+    private static final int ZOOM_MIN = 50, ZOOM_MAX = 200, ZOOM_STEP = 10; // mesmos limites de AppSettings
+    private final int menuMask;
+    private float zoomBase;           // fonte sem zoom (px)
+    private int zoomPercent = 100;    // o da fonte atual
+    private int zoomTarget = 100;     // pedido pelo gesto em curso
+    private double wheelRest;         // fração de clique acumulada (touchpad)
+    private BufferedImage zoomShot;   // != null: prévia — recorte visível pintado em zoomPercent
+    private Rectangle zoomShotArea;
+    private Timer zoomSettle;
+    private IntConsumer onZoomSettled;
+
+    private final UndoManager undo = new UndoManager();
+    private CompoundEdit group; // != null: edições sendo agrupadas (runAsSingleEdit)
+
     public LineRuledTextArea() {
-        super();
+        super(new PlainDocument(new RopeContent()));
         setOpaque(true);
         setBorder(BorderFactory.createEmptyBorder(8, 12, 8, 8));
+
+        undo.setLimit(1000);
+        getDocument().addUndoableEditListener(e -> {
+            if (Boolean.TRUE.equals(getDocument().getProperty(TextProperties.UNTRACKED))) {
+                undo.discardAllEdits(); // offsets antigos não valem mais
+            } else if (group != null) {
+                group.addEdit(e.getEdit());
+            } else {
+                undo.addEdit(e.getEdit());
+            }
+        });
+        int menu = menuMask = GraphicsEnvironment.isHeadless() // benchmarks de pintura rodam sem display
+                ? InputEvent.CTRL_DOWN_MASK : Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
+        bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_Z, menu), "undoEdit", () -> { if (undo.canUndo()) undo.undo(); });
+        bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_Y, menu), "redoEdit", () -> { if (undo.canRedo()) undo.redo(); });
+        bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_Z, menu | InputEvent.SHIFT_DOWN_MASK), "redoEdit", null);
+
+        // zoom: + também vem como Shift+= ou do teclado numérico
+        zoomBase = getFont().getSize2D();
+        bindZoomKey("zoomIn", () -> zoomBy(1), KeyEvent.VK_EQUALS, KeyEvent.VK_PLUS, KeyEvent.VK_ADD);
+        getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_EQUALS, menu | InputEvent.SHIFT_DOWN_MASK), "zoomIn");
+        bindZoomKey("zoomOut", () -> zoomBy(-1), KeyEvent.VK_MINUS, KeyEvent.VK_SUBTRACT);
+        bindZoomKey("zoomReset", () -> zoomTo(100), KeyEvent.VK_0, KeyEvent.VK_NUMPAD0);
+        addMouseWheelListener(this::wheelMoved);
+        getDocument().addDocumentListener(new DocumentListener() {
+            // texto mudou durante a prévia (carga em partes, colar): aplica o zoom logo depois do evento
+            @Override public void insertUpdate(DocumentEvent e) { if (zoomShot != null) SwingUtilities.invokeLater(LineRuledTextArea.this::commitZoom); }
+            @Override public void removeUpdate(DocumentEvent e) { if (zoomShot != null) SwingUtilities.invokeLater(LineRuledTextArea.this::commitZoom); }
+            @Override public void changedUpdate(DocumentEvent e) { }
+        });
+    }
+
+    /** UI do FlatLaf com a SoftWrapView na quebra de linha; texto bidi (i18n) segue nas views do Swing. */
+    private static final class RuledTextAreaUI extends FlatTextAreaUI {
+        @Override public View create(Element elem) {
+            if (getComponent() instanceof JTextArea area && area.getLineWrap()
+                    && !Boolean.TRUE.equals(elem.getDocument().getProperty("i18n"))) {
+                return new SoftWrapView(elem, area.getWrapStyleWord());
+            }
+            return super.create(elem);
+        }
+    }
+
+    @Override public void updateUI() {
+        // outro look-and-feel (FlatLaf não carregou): fica com a UI dele e o WrappedPlainView
+        if (UIManager.getUI(this) instanceof FlatTextAreaUI) setUI(new RuledTextAreaUI());
+        else super.updateUI();
+    }
+
+    /** Executa várias mudanças no documento como uma única edição (um Ctrl+Z desfaz tudo). */
+    public void runAsSingleEdit(Runnable r) {
+        if (group != null) { r.run(); return; }
+        group = new CompoundEdit();
+        try {
+            r.run();
+        } finally {
+            CompoundEdit g = group;
+            group = null;
+            g.end();
+            if (g.isSignificant()) undo.addEdit(g);
+        }
+    }
+
+    private void bindKey(KeyStroke ks, String name, Runnable r) {
+        getInputMap().put(ks, name);
+        if (r == null) return;
+        getActionMap().put(name, new AbstractAction() {
+            @Override public void actionPerformed(ActionEvent e) { if (isEditable()) r.run(); }
+        });
+    }
+
+    /** Atalho de zoom (Ctrl/Cmd + tecla); vale também com o editor só leitura. */
+    private void bindZoomKey(String name, Runnable r, int... keys) {
+        for (int k : keys) getInputMap().put(KeyStroke.getKeyStroke(k, menuMask), name);
+        getActionMap().put(name, new AbstractAction() {
+            @Override public void actionPerformed(ActionEvent e) { r.run(); }
+        });
     }
 
     /** Define o espaçamento entre linhas (mín. 12 px). */
     public void setLineHeight(int h) {
         lineHeight = Math.max(12, h);
+        lineStep = 0;
         revalidate();
         repaint();
     }
@@ -25,38 +164,248 @@ public class LineRuledTextArea extends JTextArea {
     /** Cor explícita das linhas (null para automático conforme tema). */
     public void setGuidelineColor(Color c) {
         guidelineColor = c;
+        lineColor = null;
         repaint();
     }
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+    @Override public void setFont(Font f) {
+        lineStep = 0;       // também chamado pelo construtor do JTextArea, antes dos campos
+        super.setFont(f);
+    }
 
-        // cor das linhas
-        Color line = guidelineColor;
-        if (line == null) {
-            Color bg = getBackground();
-            double luminance = (0.2126 * bg.getRed() + 0.7152 * bg.getGreen() + 0.0722 * bg.getBlue());
-            boolean dark = luminance < 128;
-            line = new Color(dark ? 255 : 0, dark ? 255 : 0, dark ? 255 : 0, 38);
+    @Override public void setBackground(Color bg) {
+        lineColor = null;
+        super.setBackground(bg);
+    }
+
+    /* ===================== zoom ===================== */
+
+    /** Fonte base (px, sem zoom) e zoom em %; aplica já (menus, partida), mantendo a linha do topo no lugar. */
+    public void setZoom(float baseSize, int percent) {
+        if (zoomSettle != null) zoomSettle.stop();
+        zoomShot = null;
+        zoomShotArea = null;
+        zoomBase = baseSize;
+        zoomPercent = zoomTarget = clampZoom(percent);
+        applyZoomFont();
+        repaint();
+    }
+
+    /** Zoom final de cada gesto (roda/atalhos), uma vez quando ele para — para gravar nas preferências. */
+    public void setOnZoomSettled(IntConsumer onZoomSettled) { this.onZoomSettled = onZoomSettled; }
+
+    /** Passos de ZOOM_STEP% (negativo = afastar), com prévia até o gesto parar. */
+    public void zoomBy(int steps) { zoomTo(zoomTarget + steps * ZOOM_STEP); }
+
+    /** Zoom progressivo: mostra a prévia escalada e aplica a fonte ZOOM_SETTLE_MS depois do último passo. */
+    public void zoomTo(int percent) {
+        int p = clampZoom(percent);
+        if (p == zoomTarget) return;
+        zoomTarget = p;
+        if (zoomShot == null && !takeZoomShot()) { commitZoom(); return; } // fora da tela: aplica direto
+        repaint();
+        if (zoomSettle == null) {
+            zoomSettle = new Timer(ZOOM_SETTLE_MS, e -> commitZoom());
+            zoomSettle.setRepeats(false);
+        }
+        zoomSettle.restart();
+    }
+
+    private static int clampZoom(int p) { return Math.max(ZOOM_MIN, Math.min(ZOOM_MAX, p)); }
+
+    private void wheelMoved(MouseWheelEvent e) {
+        if ((e.getModifiersEx() & menuMask) != 0) {
+            wheelRest += e.getPreciseWheelRotation();
+            int clicks = (int) wheelRest;
+            wheelRest -= clicks;
+            if (clicks != 0) zoomBy(-clicks); // roda para cima = aproximar
+            e.consume();
+            return;
+        }
+        // rolagem normal: o listener tomaria a roda do JScrollPane, então o evento segue para ele
+        commitZoom();
+        Container parent = getParent();
+        if (parent != null) parent.dispatchEvent(SwingUtilities.convertMouseEvent(this, e, parent));
+    }
+
+    /** Pinta uma vez o recorte visível (e o dobro da altura, para afastar até a metade) para a prévia. */
+    private boolean takeZoomShot() {
+        Rectangle v = getVisibleRect();
+        if (!isShowing() || v.isEmpty()) return false;
+        v.height = Math.min(getHeight() - v.y, v.height * 2);
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        double ds = gc != null ? gc.getDefaultTransform().getScaleX() : 1; // HiDPI
+        int pw = (int) Math.ceil(v.width * ds), ph = (int) Math.ceil(v.height * ds);
+        BufferedImage img = gc != null ? gc.createCompatibleImage(pw, ph) : new BufferedImage(pw, ph, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        try {
+            g.scale(ds, ds);
+            g.translate(-v.x, -v.y);
+            g.setClip(v);
+            super.paint(g);
+        } finally {
+            g.dispose();
+        }
+        zoomShot = img;
+        zoomShotArea = v;
+        return true;
+    }
+
+    /** Fim do gesto (ou o usuário voltou a digitar/clicar/rolar): troca a fonte e descarta a prévia. */
+    private void commitZoom() {
+        if (zoomSettle != null) zoomSettle.stop();
+        boolean changed = zoomTarget != zoomPercent;
+        if (zoomShot == null && !changed) return;
+        zoomShot = null;
+        zoomShotArea = null;
+        if (changed) {
+            zoomPercent = zoomTarget;
+            applyZoomFont();
+            if (onZoomSettled != null) onZoomSettled.accept(zoomPercent);
         }
+        repaint();
+    }
+
+    /** Fonte do zoom atual; a linha no topo da área visível continua no topo depois da re-quebra. */
+    private void applyZoomFont() {
+        float size = zoomBase * zoomPercent / 100f;
+        Font old = getFont();
+        if (old.getSize2D() == size) return;
+        Font f = FontCache.sized(old, size);
+        JViewport vp = getParent() instanceof JViewport v ? v : null;
+        if (vp == null || !isShowing()) { setFont(f); return; }
+
+        Point top = vp.getViewPosition();
+        int anchor = viewToModel2D(top);
+        double into = 0;
+        try {
+            Rectangle2D r = modelToView2D(anchor);
+            if (r != null) into = top.y - r.getY();
+        } catch (BadLocationException ignored) {}
+
+        setFont(f);
+        vp.getParent().validate(); // a re-quebra, já aqui, para achar a nova posição da âncora
+        try {
+            Rectangle2D r = modelToView2D(anchor);
+            if (r == null) return;
+            int y = (int) Math.round(r.getY() + into * size / old.getSize2D());
+            y = Math.max(0, Math.min(y, getHeight() - vp.getExtentSize().height));
+            vp.setViewPosition(new Point(top.x, y));
+        } catch (BadLocationException ignored) {}
+    }
 
+    @Override protected void processKeyEvent(KeyEvent e) {
+        // digitou durante a prévia: a fonte final entra antes da tecla
+        if (zoomShot != null && e.getID() == KeyEvent.KEY_PRESSED && (e.getModifiersEx() & menuMask) == 0) commitZoom();
+        super.processKeyEvent(e);
+    }
+
+    @Override protected void processMouseEvent(MouseEvent e) {
+        if (zoomShot != null && e.getID() == MouseEvent.MOUSE_PRESSED) commitZoom(); // o clique mira o texto real
+        super.processMouseEvent(e);
+    }
+
+    @Override public void paint(Graphics g) {
+        BufferedImage shot = zoomShot;
+        if (shot == null) { super.paint(g); return; }
+        // prévia: o recorte já pintado, escalado a partir do canto superior da área visível
+        double s = (double) zoomTarget / zoomPercent;
+        Rectangle v = getVisibleRect();
         Graphics2D g2 = (Graphics2D) g.create();
-        g2.setColor(line);
+        try {
+            g2.setColor(getBackground());
+            g2.fillRect(v.x, v.y, v.width, v.height);
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(shot, v.x, v.y, (int) Math.round(zoomShotArea.width * s), (int) Math.round(zoomShotArea.height * s), null);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * Chamado a cada evento de redimensionamento da janela: mantém a quebra atual (largura presa, sem barra
+     * horizontal) e re-quebra uma vez, SETTLE_MS depois do último evento; então roda whenSettled (o último passado).
+     */
+    public void deferReflow(Runnable whenSettled) {
+        this.whenSettled = whenSettled;
+        if (frozenWidth < 0 && getLineWrap() && getWidth() > 0) {
+            frozenWidth = getWidth();
+            frozenIn = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, this);
+            if (frozenIn != null) {
+                frozenHPolicy = frozenIn.getHorizontalScrollBarPolicy();
+                frozenIn.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+            }
+        }
+        if (settle == null) {
+            settle = new Timer(SETTLE_MS, e -> settle());
+            settle.setRepeats(false);
+        }
+        settle.restart();
+    }
+
+    private void settle() {
+        if (frozenWidth >= 0) {
+            frozenWidth = -1;
+            if (frozenIn != null) frozenIn.setHorizontalScrollBarPolicy(frozenHPolicy);
+            frozenIn = null;
+            revalidate(); // a única re-quebra, já na largura final
+        }
+        Runnable r = whenSettled;
+        whenSettled = null;
+        if (r != null) r.run();
+    }
+
+    @Override public boolean getScrollableTracksViewportWidth() {
+        return frozenWidth < 0 && super.getScrollableTracksViewportWidth();
+    }
+
+    @Override public Dimension getPreferredSize() {
+        Dimension d = super.getPreferredSize();
+        if (frozenWidth >= 0) d.width = frozenWidth;
+        return d;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (StartupTrace.ENABLED && isEditable()) StartupTrace.mark("editable");
 
         Insets ins = getInsets();
         int h = getHeight();
         int w = getWidth();
+        if (lineStep == 0) {
+            FontMetrics fm = g.getFontMetrics(getFont());
+            lineAscent = fm.getAscent();
+            lineStep = Math.max(lineHeight, fm.getHeight());
+        }
 
-        FontMetrics fm = g2.getFontMetrics(getFont());
-        int baseline = ins.top + fm.getAscent();
-
-        int step = Math.max(lineHeight, fm.getHeight());
+        // linhas na altura y+1 de cada base, de ins.top+ascent até o fim da área útil; só as do clip
+        int first = ins.top + lineAscent + 1;
+        int last = h - ins.bottom;
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            if (clip.y > first) first += (clip.y - first + lineStep - 1) / lineStep * lineStep;
+            last = Math.min(last, clip.y + clip.height - 1);
+        }
+        if (first > last) return;
 
-        for (int y = baseline; y < h - ins.bottom; y += step) {
-            g2.drawLine(ins.left, y + 1, w - ins.right, y + 1);
+        Color old = g.getColor();
+        g.setColor(lineColor());
+        for (int y = first; y <= last; y += lineStep) {
+            g.drawLine(ins.left, y, w - ins.right, y);
         }
+        g.setColor(old);
+    }
 
-        g2.dispose();
+    private Color lineColor() {
+        if (lineColor != null) return lineColor;
+        Color line = guidelineColor;
+        if (line == null) {
+            Color bg = getBackground();
+            double luminance = (0.2126 * bg.getRed() + 0.7152 * bg.getGreen() + 0.0722 * bg.getBlue());
+            boolean dark = luminance < 128;
+            line = new Color(dark ? 255 : 0, dark ? 255 : 0, dark ? 255 : 0, 38);
+        }
+        return lineColor = line;
     }
 }
@@ -0,0 +1,48 @@
+package org.docknotas.ui.components;
+
+import org.docknotas.settings.AppSettings;
+import org.docknotas.ui.util.ChromeCache;
+import org.docknotas.ui.util.UiTheme;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+
+/**
+ * Card do NotesWindow: fundo arredondado conforme o tema, borda e faixa lateral na cor da prioridade.
+ * – Intensidade da cor = colorStrengthPercent das preferências
+ * – Lê a paleta (UiTheme.palette) das preferências a cada pintura; quem muda só chama repaint()
+ * – A moldura sai do ChromeCache, com a própria paleta como chave: o piscar do cursor só copia a imagem pronta
+ */
+public class NoteCard extends JPanel {
+
+    private final AppSettings settings;
+
+    public NoteCard(AppSettings settings) {
+        super(new BorderLayout());
+        this.settings = settings;
+        setOpaque(false);
+        setBorder(new EmptyBorder(10,10,10,10));
+    }
+
+    @Override protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        ChromeCache.draw(g, "noteCard", UiTheme.palette(settings), getWidth(), getHeight(), NoteCard::paintChrome);
+    }
+
+    private static void paintChrome(Graphics2D g2, UiTheme.Palette p, int w, int h) {
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        // corpo
+        g2.setColor(p.cardBody);
+        g2.fillRoundRect(0,0,w,h,14,14);
+
+        // borda + faixa (alpha = intensidade)
+        g2.setStroke(new BasicStroke(2f));
+        g2.setColor(p.cardBorder);
+        g2.drawRoundRect(1,1,w-2,h-2,14,14);
+
+        g2.setColor(p.cardTag);
+        g2.fillRoundRect(8, 12, 6, h-24, 8, 8);
+    }
+}
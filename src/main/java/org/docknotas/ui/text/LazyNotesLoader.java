@@ -0,0 +1,236 @@
+package org.docknotas.ui.text;
+
+import org.docknotas.storage.MappedNotes;
+import org.docknotas.storage.NotesSaver;
+import org.docknotas.storage.Storage;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.JTextComponent;
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carga progressiva de notas grandes: primeiro o trecho em volta da última linha do cursor,
+ * depois o resto em blocos (para cima e para baixo) sem travar a EDT.
+ * – Arquivo mapeado (MappedNotes), índice de linhas montado numa thread própria
+ * – Cada bloco entra no documento num evento separado da EDT (fila de um passo: a thread espera a EDT)
+ * – Ao sair com edições feitas durante a carga, finishNow aplica o resto ali mesmo (nada se perde)
+ * – Nota aberta no fim: as últimas linhas saem de uma varredura de trás para frente, sem indexar o arquivo
+ * – Ao inserir acima, a vista fica parada no mesmo texto
+ */
+public final class LazyNotesLoader {
+
+    /** Linhas mostradas antes/depois da linha do cursor na primeira tela. */
+    private static final int WINDOW_LINES = 400;
+    /** Tamanho aproximado de cada bloco inserido depois. */
+    private static final int CHUNK_BYTES = 512 * 1024;
+    /** Limite de finishNow (ao sair): depois disso sai sem as edições feitas durante a carga. */
+    private static final long FINISH_MS = 30_000;
+
+    private final JTextComponent editor;
+    private final NotesSaver saver;
+    private final MappedNotes notes;
+    private final int caretLine;
+    private volatile boolean cancelled;
+    /** Próximo passo para a EDT (janela, bloco, fim); aplicado pelo evento dele ou por finishNow. */
+    private final BlockingQueue<Runnable> steps = new ArrayBlockingQueue<>(1);
+
+    private LazyNotesLoader(JTextComponent editor, NotesSaver saver, MappedNotes notes, int caretLine) {
+        this.editor = editor;
+        this.saver = saver;
+        this.notes = notes;
+        this.caretLine = caretLine;
+    }
+
+    /**
+     * Começa a carga progressiva se o arquivo for grande; senão devolve null
+     * e quem chama carrega do jeito normal (Storage.loadNotes).
+     * @param caretLine linha do cursor na última sessão (-1 = fim)
+     */
+    public static LazyNotesLoader start(JTextComponent editor, NotesSaver saver, int caretLine) {
+        MappedNotes notes = Storage.mapNotes();
+        if (notes == null) return null;
+
+        LazyNotesLoader l = new LazyNotesLoader(editor, saver, notes, caretLine);
+        saver.beginLoading();
+        Thread t = new Thread(l::run, "docknotas-notes-loader");
+        t.setDaemon(true);
+        t.start();
+        return l;
+    }
+
+    /** Para de inserir blocos (p.ex. o usuário trocou o texto inteiro por "New"/"Import"). */
+    public void cancel() { cancelled = true; }
+
+    /**
+     * Termina a carga antes de voltar (ao sair: edições feitas durante a carga só vão num snapshot da nota inteira).
+     * Na EDT aplica os blocos aqui mesmo, conforme a thread de carga os decodifica; fora dela só espera.
+     * @return false se não terminou em FINISH_MS
+     */
+    public boolean finishNow() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FINISH_MS);
+        boolean edt = SwingUtilities.isEventDispatchThread();
+        try {
+            while (saver.isLoading()) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) return false;
+                if (!edt) { Thread.sleep(10); continue; }
+                Runnable r = steps.poll(Math.min(left, TimeUnit.MILLISECONDS.toNanos(50)), TimeUnit.NANOSECONDS);
+                if (r != null) r.run();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /* ===================== thread de carga ===================== */
+
+    private void run() {
+        boolean complete = false;
+        try {
+            // 1) primeira tela: linhas em volta do cursor (ou as últimas)
+            int first, last;
+            if (caretLine < 0) {
+                int tail = notes.tailStart(WINDOW_LINES);
+                String window = notes.decode(tail, notes.sizeBytes());
+                hand(() -> showWindow(window, -1));
+                notes.indexAll();
+                first = notes.lineAt(tail);
+                last = notes.lineCount();
+            } else {
+                notes.indexUntil((int) Math.min(Integer.MAX_VALUE, (long) caretLine + WINDOW_LINES));
+                int known = notes.lineCount();
+                int center = Math.min(caretLine, known - 1);
+                first = Math.max(0, center - WINDOW_LINES);
+                last = notes.isFullyIndexed() ? known : Math.min(known, center + WINDOW_LINES);
+                String window = notes.decodeLines(first, last);
+                int caretInWindow = center - first;
+                hand(() -> showWindow(window, caretInWindow));
+            }
+
+            // 2) resto do índice (e CRC do snapshot)
+            notes.indexAll();
+            int total = notes.lineCount();
+
+            // 3) blocos abaixo e acima da janela
+            int below = last, above = first;
+            while (!cancelled && (below < total || above > 0)) {
+                if (below < total) {
+                    int to = linesForChunk(below, +1, total);
+                    String s = notes.decodeLines(below, to);
+                    below = to;
+                    hand(() -> append(s));
+                }
+                if (above > 0 && !cancelled) {
+                    int from = linesForChunk(above, -1, total);
+                    String s = notes.decodeLines(from, above);
+                    above = from;
+                    hand(() -> prepend(s));
+                }
+            }
+            notes.adoptAsSnapshot();
+            complete = true;
+        } catch (Exception ignored) {
+            // segue para o plano B abaixo
+        } finally {
+            notes.close();
+        }
+
+        // falhou no meio: nunca deixar um documento parcial virar o arquivo salvo
+        Runnable end = complete ? saver::finishLoading : () -> {
+            if (!cancelled) saver.withoutTracking(() -> editor.setText(Storage.loadNotes()));
+            saver.finishLoading();
+        };
+        try { hand(end); }
+        catch (InterruptedException e) { SwingUtilities.invokeLater(end); }
+    }
+
+    /** Entrega um passo à EDT; espera enquanto o anterior não foi aplicado. */
+    private void hand(Runnable step) throws InterruptedException {
+        steps.put(step);
+        SwingUtilities.invokeLater(this::applyNext);
+    }
+
+    /** EDT: aplica o passo pendente (se finishNow ainda não o aplicou). */
+    private void applyNext() {
+        Runnable r = steps.poll();
+        if (r != null) r.run();
+    }
+
+    /** Próximo limite de bloco a partir da linha {@code from}, andando em {@code dir}. */
+    private int linesForChunk(int from, int dir, int total) {
+        int start = notes.lineStart(from);
+        int lo = dir > 0 ? from + 1 : 0, hi = dir > 0 ? total : from - 1;
+        // busca binária pela linha que fecha ~CHUNK_BYTES
+        while (lo < hi) {
+            int mid = (lo + hi + (dir > 0 ? 0 : 1)) >>> 1;
+            int bytes = Math.abs(notes.lineStart(mid) - start);
+            if (dir > 0) { if (bytes >= CHUNK_BYTES) hi = mid; else lo = mid + 1; }
+            else         { if (bytes >= CHUNK_BYTES) lo = mid; else hi = mid - 1; }
+        }
+        return lo;
+    }
+
+    /* ===================== EDT ===================== */
+
+    private void showWindow(String text, int caretInWindow) {
+        if (cancelled) return;
+        saver.withoutTracking(() -> editor.setText(text));
+        try {
+            int pos = caretInWindow < 0
+                    ? editor.getDocument().getLength()
+                    : editor.getDocument().getDefaultRootElement().getElement(
+                        Math.min(caretInWindow, editor.getDocument().getDefaultRootElement().getElementCount() - 1))
+                      .getStartOffset();
+            editor.setCaretPosition(pos);
+        } catch (IllegalArgumentException ignored) {}
+    }
+
+    private void append(String s) {
+        if (cancelled || s.isEmpty()) return;
+        Document doc = editor.getDocument();
+        saver.withoutTracking(() -> {
+            try { doc.insertString(doc.getLength(), s, null); }
+            catch (BadLocationException ignored) {}
+        });
+    }
+
+    /** Insere no topo mantendo na tela o mesmo texto que estava visível. */
+    private void prepend(String s) {
+        if (cancelled || s.isEmpty()) return;
+        Document doc = editor.getDocument();
+        JViewport vp = (editor.getParent() instanceof JViewport v) ? v : null;
+
+        int anchor = -1, dy = 0;
+        Point viewPos = null;
+        if (vp != null) {
+            viewPos = vp.getViewPosition();
+            try {
+                anchor = editor.viewToModel2D(viewPos);
+                Rectangle2D r = editor.modelToView2D(anchor);
+                if (r != null) dy = viewPos.y - (int) r.getY();
+            } catch (BadLocationException e) { anchor = -1; }
+        }
+
+        saver.withoutTracking(() -> {
+            try { doc.insertString(0, s, null); }
+            catch (BadLocationException ignored) {}
+        });
+
+        if (anchor >= 0) {
+            editor.revalidate();
+            if (vp.getParent() != null) vp.getParent().validate();
+            try {
+                Rectangle2D r = editor.modelToView2D(anchor + s.length());
+                if (r != null) vp.setViewPosition(new Point(viewPos.x, Math.max(0, (int) r.getY() + dy)));
+            } catch (BadLocationException ignored) {}
+        }
+    }
+}
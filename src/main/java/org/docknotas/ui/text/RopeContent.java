@@ -0,0 +1,484 @@
+package org.docknotas.ui.text;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conteúdo de documento em "rope" (árvore B de folhas de texto) no lugar do GapContent.
+ * – insert/remove em O(log n): só a folha tocada é copiada, não há "gap" para mover
+ * – Positions ficam ancoradas na folha (offset local): editar longe não mexe nelas
+ * – getChars com partial return entrega o trecho da folha sem copiar
+ * Semântica das Positions igual à do GapContent: inserir em p empurra quem está em p,
+ * exceto offset 0, que fica parado.
+ */
+public class RopeContent implements AbstractDocument.Content {
+
+    /** Tamanho máximo de uma folha (chars). */
+    private static final int LEAF_MAX = 2048;
+    /** Máximo de filhos por nó interno. */
+    private static final int FANOUT = 32;
+
+    /* ===================== estrutura ===================== */
+
+    private abstract static class Node {
+        Inner parent;
+        int length;
+    }
+
+    private static final class Inner extends Node {
+        final ArrayList<Node> kids = new ArrayList<>();
+    }
+
+    private static final class Leaf extends Node {
+        char[] buf;
+        ArrayList<Mark> marks;          // criado sob demanda
+        Leaf prev, next;
+        volatile long startCache = -1;  // (versão << 32) | início absoluto
+
+        Leaf(char[] buf, int length) { this.buf = buf; this.length = length; }
+    }
+
+    /** Âncora interna de uma Position; some quando a Position deixa de ser usada. */
+    private static final class Mark extends WeakReference<Pos> {
+        Leaf leaf;
+        int local;
+
+        Mark(Pos owner, ReferenceQueue<Pos> q, Leaf leaf, int local) {
+            super(owner, q);
+            this.leaf = leaf; this.local = local;
+        }
+    }
+
+    private final class Pos implements Position {
+        Mark mark;
+        @Override public int getOffset() { return startOf(mark.leaf) + mark.local; }
+        @Override public String toString() { return Integer.toString(getOffset()); }
+    }
+
+    private Inner root = new Inner();
+    private int version = 0;
+    /** Última folha encontrada: acessos seguidos (ex.: Elements de linha) quase sempre caem nela. */
+    private Leaf finger;
+    private final ReferenceQueue<Pos> deadMarks = new ReferenceQueue<>();
+
+    public RopeContent() {
+        // todo documento tem o '\n' implícito no fim
+        Leaf first = new Leaf(new char[16], 1);
+        first.buf[0] = '\n';
+        first.parent = root;
+        root.kids.add(first);
+        root.length = 1;
+    }
+
+    /* ===================== AbstractDocument.Content ===================== */
+
+    @Override
+    public int length() {
+        return root.length;
+    }
+
+    @Override
+    public Position createPosition(int offset) throws BadLocationException {
+        if (offset < 0 || offset > length()) throw new BadLocationException("Invalid position", offset);
+        purgeMarks();
+        int[] local = new int[1];
+        Leaf leaf = leafAt(offset, true, local);
+        Pos p = new Pos();
+        p.mark = new Mark(p, deadMarks, leaf, local[0]);
+        marksOf(leaf).add(p.mark);
+        return p;
+    }
+
+    @Override
+    public UndoableEdit insertString(int where, String str) throws BadLocationException {
+        if (where < 0 || where > length()) throw new BadLocationException("Invalid insert", length());
+        int n = str.length();
+        if (n == 0) return null;
+        purgeMarks();
+
+        int[] local = new int[1];
+        Leaf leaf = leafAt(where, true, local);
+        int lo = local[0];
+
+        if (leaf.length + n <= LEAF_MAX) {
+            // caso comum (digitação): cabe na própria folha
+            if (leaf.length + n > leaf.buf.length) {
+                leaf.buf = java.util.Arrays.copyOf(leaf.buf, Math.min(LEAF_MAX, Math.max(leaf.length + n, leaf.buf.length * 2)));
+            }
+            System.arraycopy(leaf.buf, lo, leaf.buf, lo + n, leaf.length - lo);
+            str.getChars(0, n, leaf.buf, lo);
+            if (leaf.marks != null) {
+                for (Mark m : leaf.marks) {
+                    if (movesOnInsert(m.local, lo, where)) m.local += n;
+                }
+            }
+            addLength(leaf, n);
+        } else {
+            // texto grande: parte a folha em lo e encaixa folhas novas no meio
+            Leaf right = splitLeaf(leaf, lo, where);
+            List<Leaf> fresh = leavesOf(str);
+            fresh.add(right);
+            insertAfter(leaf, fresh);
+            dropIfEmpty(right);
+            dropIfEmpty(leaf);
+        }
+        version++; // invalida os inícios memorizados das folhas
+        return new InsertUndo(where, n);
+    }
+
+    @Override
+    public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+        if (where < 0 || nitems < 0 || where + nitems >= length()) {
+            throw new BadLocationException("Invalid remove", length() + 1);
+        }
+        if (nitems == 0) return null;
+        String removed = getString(where, nitems);
+        purgeMarks();
+
+        int end = where + nitems;
+        int[] local = new int[1];
+        Leaf a = leafAt(where, false, local);
+        int la = local[0];
+        Leaf b = leafAt(end, true, local);
+        int lb = local[0];
+
+        if (a == b) {
+            System.arraycopy(a.buf, lb, a.buf, la, a.length - lb);
+            if (a.marks != null) {
+                for (Mark m : a.marks) {
+                    if (m.local > lb) m.local -= nitems;
+                    else if (m.local > la) m.local = la;
+                }
+            }
+            addLength(a, -nitems);
+            dropIfEmpty(a);
+            version++;
+            return new RemoveUndo(where, removed);
+        }
+
+        // folha inicial: corta o fim
+        if (a.marks != null) for (Mark m : a.marks) if (m.local > la) m.local = la;
+        addLength(a, -(a.length - la));
+
+        // folhas do meio: somem inteiras (as marcas vão para o ponto da remoção)
+        for (Leaf mid = a.next; mid != b; ) {
+            Leaf nx = mid.next;
+            moveMarks(mid, a, la);
+            removeNode(mid);
+            mid = nx;
+        }
+
+        // folha final: corta o começo
+        if (b.marks != null) {
+            for (java.util.Iterator<Mark> it = b.marks.iterator(); it.hasNext(); ) {
+                Mark m = it.next();
+                if (m.local <= lb) { it.remove(); m.leaf = a; m.local = la; marksOf(a).add(m); }
+                else m.local -= lb;
+            }
+        }
+        System.arraycopy(b.buf, lb, b.buf, 0, b.length - lb);
+        addLength(b, -lb);
+
+        // junta as duas pontas quando cabem numa folha só
+        if (a.length + b.length <= LEAF_MAX) mergeInto(a, b);
+        dropIfEmpty(b);
+        dropIfEmpty(a);
+        collapseRoot();
+        version++;
+        return new RemoveUndo(where, removed);
+    }
+
+    @Override
+    public String getString(int where, int len) throws BadLocationException {
+        if (where < 0 || len < 0 || where + len > length()) throw new BadLocationException("Invalid range", length());
+        StringBuilder sb = new StringBuilder(len);
+        int[] local = new int[1];
+        Leaf leaf = leafAt(where, false, local);
+        int off = local[0];
+        while (len > 0) {
+            int take = Math.min(len, leaf.length - off);
+            sb.append(leaf.buf, off, take);
+            len -= take;
+            leaf = leaf.next;
+            off = 0;
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void getChars(int where, int len, Segment txt) throws BadLocationException {
+        if (where < 0 || len < 0 || where + len > length()) throw new BadLocationException("Invalid range", length());
+        int[] local = new int[1];
+        Leaf leaf = leafAt(where, false, local);
+        int off = local[0];
+
+        // trecho dentro de uma folha (ou partial return): sem cópia
+        if (off + len <= leaf.length || txt.isPartialReturn()) {
+            txt.array = leaf.buf;
+            txt.offset = off;
+            txt.count = Math.min(len, leaf.length - off);
+            return;
+        }
+        char[] out = new char[len];
+        int pos = 0;
+        while (pos < len) {
+            int take = Math.min(len - pos, leaf.length - off);
+            System.arraycopy(leaf.buf, off, out, pos, take);
+            pos += take;
+            leaf = leaf.next;
+            off = 0;
+        }
+        txt.array = out;
+        txt.offset = 0;
+        txt.count = len;
+    }
+
+    /* ===================== navegação ===================== */
+
+    /**
+     * Folha que contém o offset. Para inserção, prefere a folha mais à esquerda
+     * (offset no fim de uma folha fica nela), para que as Positions nesse ponto andem juntas.
+     */
+    private Leaf leafAt(int off, boolean forInsert, int[] local) {
+        for (Leaf f = finger; f != null && f.parent != null; f = (f == finger) ? f.next : null) {
+            int s = startOf(f);
+            boolean hit = forInsert ? (off > s && off <= s + f.length) || off == 0 && s == 0
+                                    : off >= s && off < s + f.length;
+            if (hit) { local[0] = off - s; finger = f; return f; }
+        }
+
+        Node n = root;
+        while (n instanceof Inner in) {
+            Node next = null;
+            for (Node k : in.kids) {
+                if (off < k.length || (forInsert && off == k.length)) { next = k; break; }
+                off -= k.length;
+            }
+            if (next == null) {               // fim do documento
+                next = in.kids.get(in.kids.size() - 1);
+                off += next.length;
+            }
+            n = next;
+        }
+        local[0] = off;
+        finger = (Leaf) n;
+        return finger;
+    }
+
+    /** Início absoluto de uma folha; memorizado até a próxima edição. */
+    private int startOf(Leaf leaf) {
+        long c = leaf.startCache;
+        if (c >= 0 && (int) (c >>> 32) == version) return (int) c;
+
+        int s = 0;
+        Node n = leaf;
+        for (Inner p = n.parent; p != null; n = p, p = p.parent) {
+            for (Node k : p.kids) {
+                if (k == n) break;
+                s += k.length;
+            }
+        }
+        leaf.startCache = ((long) version << 32) | s;
+        return s;
+    }
+
+    private static boolean movesOnInsert(int markLocal, int lo, int where) {
+        return markLocal > lo || (markLocal == lo && where != 0);
+    }
+
+    /* ===================== manutenção da árvore ===================== */
+
+    private static void addLength(Node n, int delta) {
+        for (; n != null; n = n.parent) n.length += delta;
+    }
+
+    private static ArrayList<Mark> marksOf(Leaf leaf) {
+        if (leaf.marks == null) leaf.marks = new ArrayList<>(4);
+        return leaf.marks;
+    }
+
+    private static void moveMarks(Leaf from, Leaf to, int local) {
+        if (from.marks == null) return;
+        for (Mark m : from.marks) { m.leaf = to; m.local = local; }
+        marksOf(to).addAll(from.marks);
+        from.marks = null;
+    }
+
+    /** Corta a folha em lo; o resto (e as marcas que andariam numa inserção) vai para a folha nova. */
+    private Leaf splitLeaf(Leaf leaf, int lo, int where) {
+        int rn = leaf.length - lo;
+        Leaf right = new Leaf(java.util.Arrays.copyOfRange(leaf.buf, lo, lo + Math.max(rn, 1)), rn);
+        if (leaf.marks != null) {
+            for (java.util.Iterator<Mark> it = leaf.marks.iterator(); it.hasNext(); ) {
+                Mark m = it.next();
+                if (movesOnInsert(m.local, lo, where)) {
+                    it.remove();
+                    m.leaf = right; m.local -= lo;
+                    marksOf(right).add(m);
+                }
+            }
+        }
+        addLength(leaf, -rn);
+        return right;
+    }
+
+    private static List<Leaf> leavesOf(String s) {
+        List<Leaf> out = new ArrayList<>(s.length() / LEAF_MAX + 2);
+        for (int i = 0; i < s.length(); i += LEAF_MAX) {
+            int n = Math.min(LEAF_MAX, s.length() - i);
+            char[] buf = new char[n];
+            s.getChars(i, i + n, buf, 0);
+            out.add(new Leaf(buf, n));
+        }
+        return out;
+    }
+
+    /** Encaixa folhas logo depois de {@code after}, mantendo a lista ligada e os tamanhos. */
+    private void insertAfter(Leaf after, List<Leaf> leaves) {
+        Inner p = after.parent;
+        int idx = p.kids.indexOf(after);
+        int added = 0;
+        Leaf prev = after, last = after.next;
+        for (Leaf l : leaves) {
+            l.parent = p;
+            l.prev = prev; prev.next = l;
+            prev = l;
+            added += l.length;
+        }
+        prev.next = last;
+        if (last != null) last.prev = prev;
+        p.kids.addAll(idx + 1, leaves);
+        addLength(p, added);
+        rebalance(p);
+    }
+
+    /** Nó interno com filhos demais vira vários irmãos (subindo até a raiz). */
+    private void rebalance(Inner p) {
+        int chunk = FANOUT * 3 / 4;
+        while (p != null && p.kids.size() > FANOUT) {
+            List<Node> all = new ArrayList<>(p.kids);
+            p.kids.clear();
+            List<Inner> parts = new ArrayList<>();
+            for (int i = 0; i < all.size(); i += chunk) {
+                Inner part = (i == 0) ? p : new Inner();
+                part.length = 0;
+                for (Node k : all.subList(i, Math.min(all.size(), i + chunk))) {
+                    k.parent = part;
+                    part.kids.add(k);
+                    part.length += k.length;
+                }
+                parts.add(part);
+            }
+            Inner up = p.parent;
+            if (up == null) {
+                up = new Inner();
+                for (Inner part : parts) { part.parent = up; up.kids.add(part); up.length += part.length; }
+                root = up;
+            } else {
+                int idx = up.kids.indexOf(p);
+                for (int i = 1; i < parts.size(); i++) parts.get(i).parent = up;
+                up.kids.addAll(idx + 1, parts.subList(1, parts.size()));
+            }
+            p = up;
+        }
+    }
+
+    private void removeNode(Node n) {
+        if (n instanceof Leaf l) {
+            if (l.prev != null) l.prev.next = l.next;
+            if (l.next != null) l.next.prev = l.prev;
+            l.prev = l.next = null;
+        }
+        Inner p = n.parent;
+        p.kids.remove(n);
+        addLength(p, -n.length);
+        n.parent = null;
+        if (p.kids.isEmpty() && p != root) removeNode(p);
+    }
+
+    /** Folha vazia sai da árvore; as marcas dela vão para o vizinho (mesmo offset absoluto). */
+    private void dropIfEmpty(Leaf leaf) {
+        if (leaf.length > 0 || leaf.parent == null) return;
+        if (leaf.prev != null) moveMarks(leaf, leaf.prev, leaf.prev.length);
+        else if (leaf.next != null) moveMarks(leaf, leaf.next, 0);
+        else return;
+        removeNode(leaf);
+    }
+
+    private void mergeInto(Leaf a, Leaf b) {
+        if (a.length + b.length > a.buf.length) a.buf = java.util.Arrays.copyOf(a.buf, a.length + b.length);
+        System.arraycopy(b.buf, 0, a.buf, a.length, b.length);
+        if (b.marks != null) {
+            for (Mark m : b.marks) { m.leaf = a; m.local += a.length; }
+            marksOf(a).addAll(b.marks);
+            b.marks = null;
+        }
+        int moved = b.length;
+        addLength(b, -moved);
+        addLength(a, moved);
+    }
+
+    private void collapseRoot() {
+        while (root.kids.size() == 1 && root.kids.get(0) instanceof Inner only) {
+            only.parent = null;
+            root = only;
+        }
+    }
+
+    private void purgeMarks() {
+        for (java.lang.ref.Reference<? extends Pos> r; (r = deadMarks.poll()) != null; ) {
+            Mark m = (Mark) r;
+            if (m.leaf.marks != null) m.leaf.marks.remove(m);
+        }
+    }
+
+    /* ===================== undo ===================== */
+
+    private final class InsertUndo extends AbstractUndoableEdit {
+        private final int where, length;
+        private String text;
+
+        InsertUndo(int where, int length) { this.where = where; this.length = length; }
+
+        @Override public void undo() throws CannotUndoException {
+            super.undo();
+            try { text = getString(where, length); remove(where, length); }
+            catch (BadLocationException e) { throw new CannotUndoException(); }
+        }
+
+        @Override public void redo() throws CannotRedoException {
+            super.redo();
+            try { insertString(where, text); text = null; }
+            catch (BadLocationException e) { throw new CannotRedoException(); }
+        }
+    }
+
+    private final class RemoveUndo extends AbstractUndoableEdit {
+        private final int where;
+        private final String text;
+
+        RemoveUndo(int where, String text) { this.where = where; this.text = text; }
+
+        @Override public void undo() throws CannotUndoException {
+            super.undo();
+            try { insertString(where, text); }
+            catch (BadLocationException e) { throw new CannotUndoException(); }
+        }
+
+        @Override public void redo() throws CannotRedoException {
+            super.redo();
+            try { remove(where, text.length()); }
+            catch (BadLocationException e) { throw new CannotRedoException(); }
+        }
+    }
+}
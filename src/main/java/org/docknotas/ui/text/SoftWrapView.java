@@ -0,0 +1,533 @@
+package org.docknotas.ui.text;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.*;
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Quebra de linha suave do editor, no lugar do WrappedPlainView do JTextArea.
+ * – Quebras de cada parágrafo (filho da raiz do documento) em cache, em blocos de até 2×BLOCK parágrafos;
+ *   uma edição refaz só os parágrafos tocados, e inserir/remover parágrafos mexe só nos blocos do trecho
+ * – Duas árvores de Fenwick sobre os blocos (parágrafos e linhas visuais): parágrafo↔y em O(log n + BLOCK);
+ *   a pintura vai direto ao clip e modelToView/viewToModel (cursor, cliques, rolagem) não varrem a nota do topo
+ * – Mesmas regras do WrappedPlainView: quebra por palavra (Utilities.getBreakLocation) ou por caractere,
+ *   altura de linha = altura da fonte, cores de seleção, destaques em camadas
+ * – Largura ou fonte nova = todas as quebras refeitas de uma vez, na próxima consulta
+ *   (no redimensionamento ao vivo o LineRuledTextArea segura a largura até assentar)
+ */
+public class SoftWrapView extends View implements TabExpander {
+
+    /** Parágrafos por bloco ao montar/dividir; um bloco cresce até 2×BLOCK antes de dividir. */
+    private static final int BLOCK = 512;
+
+    private final boolean wordWrap;
+
+    private Font font;
+    private FontMetrics metrics;
+    private int lineHeight = 1;
+    private int tabSize;
+    private float tabBase;
+    /** Largura de quebra; MAX_VALUE = ainda sem tamanho (uma linha por parágrafo, como o Swing). */
+    private int width = Integer.MAX_VALUE;
+
+    /* ===== cache por parágrafo ===== */
+    private Block[] blocks = new Block[4];
+    private int blockCount;
+    private int[] paraTree = new int[5];     // Fenwick sobre parágrafos por bloco (1-based)
+    private int[] lineTree = new int[5];     // Fenwick sobre linhas visuais por bloco (1-based)
+    private int count;                       // parágrafos no cache (= filhos da raiz)
+    private int totalLines;
+    private boolean stale = true;            // tudo a refazer (largura/fonte)
+    private int local, lineIn;               // saídas de locate/blockAtLine: parágrafo no bloco, linha no parágrafo
+
+    private final Segment seg = new Segment();
+
+    /** Parágrafos consecutivos do documento. */
+    private static final class Block {
+        int n;
+        int sum;          // linhas visuais do bloco
+        int[] lines;      // linhas visuais de cada parágrafo (>= 1; 0 = ainda sem quebras)
+        int[][] breaks;   // início das linhas 2..n, relativo ao parágrafo; null = uma linha
+
+        Block(int cap) {
+            lines = new int[Math.max(cap, 8)];
+            breaks = new int[lines.length][];
+        }
+
+        int linesBefore(int j) {
+            int s = 0;
+            for (int i = 0; i < j; i++) s += lines[i];
+            return s;
+        }
+
+        /** Abre k parágrafos vazios em j. */
+        void open(int j, int k) {
+            if (n + k > lines.length) {
+                int cap = Math.max(n + k, lines.length + (lines.length >> 1));
+                lines = Arrays.copyOf(lines, cap);
+                breaks = Arrays.copyOf(breaks, cap);
+            }
+            System.arraycopy(lines, j, lines, j + k, n - j);
+            System.arraycopy(breaks, j, breaks, j + k, n - j);
+            Arrays.fill(lines, j, j + k, 0);
+            Arrays.fill(breaks, j, j + k, null);
+            n += k;
+        }
+
+        /** Tira k parágrafos a partir de j. */
+        void close(int j, int k) {
+            for (int i = j; i < j + k; i++) sum -= lines[i];
+            System.arraycopy(lines, j + k, lines, j, n - j - k);
+            System.arraycopy(breaks, j + k, breaks, j, n - j - k);
+            Arrays.fill(breaks, n - k, n, null);
+            n -= k;
+        }
+
+        /** Parágrafos [from, from+k) num bloco novo. */
+        Block slice(int from, int k) {
+            Block b = new Block(k);
+            System.arraycopy(lines, from, b.lines, 0, k);
+            System.arraycopy(breaks, from, b.breaks, 0, k);
+            b.n = k;
+            b.sum = b.linesBefore(k);
+            return b;
+        }
+    }
+
+    public SoftWrapView(Element root, boolean wordWrap) {
+        super(root);
+        this.wordWrap = wordWrap;
+    }
+
+    /* ===================== medidas ===================== */
+
+    private void updateMetrics() {
+        Component host = getContainer();
+        Font f = host != null ? host.getFont() : null;
+        if (f != null && font != f) {
+            font = f;
+            metrics = host.getFontMetrics(f);
+            lineHeight = Math.max(1, metrics.getHeight());
+            Object t = getDocument().getProperty(PlainDocument.tabSizeAttribute);
+            tabSize = (t instanceof Integer n ? n : 8) * metrics.charWidth('m');
+            stale = true;
+        }
+    }
+
+    private void ensureLayout() {
+        updateMetrics();
+        if (!stale) return;
+        Element root = getElement();
+        int n = root.getElementCount();
+        blocks = new Block[Math.max(4, (n + BLOCK - 1) / BLOCK)];
+        blockCount = 0;
+        for (int i = 0; i < n; i += BLOCK) {
+            Block blk = new Block(Math.min(BLOCK, n - i));
+            blk.n = Math.min(BLOCK, n - i);
+            for (int j = 0; j < blk.n; j++) layout(blk, j, root.getElement(i + j));
+            blocks[blockCount++] = blk;
+        }
+        stale = false;
+        rebuildTree();
+    }
+
+    /** Quebras do parágrafo j do bloco na largura atual; devolve a variação de linhas visuais. */
+    private int layout(Block blk, int j, Element para) {
+        int old = blk.lines[j];
+        int p0 = para.getStartOffset();
+        int end = para.getEndOffset(); // com o '\n': o getBreakLocation conta com ele no fim do trecho
+        int[] b = null;
+        int n = 0;
+        if (width != Integer.MAX_VALUE && end - p0 > 1) {
+            for (int p = p0; ; ) {
+                int q = breakAt(p, end);
+                if (q >= end) break;
+                if (b == null) b = new int[4];
+                else if (n == b.length) b = Arrays.copyOf(b, n * 2);
+                b[n++] = q - p0;
+                p = q;
+            }
+        }
+        blk.lines[j] = n + 1;
+        blk.breaks[j] = b == null ? null : Arrays.copyOf(b, n);
+        blk.sum += n + 1 - old;
+        return n + 1 - old;
+    }
+
+    /** Início da próxima linha visual depois de p (>= p+1). */
+    private int breakAt(int p, int end) {
+        // uma linha quase nunca passa de ~1 caractere por pixel: não copia o resto de um parágrafo enorme,
+        // mas dobra a janela enquanto a linha chegar perto do corte (caracteres estreitos ou de largura zero)
+        int len = Math.min(end - p, width + 16);
+        while (true) {
+            try {
+                getDocument().getText(p, len, seg);
+            } catch (BadLocationException e) {
+                return end;
+            }
+            int n = wordWrap
+                    ? Utilities.getBreakLocation(seg, metrics, tabBase, tabBase + width, this, p)
+                    : Utilities.getTabbedTextOffset(seg, metrics, tabBase, tabBase + width, this, p, false);
+            if (p + len < end && n + 16 >= len) {
+                len = (int) Math.min(end - p, 2L * len);
+                continue;
+            }
+            return p + Math.max(1, Math.min(n, len));
+        }
+    }
+
+    @Override public float nextTabStop(float x, int tabOffset) {
+        if (tabSize == 0) return x;
+        int tabs = (int) (x - tabBase) / tabSize;
+        return tabBase + (tabs + 1) * tabSize;
+    }
+
+    /* ===================== Fenwick (blocos) ===================== */
+
+    private void rebuildTree() {
+        if (paraTree.length < blockCount + 1) {
+            paraTree = new int[blockCount * 2 + 1];
+            lineTree = new int[paraTree.length];
+        }
+        count = totalLines = 0;
+        for (int i = 1; i <= blockCount; i++) {
+            Block blk = blocks[i - 1];
+            paraTree[i] = blk.n;
+            lineTree[i] = blk.sum;
+            count += blk.n;
+            totalLines += blk.sum;
+        }
+        for (int i = 1; i <= blockCount; i++) {
+            int j = i + (i & -i);
+            if (j <= blockCount) {
+                paraTree[j] += paraTree[i];
+                lineTree[j] += lineTree[i];
+            }
+        }
+    }
+
+    /** Soma dos b primeiros blocos. */
+    private static int sum(int[] tree, int b) {
+        int s = 0;
+        for (int i = b; i > 0; i -= i & -i) s += tree[i];
+        return s;
+    }
+
+    private void addLines(int b, int delta) {
+        for (int i = b + 1; i <= blockCount; i += i & -i) lineTree[i] += delta;
+        totalLines += delta;
+    }
+
+    /** Bloco com o parágrafo p (p == count: fim do último bloco); o índice no bloco fica em local. */
+    private int locate(int p) {
+        int pos = 0;
+        for (int step = Integer.highestOneBit(Math.max(1, blockCount)); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next <= blockCount && paraTree[next] <= p) {
+                pos = next;
+                p -= paraTree[next];
+            }
+        }
+        if (pos == blockCount && pos > 0) p += blocks[--pos].n;
+        local = p;
+        return pos;
+    }
+
+    /** Bloco com a linha visual k (0 <= k < totalLines); parágrafo no bloco em local, linha nele em lineIn. */
+    private int blockAtLine(int k) {
+        int pos = 0;
+        for (int step = Integer.highestOneBit(Math.max(1, blockCount)); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next <= blockCount && lineTree[next] <= k) {
+                pos = next;
+                k -= lineTree[next];
+            }
+        }
+        if (pos == blockCount) {                 // k fora do texto: última linha
+            pos = blockCount - 1;
+            k = blocks[pos].sum - 1;
+        }
+        Block blk = blocks[pos];
+        int j = 0;
+        while (j < blk.n - 1 && k >= blk.lines[j]) k -= blk.lines[j++];
+        local = j;
+        lineIn = Math.min(k, blk.lines[j] - 1);
+        return pos;
+    }
+
+    /** Linhas visuais antes do parágrafo p. */
+    private int prefix(int p) {
+        int b = locate(p);
+        return sum(lineTree, b) + blocks[b].linesBefore(local);
+    }
+
+    /** Linha visual (dentro do parágrafo) do offset relativo rel. */
+    private static int lineOf(int[] b, int rel) {
+        if (b == null) return 0;
+        int lo = 0, hi = b.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (b[mid] <= rel) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Troca removed parágrafos a partir de index por added novos (ainda sem quebras); só os blocos do trecho mudam. */
+    private void splice(int index, int removed, int added) {
+        int b = locate(index), j = local;
+        while (removed > 0) {
+            Block blk = blocks[b];
+            int k = Math.min(removed, blk.n - j);
+            blk.close(j, k);
+            removed -= k;
+            if (blk.n == 0) dropBlock(b);
+            else if (removed > 0) { b++; j = 0; }
+        }
+        if (added > 0) {
+            if (blockCount == 0) {
+                insertBlock(0, new Block(added));
+                b = 0;
+            } else if (b == blockCount) {
+                j = blocks[--b].n;
+            }
+            Block blk = blocks[b];
+            blk.open(j, added);
+            if (blk.n > 2 * BLOCK) split(b);
+        }
+        // blocos que ficaram pequenos em volta do trecho se juntam ao vizinho
+        if (b + 1 < blockCount) merge(b);
+        if (b > 0 && b < blockCount) merge(b - 1);
+        rebuildTree();
+    }
+
+    private void split(int b) {
+        Block blk = blocks[b];
+        int parts = (blk.n + BLOCK - 1) / BLOCK;
+        Block[] out = new Block[parts];
+        for (int i = 0; i < parts; i++) out[i] = blk.slice(i * BLOCK, Math.min(BLOCK, blk.n - i * BLOCK));
+        dropBlock(b);
+        for (int i = 0; i < parts; i++) insertBlock(b + i, out[i]);
+    }
+
+    /** Junta o bloco b+1 ao b se os dois cabem num bloco. */
+    private void merge(int b) {
+        Block x = blocks[b], y = blocks[b + 1];
+        if (x.n + y.n > BLOCK) return;
+        x.open(x.n, y.n);
+        System.arraycopy(y.lines, 0, x.lines, x.n - y.n, y.n);
+        System.arraycopy(y.breaks, 0, x.breaks, x.n - y.n, y.n);
+        x.sum += y.sum;
+        dropBlock(b + 1);
+    }
+
+    private void insertBlock(int b, Block blk) {
+        if (blockCount == blocks.length) blocks = Arrays.copyOf(blocks, blocks.length * 2);
+        System.arraycopy(blocks, b, blocks, b + 1, blockCount - b);
+        blocks[b] = blk;
+        blockCount++;
+    }
+
+    private void dropBlock(int b) {
+        System.arraycopy(blocks, b + 1, blocks, b, blockCount - b - 1);
+        blocks[--blockCount] = null;
+    }
+
+    /* ===================== View ===================== */
+
+    @Override public void setSize(float w, float h) {
+        updateMetrics();
+        int nw = Math.max(1, (int) w);
+        if (nw != width) {
+            width = nw;
+            stale = true;
+            preferenceChanged(null, true, true);
+        }
+    }
+
+    @Override public float getPreferredSpan(int axis) {
+        ensureLayout();
+        if (axis == X_AXIS) return width == Integer.MAX_VALUE ? 100f : width;
+        return (float) totalLines * lineHeight;
+    }
+
+    @Override public void paint(Graphics g, Shape a) {
+        ensureLayout();
+        if (totalLines == 0) return;
+        Rectangle alloc = a.getBounds();
+        tabBase = alloc.x;
+
+        JTextComponent host = (JTextComponent) getContainer();
+        Highlighter h = host.getHighlighter();
+        LayeredHighlighter layered = h instanceof LayeredHighlighter lh ? lh : null;
+        int sel0 = host.getSelectionStart(), sel1 = host.getSelectionEnd();
+        Color unselected = host.isEnabled() ? host.getForeground() : host.getDisabledTextColor();
+        Caret caret = host.getCaret();
+        Color selected = caret.isSelectionVisible() && h != null ? host.getSelectedTextColor() : unselected;
+
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setFont(font);
+        Object aa = host.getClientProperty(RenderingHints.KEY_TEXT_ANTIALIASING); // o mesmo que o Swing usa
+        if (aa != null) {
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, aa);
+            Object lcd = host.getClientProperty(RenderingHints.KEY_TEXT_LCD_CONTRAST);
+            if (lcd != null) g2.setRenderingHint(RenderingHints.KEY_TEXT_LCD_CONTRAST, lcd);
+        }
+
+        // só as linhas visuais do clip
+        int k0 = 0, k1 = totalLines - 1;
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            k0 = Math.max(k0, (clip.y - alloc.y) / lineHeight);
+            k1 = Math.min(k1, (clip.y + clip.height - 1 - alloc.y) / lineHeight);
+        }
+        if (k0 > k1) return;
+
+        Element root = getElement();
+        int bi = blockAtLine(k0);
+        Block blk = blocks[bi];
+        int j = local, line = lineIn;
+        int p = sum(paraTree, bi) + j;
+        int y = alloc.y + k0 * lineHeight + metrics.getAscent();
+        try {
+            for (int k = k0; k <= k1; k++, y += lineHeight) {
+                Element para = root.getElement(p);
+                int start = para.getStartOffset(), end = para.getEndOffset();
+                int[] b = blk.breaks[j];
+                int l0 = line == 0 ? start : start + b[line - 1];
+                int l1 = line < blk.lines[j] - 1 ? start + b[line] : end;
+                if (layered != null) layered.paintLayeredHighlights(g, l0, l1 == end ? l1 - 1 : l1, a, host, this);
+                drawLine(g2, l0, Math.min(l1, end - 1), alloc.x, y, sel0, sel1, selected, unselected);
+                if (++line < blk.lines[j]) continue;
+                line = 0;
+                p++;
+                if (++j >= blk.n && ++bi < blockCount) { blk = blocks[bi]; j = 0; }
+            }
+        } catch (BadLocationException ignored) {
+            // documento mudou no meio da pintura; a próxima pinta certo
+        }
+    }
+
+    private void drawLine(Graphics2D g, int p0, int p1, float x, float y,
+                          int sel0, int sel1, Color selected, Color unselected) throws BadLocationException {
+        if (sel0 == sel1 || selected.equals(unselected) || sel1 <= p0 || sel0 >= p1) {
+            drawText(g, p0, p1, x, y, unselected);
+            return;
+        }
+        int s0 = Math.max(p0, sel0), s1 = Math.min(p1, sel1);
+        x = drawText(g, p0, s0, x, y, unselected);
+        x = drawText(g, s0, s1, x, y, selected);
+        drawText(g, s1, p1, x, y, unselected);
+    }
+
+    private float drawText(Graphics2D g, int p0, int p1, float x, float y, Color c) throws BadLocationException {
+        if (p1 <= p0) return x;
+        getDocument().getText(p0, p1 - p0, seg);
+        g.setColor(c);
+        return Utilities.drawTabbedText(seg, x, y, g, this, p0);
+    }
+
+    @Override public Shape modelToView(int pos, Shape a, Position.Bias b) throws BadLocationException {
+        ensureLayout();
+        Document doc = getDocument();
+        if (pos < 0 || pos > doc.getLength()) throw new BadLocationException("posição fora do texto", pos);
+        Rectangle alloc = a.getBounds();
+        tabBase = alloc.x;
+
+        // Backward numa quebra (ou início de parágrafo) fica no fim da linha de cima, como no WrappedPlainView
+        int test = b == Position.Bias.Backward && pos > 0 ? pos - 1 : pos;
+        Element root = getElement();
+        int p = root.getElementIndex(test);
+        int start = root.getElement(p).getStartOffset();
+        int bi = locate(p);
+        Block blk = blocks[bi];
+        int[] b0 = blk.breaks[local];
+        int line = lineOf(b0, test - start);
+        int l0 = line == 0 ? start : start + b0[line - 1];
+        int k = sum(lineTree, bi) + blk.linesBefore(local) + line;
+
+        Rectangle r = new Rectangle(alloc.x, alloc.y + k * lineHeight, 1, lineHeight);
+        if (pos > l0) {
+            doc.getText(l0, pos - l0, seg);
+            r.x += (int) Utilities.getTabbedTextWidth(seg, metrics, tabBase, this, l0);
+        }
+        return r;
+    }
+
+    @Override public int viewToModel(float fx, float fy, Shape a, Position.Bias[] bias) {
+        ensureLayout();
+        bias[0] = Position.Bias.Forward;
+        Document doc = getDocument();
+        Rectangle alloc = a.getBounds();
+        tabBase = alloc.x;
+        if (totalLines == 0 || fy < alloc.y) return 0;
+        int k = (int) (fy - alloc.y) / lineHeight;
+        if (k >= totalLines) return doc.getLength();
+
+        Element root = getElement();
+        int bi = blockAtLine(k);
+        Block blk = blocks[bi];
+        int line = lineIn;
+        int[] b = blk.breaks[local];
+        Element para = root.getElement(sum(paraTree, bi) + local);
+        int start = para.getStartOffset(), end = para.getEndOffset();
+        int l0 = line == 0 ? start : start + b[line - 1];
+        int l1 = line < blk.lines[local] - 1 ? start + b[line] : end;
+        if (fx < alloc.x) return l0;
+        if (fx > alloc.x + alloc.width) return l1 - 1;
+        try {
+            doc.getText(l0, Math.min(l1, end - 1) - l0, seg);
+        } catch (BadLocationException e) {
+            return l0;
+        }
+        int n = Utilities.getTabbedTextOffset(seg, metrics, alloc.x, fx, this, l0, false);
+        return Math.min(l0 + n, l1 - 1);
+    }
+
+    /* ===================== edições ===================== */
+
+    @Override public void insertUpdate(DocumentEvent e, Shape a, ViewFactory f) { update(e, a); }
+    @Override public void removeUpdate(DocumentEvent e, Shape a, ViewFactory f) { update(e, a); }
+    @Override public void changedUpdate(DocumentEvent e, Shape a, ViewFactory f) { update(e, a); }
+
+    /** Refaz só os parágrafos tocados; altura mudou = preferenceChanged e repinta daí para baixo. */
+    private void update(DocumentEvent e, Shape a) {
+        Component host = getContainer();
+        if (host == null) return;
+        updateMetrics();
+        if (stale) {                  // nada em cache ainda: a próxima consulta monta tudo
+            preferenceChanged(null, true, true);
+            host.repaint();
+            return;
+        }
+
+        Element root = getElement();
+        DocumentEvent.ElementChange ec = e.getChange(root);
+        int first, last;
+        if (ec != null) {             // parágrafos trocados (Enter, colar várias linhas, apagar quebras)
+            first = ec.getIndex();
+            last = first + ec.getChildrenAdded().length - 1;
+            splice(first, ec.getChildrenRemoved().length, ec.getChildrenAdded().length);
+        } else {
+            first = last = root.getElementIndex(e.getOffset());
+        }
+
+        int before = totalLines;
+        boolean moved = ec != null;
+        for (int i = first; i <= last; i++) {
+            int b = locate(i);
+            int delta = layout(blocks[b], local, root.getElement(i));
+            if (delta != 0) {
+                addLines(b, delta);
+                moved = true;
+            }
+        }
+        if (totalLines != before) preferenceChanged(null, false, true);
+
+        Rectangle alloc = a != null ? a.getBounds() : null;
+        if (alloc == null) { host.repaint(); return; }
+        int y = alloc.y + prefix(first) * lineHeight;
+        int h = moved ? alloc.y + alloc.height - y : (prefix(last + 1) - prefix(first)) * lineHeight;
+        host.repaint(alloc.x, y, alloc.width, Math.max(h, lineHeight));
+    }
+}
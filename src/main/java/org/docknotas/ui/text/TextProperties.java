@@ -0,0 +1,13 @@
+package org.docknotas.ui.text;
+
+/** Propriedades que o app põe no Document do editor (Document.putProperty). */
+public final class TextProperties {
+
+    /**
+     * Ligada enquanto o app muda o texto por conta própria (carga do arquivo, NotesSaver.withoutTracking):
+     * o desfazer do editor e outros ouvintes sabem que a mudança não veio do usuário.
+     */
+    public static final String UNTRACKED = "docknotas.untracked";
+
+    private TextProperties() {}
+}
@@ -0,0 +1,85 @@
+package org.docknotas.ui.util;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Molduras desenhadas à mão (cards, header, alça da barrinha) rasterizadas uma vez e só copiadas nas pinturas.
+ * – Chave = id fixo de quem pinta + aparência que o componente informa (paleta, orientação…) + tamanho + escala HiDPI;
+ *   mudou qualquer uma, a próxima pintura renderiza de novo
+ * – Imagem compatível com a tela de destino (o Java2D a mantém acelerada quando dá)
+ * – Acima de MAX_CACHED_PIXELS desenha direto: copiar uma imagem translúcida desse tamanho custa tanto
+ *   quanto desenhá-la, e no redimensionamento ao vivo cada quadro criaria uma imagem de megabytes
+ * – LRU limitado por pixels; só na EDT
+ */
+public final class ChromeCache {
+
+    /** Desenha a moldura em coordenadas lógicas 0..w × 0..h (referência a método estático); deve depender só de look (record/valor com equals ou instância única, como UiTheme.Palette). */
+    public interface Painter<L> { void paint(Graphics2D g, L look, int w, int h); }
+
+    /**
+     * id entra na chave: componentes diferentes podem usar a mesma paleta como look. String fixa, não o painter:
+     * a igualdade de referências a método (Classe::metodo) não é garantida entre avaliações.
+     */
+    private record Key(String id, Object look, int w, int h, double sx, double sy) {}
+
+    /** Maior moldura guardada (~card de 600×400). */
+    private static final long MAX_CACHED_PIXELS = 250_000;
+    /** Total do LRU: alguns cards e as peças pequenas. */
+    private static final long MAX_PIXELS = 2_000_000;
+
+    private static long pixels;
+    private static final LinkedHashMap<Key, BufferedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+
+    private ChromeCache() {}
+
+    /**
+     * Copia a moldura de (0,0) a (w,h); renderiza antes se a aparência ou o tamanho mudaram.
+     * @param id nome único e constante de quem pinta (um por painter)
+     */
+    public static <L> void draw(Graphics g, String id, L look, int w, int h, Painter<L> painter) {
+        if (w <= 0 || h <= 0) return;
+        Graphics2D g2 = (Graphics2D) g;
+        AffineTransform tx = g2.getTransform();
+        double sx = Math.abs(tx.getScaleX()), sy = Math.abs(tx.getScaleY());
+        if (sx == 0 || sy == 0 || tx.getShearX() != 0 || tx.getShearY() != 0   // rotação etc.
+                || w * sx * h * sy > MAX_CACHED_PIXELS) {
+            Graphics2D direct = (Graphics2D) g.create();
+            try { painter.paint(direct, look, w, h); } finally { direct.dispose(); }
+            return;
+        }
+
+        Key key = new Key(id, look, w, h, sx, sy);
+        BufferedImage img = images.get(key);
+        if (img == null) img = render(g2.getDeviceConfiguration(), key, look, painter);
+        g2.drawImage(img, 0, 0, w, h, null);
+    }
+
+    private static <L> BufferedImage render(GraphicsConfiguration gc, Key key, L look, Painter<L> painter) {
+        int pw = (int) Math.ceil(key.w() * key.sx()), ph = (int) Math.ceil(key.h() * key.sy());
+        BufferedImage img = gc != null
+                ? gc.createCompatibleImage(pw, ph, Transparency.TRANSLUCENT)
+                : new BufferedImage(pw, ph, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = img.createGraphics();
+        try {
+            g.scale(key.sx(), key.sy());
+            painter.paint(g, look, key.w(), key.h());
+        } finally {
+            g.dispose();
+        }
+
+        images.put(key, img);
+        pixels += (long) pw * ph;
+        for (Iterator<Map.Entry<Key, BufferedImage>> it = images.entrySet().iterator(); pixels > MAX_PIXELS && it.hasNext(); ) {
+            Map.Entry<Key, BufferedImage> e = it.next();
+            if (e.getValue() == img) break;
+            pixels -= (long) e.getValue().getWidth() * e.getValue().getHeight();
+            it.remove();
+        }
+        return img;
+    }
+}
@@ -0,0 +1,37 @@
+package org.docknotas.ui.util;
+
+import java.awt.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fontes derivadas por tamanho, criadas uma vez: o zoom vai e volta entre poucos tamanhos.
+ * – Chave = nome + estilo + tamanho; no primeiro pedido a fonte sai de deriveFont da fonte passada
+ * – Font é imutável: a mesma instância serve a todos os editores (e as métricas dela ficam em cache no Java2D)
+ * – LRU pequeno; só na EDT
+ */
+public final class FontCache {
+
+    private record Key(String name, int style, float size) {}
+
+    /** Tamanhos de zoom (50..200% em passos de 10) × algumas fontes base. */
+    private static final int MAX_FONTS = 64;
+
+    private static final LinkedHashMap<Key, Font> fonts = new LinkedHashMap<>(32, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Key, Font> eldest) { return size() > MAX_FONTS; }
+    };
+
+    private FontCache() {}
+
+    /** f no tamanho pedido (px); a própria f se já tem esse tamanho. */
+    public static Font sized(Font f, float size) {
+        if (f.getSize2D() == size) return f;
+        Key key = new Key(f.getName(), f.getStyle(), size);
+        Font cached = fonts.get(key);
+        if (cached == null) {
+            cached = f.deriveFont(size);
+            fonts.put(key, cached);
+        }
+        return cached;
+    }
+}
@@ -0,0 +1,127 @@
+package org.docknotas.ui.util;
+
+import java.awt.*;
+
+/**
+ * Telas (monitores) com limites e bordas reservadas já lidos, para encaixar e ancorar janelas.
+ * – Um retrato de todas as telas: limites + insets (barra de tarefas) por GraphicsDevice; as consultas só olham
+ *   o retrato, sem ida ao sistema (getScreenInsets é uma viagem nativa lenta no X11)
+ * – Relido só na consulta seguinte a invalidate(): no início de cada gesto (arrasto da barrinha) e no sinal
+ *   "graphicsConfiguration" das janelas vigiadas (watch: passou para outra tela, monitor entrou/saiu);
+ *   no meio de um arrasto as consultas nunca vão ao sistema
+ * – Sem monitor (headless) = uma tela 1280×800 sem bordas
+ */
+public final class ScreenGeometry {
+
+    public enum Edge { LEFT, RIGHT, TOP, BOTTOM }
+
+    /** Uma tela; usable = limites menos as bordas reservadas. Não alterar os retângulos (são compartilhados). */
+    public record Screen(GraphicsDevice device, Rectangle bounds, Insets insets, Rectangle usable) {
+        /** Borda da área útil mais próxima do retângulo. */
+        public Edge nearestEdge(Rectangle r) { return ScreenGeometry.nearestEdge(usable, r); }
+    }
+
+    private static volatile Screen[] screens;
+    private static volatile Screen last; // quase sempre a janela continua na mesma tela
+
+    private ScreenGeometry() {}
+
+    /** Relê as telas na próxima consulta. */
+    public static void invalidate() { screens = null; }
+
+    /** Relê as telas quando o componente muda de GraphicsConfiguration (outra tela, telas reconfiguradas). */
+    public static void watch(Component c) {
+        c.addPropertyChangeListener("graphicsConfiguration", e -> invalidate());
+    }
+
+    /** Tela que contém o ponto; fora de todas = a mais próxima. */
+    public static Screen at(Point p) {
+        Screen[] all = screens();
+        Screen hit = last;
+        if (hit != null && hit.bounds().contains(p) && contains(all, hit)) return hit;
+
+        Screen best = all[0];
+        long bestDist = Long.MAX_VALUE;
+        for (Screen s : all) {
+            if (s.bounds().contains(p)) { best = s; break; }
+            long d = distanceSq(s.bounds(), p);
+            if (d < bestDist) { bestDist = d; best = s; }
+        }
+        last = best;
+        return best;
+    }
+
+    /** Tela do centro do retângulo (em coordenadas de tela). */
+    public static Screen at(Rectangle r) {
+        return at(new Point(r.x + r.width / 2, r.y + r.height / 2));
+    }
+
+    /** Tela onde está o centro da janela/componente. */
+    public static Screen of(Component c) {
+        Rectangle r = c.getBounds();
+        if (!(c instanceof Window) && c.isShowing()) r.setLocation(c.getLocationOnScreen());
+        return at(r);
+    }
+
+    /** Posição mais próxima de r.getLocation() que deixa r inteiro na área útil da sua tela (canto superior esquerdo se não couber). */
+    public static Point fit(Rectangle r) {
+        Rectangle a = at(r).usable();
+        int x = Math.max(a.x, Math.min(r.x, a.x + a.width - r.width));
+        int y = Math.max(a.y, Math.min(r.y, a.y + a.height - r.height));
+        return new Point(x, y);
+    }
+
+    /**
+     * Borda de area mais próxima de r (distância absoluta); empate: esquerda, direita, topo, base.
+     * Função pura: o DockGeometry usa a mesma conta para colar a barrinha.
+     */
+    public static Edge nearestEdge(Rectangle area, Rectangle r) {
+        int left   = Math.abs(r.x - area.x);
+        int right  = Math.abs((area.x + area.width) - (r.x + r.width));
+        int top    = Math.abs(r.y - area.y);
+        int bottom = Math.abs((area.y + area.height) - (r.y + r.height));
+        int min = Math.min(Math.min(left, right), Math.min(top, bottom));
+        if (min == left)  return Edge.LEFT;
+        if (min == right) return Edge.RIGHT;
+        if (min == top)   return Edge.TOP;
+        return Edge.BOTTOM;
+    }
+
+    /* ===================== retrato ===================== */
+
+    private static Screen[] screens() {
+        Screen[] all = screens;
+        if (all == null) screens = all = load();
+        return all;
+    }
+
+    private static Screen[] load() {
+        if (GraphicsEnvironment.isHeadless()) {
+            Rectangle r = new Rectangle(0, 0, 1280, 800);
+            return new Screen[]{ new Screen(null, r, new Insets(0,0,0,0), r) };
+        }
+        GraphicsDevice[] devices = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
+        Toolkit tk = Toolkit.getDefaultToolkit();
+        Screen[] all = new Screen[devices.length];
+        for (int i = 0; i < devices.length; i++) {
+            GraphicsConfiguration gc = devices[i].getDefaultConfiguration();
+            Rectangle b = gc.getBounds();
+            Insets in = tk.getScreenInsets(gc);
+            Rectangle u = new Rectangle(b.x + in.left, b.y + in.top,
+                    b.width - in.left - in.right, b.height - in.top - in.bottom);
+            all[i] = new Screen(devices[i], b, in, u);
+        }
+        return all;
+    }
+
+    private static boolean contains(Screen[] all, Screen s) {
+        for (Screen x : all) if (x == s) return true;
+        return false;
+    }
+
+    private static long distanceSq(Rectangle r, Point p) {
+        long dx = Math.max(0, Math.max(r.x - p.x, p.x - (r.x + r.width - 1)));
+        long dy = Math.max(0, Math.max(r.y - p.y, p.y - (r.y + r.height - 1)));
+        return dx * dx + dy * dy;
+    }
+}
@@ -11,6 +11,17 @@ public class UiTheme {
 
     private static boolean hoverAppliedOnce = false;
 
+    /** Ícones da janela (16..256 px); lidos fora da EDT na partida. Lista vazia = ícone padrão do Swing. */
+    public static java.util.List<Image> loadAppIcons() {
+        java.util.ArrayList<Image> list = new java.util.ArrayList<>();
+        for (int s : new int[]{16, 32, 48, 64, 128, 256}) {
+            java.net.URL url = UiTheme.class.getResource("/icons/docknotas-" + s + ".png");
+            if (url == null) continue;
+            try { list.add(javax.imageio.ImageIO.read(url)); } catch (java.io.IOException ignored) {}
+        }
+        return list;
+    }
+
     public static void applyGlobalMenuHoverTheme() {
         if (hoverAppliedOnce) return;
         hoverAppliedOnce = true;
@@ -28,34 +39,107 @@ public class UiTheme {
         UIManager.put("RadioButtonMenuItem.selectionForeground", fgSel);
     }
 
-    public static Color headerColor() {
-        // header translúcido levemente colorido (neutro)
-        return new Color(30,30,36,220);
+    /* ===== paleta: tema × prioridade × intensidade, montada uma vez ===== */
+
+    /** Header/alça: tons fixos, iguais para todos os temas. */
+    public static final Color HEADER   = new Color(30,30,36,220);
+    public static final Color GRIP     = new Color(255,255,255,190);
+    public static final Color CLOSE_BG = new Color(0,0,0,110);
+    public static final Color CLOSE_FG = new Color(255,255,255,220);
+
+    /** Ordem dos índices da tabela; o que não estiver aqui vira "cinza". */
+    public static final java.util.List<String> PRIORITIES =
+            java.util.List.of("cinza", "vermelho", "laranja", "amarelo", "verde", "azul", "roxo");
+
+    /** Por prioridade: borda, faixa e alça da barrinha (opacos; a intensidade vira alpha). */
+    private static final int[][] PRIORITY_RGB = {
+            // borda          faixa           alça
+            {0x585860,       0x808088,       0x1E1E24},   // cinza
+            {0xDC5050,       0xE84848,       0xC42C2C},   // vermelho
+            {0xEBA046,       0xF2B266,       0xD2781E},   // laranja
+            {0xDCC83C,       0xECDC72,       0xB4A014},   // amarelo
+            {0x46B978,       0x6CD09A,       0x208C48},   // verde
+            {0x548CD2,       0x7AA8DE,       0x225DAA},   // azul
+            {0x9462C8,       0xAE84D6,       0x6C36A0},   // roxo
+    };
+
+    private static final int MIN_STRENGTH = 40, MAX_STRENGTH = 100;
+
+    /**
+     * Cores de uma combinação tema × prioridade × intensidade.
+     * – Imutável e única por combinação: compara por referência (serve de chave no ChromeCache)
+     * – Quem pinta pega a paleta das preferências uma vez por pintura; mudou a preferência,
+     *   a próxima pintura já recebe outra instância inteira (nunca meio tema, meia prioridade)
+     */
+    public static final class Palette {
+        public final boolean dark;
+        public final String priority;
+        public final int strength;
+
+        /** Tema: editor, fundo da janela e corpo translúcido do NoteCard. */
+        public final Color editorBg, editorFg, windowBg, cardBody, guideline;
+        /** Prioridade: borda e faixa opacas (card do BlockinhoFrame) e com a intensidade (NoteCard, alça). */
+        public final Color border, tag, cardBorder, cardTag, handle;
+
+        private Palette(boolean dark, String priority, int strength, Color[] pri) {
+            this.dark = dark;
+            this.priority = priority;
+            this.strength = strength;
+            editorBg  = dark ? EDITOR_BG_DARK  : EDITOR_BG_LIGHT;
+            editorFg  = dark ? EDITOR_FG_DARK  : EDITOR_FG_LIGHT;
+            windowBg  = dark ? WINDOW_BG_DARK  : WINDOW_BG_LIGHT;
+            cardBody  = dark ? CARD_BODY_DARK  : CARD_BODY_LIGHT;
+            guideline = dark ? GUIDELINE_DARK  : GUIDELINE_LIGHT;
+            border = pri[0]; tag = pri[1]; cardBorder = pri[2]; cardTag = pri[3]; handle = pri[4];
+        }
+
+        @Override public String toString() {
+            return (dark ? "dark" : "light") + "/" + priority + "/" + strength + "%";
+        }
+    }
+
+    private static final Color EDITOR_BG_DARK = new Color(0x111418), EDITOR_BG_LIGHT = new Color(0xFAFAFA);
+    private static final Color EDITOR_FG_DARK = new Color(0xE8E8E8), EDITOR_FG_LIGHT = Color.DARK_GRAY;
+    private static final Color WINDOW_BG_DARK = new Color(12,14,18),  WINDOW_BG_LIGHT = new Color(240,242,245);
+    private static final Color CARD_BODY_DARK = new Color(17,20,24,230), CARD_BODY_LIGHT = new Color(250,250,250,245);
+    private static final Color GUIDELINE_DARK = new Color(255,255,255,38), GUIDELINE_LIGHT = new Color(0,0,0,38);
+
+    /** [tema: 0 = dark, 1 = light][prioridade][intensidade - 40] */
+    private static final Palette[][][] PALETTES = buildPalettes();
+
+    private static Palette[][][] buildPalettes() {
+        int n = MAX_STRENGTH - MIN_STRENGTH + 1;
+        Palette[][][] table = new Palette[2][PRIORITIES.size()][n];
+        for (int p = 0; p < PRIORITIES.size(); p++) {
+            Color border = new Color(PRIORITY_RGB[p][0]), tag = new Color(PRIORITY_RGB[p][1]);
+            for (int i = 0; i < n; i++) {
+                int strength = MIN_STRENGTH + i;
+                // arredondamentos de sempre: NoteCard chega a 229 em 100%, a alça a 230
+                int card = (int) (strength * 2.3), handle = (int) (strength / 100.0 * 230);
+                // as cores com alpha são as mesmas nos dois temas
+                Color[] pri = { border, tag, withAlpha(PRIORITY_RGB[p][0], card), withAlpha(PRIORITY_RGB[p][1], card),
+                        withAlpha(PRIORITY_RGB[p][2], handle) };
+                table[0][p][i] = new Palette(true, PRIORITIES.get(p), strength, pri);
+                table[1][p][i] = new Palette(false, PRIORITIES.get(p), strength, pri);
+            }
+        }
+        return table;
+    }
+
+    private static Color withAlpha(int rgb, int alpha) {
+        return new Color((alpha << 24) | rgb, true);
     }
 
-    // prioridade: tons fixos
-    public static Color priorityBorder(String name) {
-        if (name == null) name = "cinza";
-        return switch (name.toLowerCase()) {
-            case "vermelho" -> new Color(220,80,80);
-            case "laranja"  -> new Color(235,160,70);
-            case "amarelo"  -> new Color(220,200,60);
-            case "verde"    -> new Color(70,185,120);
-            case "azul"     -> new Color(84,140,210);
-            case "roxo"     -> new Color(148,98,200);
-            default         -> new Color(88,88,96);
-        };
+    /** Paleta das preferências atuais (só consulta a tabela; não aloca). */
+    public static Palette palette(org.docknotas.settings.AppSettings s) {
+        return palette(s.getTheme(), s.getPriorityColor(), s.getColorStrengthPercent());
     }
-    public static Color priorityTag(String name) {
-        if (name == null) name = "cinza";
-        return switch (name.toLowerCase()) {
-            case "vermelho" -> new Color(232,72,72);
-            case "laranja"  -> new Color(242,178,102);
-            case "amarelo"  -> new Color(236,220,114);
-            case "verde"    -> new Color(108,208,154);
-            case "azul"     -> new Color(122,168,222);
-            case "roxo"     -> new Color(174,132,214);
-            default         -> new Color(128,128,136);
-        };
+
+    /** @param theme "dark" = escuro, qualquer outro (inclusive null) = claro */
+    public static Palette palette(String theme, String priority, int strength) {
+        int t = "dark".equalsIgnoreCase(theme) ? 0 : 1;
+        int p = priority == null ? 0 : Math.max(0, PRIORITIES.indexOf(priority.toLowerCase()));
+        int i = Math.max(MIN_STRENGTH, Math.min(MAX_STRENGTH, strength)) - MIN_STRENGTH;
+        return PALETTES[t][p][i];
     }
 }
@@ -1,8 +1,16 @@
 package org.docknotas.ui.windows;
 
 import org.docknotas.settings.AppSettings;
+import org.docknotas.storage.NoteInfo;
+import org.docknotas.storage.NotesSaver;
+import org.docknotas.storage.SearchIndex;
+import org.docknotas.storage.SnapshotScheduler;
 import org.docknotas.storage.Storage;
+import org.docknotas.ui.components.FindBar;
 import org.docknotas.ui.components.LineRuledTextArea;
+import org.docknotas.ui.components.NoteCard;
+import org.docknotas.ui.text.LazyNotesLoader;
+import org.docknotas.ui.util.UiTheme;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -24,39 +32,27 @@ public class NotesWindow extends JFrame {
 
     private final AppSettings settings;
     private final LineRuledTextArea editor = new LineRuledTextArea();
+    private final FindBar findBar = new FindBar(editor); // Ctrl+F
+    private final NotesSaver saver;
+    private LazyNotesLoader loader; // null quando a nota foi lida de uma vez
+    private final SnapshotScheduler snapshots;
+    private final SearchIndex searchIndex;
+    private SearchDialog searchDialog; // criado no primeiro uso
+    private final ButtonGroup priorityGroup = new ButtonGroup(); // menu Priority/Color
     private JSlider zoomSlider;
     private JLabel  zoomLabel;
 
-    // Cores da moldura/faixa baseadas na prioridade (na view)
-    private static class PriColor {
-        final Color border, tag;
-        PriColor(Color border, Color tag) { this.border = border; this.tag = tag; }
-    }
-
-    private PriColor pickPri(String name) {
-        if (name == null) name = "cinza";
-        return switch (name.toLowerCase()) {
-            case "vermelho" -> new PriColor(new Color(220,80,80),   new Color(232,72,72));
-            case "laranja"  -> new PriColor(new Color(235,160,70),  new Color(242,178,102));
-            case "amarelo"  -> new PriColor(new Color(220,200,60),  new Color(236,220,114));
-            case "verde"    -> new PriColor(new Color(70,185,120),  new Color(108,208,154));
-            case "azul"     -> new PriColor(new Color(84,140,210),  new Color(122,168,222));
-            case "roxo"     -> new PriColor(new Color(148,98,200),  new Color(174,132,214));
-            default         -> new PriColor(new Color(88,88,96),    new Color(128,128,136));
-        };
-    }
-
-    private float effectiveFont() {
-        return (float)(settings.getFontSize() * settings.getZoomPercent() / 100.0);
-    }
-
-    public NotesWindow(AppSettings settings) {
+    /**
+     * @param preloadedText texto da nota ativa lido na partida (fora da EDT); null = ler agora
+     * @param icons         ícones da janela (UiTheme.loadAppIcons)
+     */
+    public NotesWindow(AppSettings settings, String preloadedText, List<Image> icons) {
         super("DockNotas");
         this.settings = settings;
         setUndecorated(true);
 
         // >>> único acréscimo: ícone da janela <<<
-        setIconImages(loadAppIcons());
+        setIconImages(icons);
 
         // comportamento básico
         setAlwaysOnTop(settings.isAlwaysOnTop());
@@ -64,55 +60,39 @@ public class NotesWindow extends JFrame {
         Dimension saved = settings.getNotePopupSize();
         if (saved != null) setSize(saved); else setSize(200, 250);
 
-        // MENU
-        setJMenuBar(buildMenuBar());
-
         // EDITOR
         editor.setEditable(true);
         editor.setFocusable(true);
         editor.setRequestFocusEnabled(true);
         editor.setLineWrap(true);
         editor.setWrapStyleWord(true);
-        editor.setText(Storage.loadNotes());
         editor.setLineHeight(settings.getLineSpacing());
-        editor.setFont(editor.getFont().deriveFont(effectiveFont()));
+        editor.setZoom(settings.getFontSize(), settings.getZoomPercent());
+        // Ctrl+roda / Ctrl+= / Ctrl+-: grava o zoom uma vez, quando o gesto para
+        editor.setOnZoomSettled(z -> { settings.setZoomPercent(z); Storage.saveSettings(settings); });
+
+        // Salva automaticamente (em segundo plano) só quando o texto muda
+        saver = new NotesSaver(editor.getDocument(), settings.isNotesJournal());
+
+        // Conteúdo: nota grande entra aos poucos (mapeada), pequena de uma vez
+        if (preloadedText != null) saver.withoutTracking(() -> editor.setText(preloadedText));
+        else loadActiveNote(settings.getCaretLine());
+
+        // Backups automáticos conforme o volume de edição
+        snapshots = new SnapshotScheduler(saver, settings).start();
 
-        // Salva automaticamente ao digitar
-        editor.addCaretListener(e -> Storage.saveNotes(editor.getText()));
+        // Índice de busca (nota + backups), montado em segundo plano
+        searchIndex = Storage.openSearchIndex(editor.getDocument());
 
-        // Atalho Ctrl+S
+        // MENU (depois do saver: os itens de arquivo usam saver::flush)
+        setJMenuBar(buildMenuBar());
+
+        // Atalho Ctrl+S / Ctrl+Shift+F
         bindSaveAccelerator(editor);
+        bindSearchAccelerator(editor);
 
         // Card visual (fundo+bordas+faixa)
-        JPanel card = new JPanel(new BorderLayout()) {
-            @Override protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2 = (Graphics2D) g.create();
-                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-                // corpo
-                Color body = isDarkTheme() ? new Color(17,20,24,230) : new Color(250,250,250,245);
-                g2.setColor(body);
-                g2.fillRoundRect(0,0,getWidth(),getHeight(),14,14);
-
-                // borda + faixa
-                PriColor pc = pickPri(settings.getPriorityColor());
-                int alpha = (int)(Math.max(40, Math.min(100, settings.getColorStrengthPercent())) * 2.3); // ~0..230
-                Color border = new Color(pc.border.getRed(), pc.border.getGreen(), pc.border.getBlue(), alpha);
-                Color tag    = new Color(pc.tag.getRed(), pc.tag.getGreen(), pc.tag.getBlue(), alpha);
-
-                g2.setStroke(new BasicStroke(2f));
-                g2.setColor(border);
-                g2.drawRoundRect(1,1,getWidth()-2,getHeight()-2,14,14);
-
-                g2.setColor(tag);
-                g2.fillRoundRect(8, 12, 6, getHeight()-24, 8, 8);
-
-                g2.dispose();
-            }
-        };
-        card.setOpaque(false);
-        card.setBorder(new EmptyBorder(10,10,10,10));
+        NoteCard card = new NoteCard(settings);
 
         JScrollPane sc = new JScrollPane(editor);
         sc.setBorder(BorderFactory.createEmptyBorder());
@@ -126,6 +106,7 @@ public class NotesWindow extends JFrame {
 
         content.add(card, BorderLayout.CENTER);
         card.add(sc, BorderLayout.CENTER);
+        card.add(findBar, BorderLayout.SOUTH);
 
         // Tema inicial
         applyTheme(settings.getTheme());
@@ -133,8 +114,11 @@ public class NotesWindow extends JFrame {
         // Persistir tamanho ao redimensionar
         addComponentListener(new ComponentAdapter() {
             @Override public void componentResized(ComponentEvent e) {
-                settings.setNotePopupSize(getSize());
-                Storage.saveSettings(settings);
+                // re-quebra e grava o tamanho uma vez, quando o arrasto da borda assenta
+                editor.deferReflow(() -> {
+                    settings.setNotePopupSize(getSize());
+                    Storage.saveSettings(settings);
+                });
             }
         });
 
@@ -146,19 +130,6 @@ public class NotesWindow extends JFrame {
         });
     }
 
-    // carrega os ícones do resources (múltiplos tamanhos para HiDPI)
-    private List<Image> loadAppIcons() {
-        String base = "/icons/docknotas-";
-        int[] sizes = {16, 32, 48, 64, 128, 256};
-        java.util.ArrayList<Image> list = new java.util.ArrayList<>();
-        for (int s : sizes) {
-            java.net.URL url = getClass().getResource(base + s + ".png");
-            if (url != null) list.add(new ImageIcon(url).getImage());
-        }
-        // fallback: se nada encontrado, retorna lista vazia (Swing usa default)
-        return list;
-    }
-
     /* ===================== Menu ===================== */
 
     private JMenuBar buildMenuBar() {
@@ -168,23 +139,36 @@ public class NotesWindow extends JFrame {
         JMenu file = new JMenu("File");
         file.add(item("New (clear)", () -> {
             if (confirm("Clear current notes?")) {
+                if (loader != null) loader.cancel();
                 editor.setText("");
-                Storage.saveNotes("");
+                saver.flush();
             }
         }));
-        file.add(item("Save", () -> Storage.saveNotes(editor.getText())));
+        file.add(item("Save", saver::flush));
         file.add(item("Save As...", this::doSaveAs));
         file.addSeparator();
         file.add(item("Import .txt...", this::doImportTxt));
+        file.add(item("Find / Replace", findBar::open));
+        file.add(item("Search...", this::openSearch));
         file.add(item("Open notes folder", this::openNotesFolder));
-        file.add(item("Backup now", Storage::backupNow));
+        file.add(item("Backup now", () -> { saver.flush(); Storage.backupNow(settings); }));
+        file.add(item("Backup stats", this::showBackupStats));
         file.addSeparator();
         file.add(item("Exit", () -> {
-            try { Storage.saveNotes(editor.getText()); Storage.saveSettings(settings); } catch (Exception ignore) {}
+            try { flushNotes(); Storage.flushSettings(settings); } catch (Exception ignore) {}
             System.exit(0);
         }));
         mb.add(file);
 
+        // NOTES (lista montada ao abrir o menu: o índice só é lido quando pedido)
+        JMenu notes = new JMenu("Notes");
+        notes.addMenuListener(new javax.swing.event.MenuListener() {
+            @Override public void menuSelected(javax.swing.event.MenuEvent e) { fillNotesMenu(notes); }
+            @Override public void menuDeselected(javax.swing.event.MenuEvent e) { }
+            @Override public void menuCanceled(javax.swing.event.MenuEvent e) { }
+        });
+        mb.add(notes);
+
         // VIEW
         JMenu view = new JMenu("View");
 
@@ -228,16 +212,14 @@ public class NotesWindow extends JFrame {
 
         // PRIORITY
         JMenu pri = new JMenu("Priority/Color");
-        ButtonGroup pg = new ButtonGroup();
         for (String opt : new String[]{"Vermelho","Laranja","Amarelo","Verde","Azul","Roxo","Cinza"}) {
             JRadioButtonMenuItem it = new JRadioButtonMenuItem(opt,
                     opt.equalsIgnoreCase(settings.getPriorityColor()));
             it.addActionListener(e -> {
-                settings.setPriorityColor(opt.toLowerCase());
-                Storage.saveSettings(settings);
+                Storage.setNotePriority(settings, opt.toLowerCase());
                 repaint(); // repinta a faixa/borda
             });
-            pg.add(it); pri.add(it);
+            priorityGroup.add(it); pri.add(it);
         }
 
         JMenu intensidade = new JMenu("Intensity (%)");
@@ -252,6 +234,7 @@ public class NotesWindow extends JFrame {
         JMenu help = new JMenu("Help");
         help.add(item("Shortcuts", () -> info("""
                 • Ctrl+S: salvar
+                • Ctrl+roda, Ctrl+= / Ctrl+- / Ctrl+0: zoom
                 • View → Theme: alterna tema
                 • View → Font/Zoom/Line spacing
                 • Priority/Color: define faixa/borda
@@ -262,6 +245,18 @@ public class NotesWindow extends JFrame {
         return mb;
     }
 
+    private void fillNotesMenu(JMenu menu) {
+        menu.removeAll();
+        String active = Storage.activeNoteId();
+        for (NoteInfo n : Storage.listNotes(settings)) {
+            JCheckBoxMenuItem it = new JCheckBoxMenuItem(n.label(), n.id().equals(active));
+            it.addActionListener(e -> switchNote(n.id()));
+            menu.add(it);
+        }
+        menu.addSeparator();
+        menu.add(item("New note", this::newNote));
+    }
+
     private JMenuItem item(String text, Runnable r) {
         JMenuItem i = new JMenuItem(text);
         i.addActionListener(e -> r.run());
@@ -274,21 +269,37 @@ public class NotesWindow extends JFrame {
         JFileChooser fc = new JFileChooser();
         fc.setSelectedFile(new File("DockNotas.txt"));
         if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            try { Storage.exportTo(fc.getSelectedFile()); }
+            try { saver.flush(); Storage.exportTo(fc.getSelectedFile()); }
             catch (Exception ex) { error(ex.getMessage()); }
         }
     }
 
+    private void showBackupStats() {
+        SnapshotScheduler.Stats st = snapshots.stats();
+        info("Automatic backups: " + st.snapshots() + " (unchanged, skipped: " + st.skipped() + ")\n"
+                + "New chunks written: " + st.newChunks() + " (" + st.bytesWritten() / 1024 + " KB)\n"
+                + "Time spent: " + st.millisSpent() + " ms\n"
+                + "Backups kept: " + Storage.listBackups().size());
+    }
+
     private void doImportTxt() {
         JFileChooser fc = new JFileChooser();
         if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             try {
-                Storage.importFrom(fc.getSelectedFile());
-                editor.setText(Storage.loadNotes());
+                String text = Storage.importFrom(fc.getSelectedFile());
+                if (text == null) return;
+                if (loader != null) loader.cancel();
+                editor.setText(text);
             } catch (Exception ex) { error(ex.getMessage()); }
         }
     }
 
+    /** Lê a nota ativa para o editor: grande aos poucos (mapeada), pequena de uma vez. */
+    private void loadActiveNote(int caretLine) {
+        loader = LazyNotesLoader.start(editor, saver, caretLine);
+        if (loader == null) saver.withoutTracking(() -> editor.setText(Storage.loadNotes()));
+    }
+
     private void openNotesFolder() {
         try { Desktop.getDesktop().open(Storage.notesFolder()); }
         catch (Exception ex) { error(ex.getMessage()); }
@@ -297,16 +308,12 @@ public class NotesWindow extends JFrame {
     /* ===================== UI helpers ===================== */
 
     private void applyTheme(String theme) {
-        boolean dark = "dark".equalsIgnoreCase(theme);
-        if (dark) {
-            editor.setBackground(new Color(0x111418));
-            editor.setForeground(new Color(0xE8E8E8));
-        } else {
-            editor.setBackground(new Color(0xFAFAFA));
-            editor.setForeground(Color.DARK_GRAY);
-        }
+        UiTheme.Palette p = UiTheme.palette(theme, settings.getPriorityColor(), settings.getColorStrengthPercent());
+        editor.setBackground(p.editorBg);
+        editor.setForeground(p.editorFg);
+        editor.setGuidelineColor(p.guideline);
         editor.repaint();
-        getContentPane().setBackground(dark ? new Color(12,14,18) : new Color(240,242,245));
+        getContentPane().setBackground(p.windowBg);
         repaint();
     }
 
@@ -315,15 +322,13 @@ public class NotesWindow extends JFrame {
     }
 
     private void applyFontSize(int base) {
-        editor.setFont(editor.getFont().deriveFont((float)(base * settings.getZoomPercent()/100.0)));
-        editor.repaint();
+        editor.setZoom(base, settings.getZoomPercent());
     }
 
     private void applyZoom(int percent) {
-        settings.setZoomPercent(Math.max(50, Math.min(200, percent)));
+        settings.setZoomPercent(percent); // AppSettings limita a 50..200
         Storage.saveSettings(settings);
-        editor.setFont(editor.getFont().deriveFont(effectiveFont()));
-        editor.repaint();
+        editor.setZoom(settings.getFontSize(), settings.getZoomPercent());
     }
 
     private void bindSaveAccelerator(JComponent root) {
@@ -332,13 +337,28 @@ public class NotesWindow extends JFrame {
         root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(ks, "saveNotes");
         root.getActionMap().put("saveNotes", new AbstractAction() {
             @Override public void actionPerformed(ActionEvent e) {
-                Storage.saveNotes(editor.getText());
+                saver.flush();
                 // Feedback discreto
                 editor.putClientProperty("savedAt", System.currentTimeMillis());
             }
         });
     }
 
+    private void bindSearchAccelerator(JComponent root) {
+        // Ctrl+Shift+F busca na nota e nos backups
+        KeyStroke ks = KeyStroke.getKeyStroke(KeyEvent.VK_F,
+                Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx() | InputEvent.SHIFT_DOWN_MASK);
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(ks, "searchNotes");
+        root.getActionMap().put("searchNotes", new AbstractAction() {
+            @Override public void actionPerformed(ActionEvent e) { openSearch(); }
+        });
+    }
+
+    private void openSearch() {
+        if (searchDialog == null) searchDialog = new SearchDialog(this, searchIndex, editor);
+        searchDialog.showAndFocus();
+    }
+
     private boolean confirm(String msg){ return JOptionPane.showConfirmDialog(this,msg,"Confirm",JOptionPane.YES_NO_OPTION)==JOptionPane.YES_OPTION; }
     private void info(String msg){ JOptionPane.showMessageDialog(this,msg,"Info",JOptionPane.INFORMATION_MESSAGE); }
     private void error(String msg){ JOptionPane.showMessageDialog(this,msg,"Erro",JOptionPane.ERROR_MESSAGE); }
@@ -348,11 +368,51 @@ public class NotesWindow extends JFrame {
     /** Retorna o conteúdo atual do editor. */
     public String getEditorText() { return editor.getText(); }
 
+    /** Grava já as edições pendentes do editor (ao sair) e lembra a linha do cursor. */
+    public void flushNotes() {
+        // edições feitas durante a carga progressiva: termina a carga para gravá-las junto com a nota inteira
+        if (loader != null && saver.isLoading() && saver.isDirty()) loader.finishNow();
+        if (!saver.isLoading()) {
+            try { settings.setCaretLine(editor.getLineOfOffset(editor.getCaretPosition())); }
+            catch (Exception ignore) {}
+        }
+        saver.flush();
+    }
+
+    /** Troca a nota do editor (null = cria uma nova); as edições da nota atual são gravadas antes. */
+    public void switchNote(String id) {
+        if (id != null && id.equals(Storage.activeNoteId())) return;
+        if (saver.isLoading()) { info("A nota ainda está carregando; tente de novo em instantes."); return; }
+        // grava a nota atual antes de criar a nova: falhou = nenhuma nota vazia sobrando no índice
+        flushNotes();
+        if (saver.isDirty()) { error("Não foi possível gravar a nota atual."); return; }
+        try { if (id == null) id = Storage.createNote(); }
+        catch (Exception ex) { error(ex.getMessage()); return; }
+        Storage.switchNote(id, settings);
+        loadActiveNote(-1);
+        selectPriority(Storage.notePriority(Storage.activeNoteId()));
+        repaint(); // prioridade (cor) é da nota
+        focusEditorSoon();
+    }
+
+    /** Cria uma nota vazia e passa para ela. */
+    public void newNote() {
+        switchNote(null);
+    }
+
+    /** Marca no menu Priority/Color a cor da nota ativa. */
+    private void selectPriority(String color) {
+        for (java.util.Enumeration<AbstractButton> e = priorityGroup.getElements(); e.hasMoreElements(); ) {
+            AbstractButton b = e.nextElement();
+            if (b.getText().equalsIgnoreCase(color)) b.setSelected(true);
+        }
+    }
+
     /** Pede foco ao editor após mostrar a janela. */
     public void focusEditorSoon() {
         SwingUtilities.invokeLater(() -> {
             editor.requestFocusInWindow();
-            editor.setCaretPosition(editor.getDocument().getLength());
+            if (!saver.isLoading()) editor.setCaretPosition(editor.getDocument().getLength());
         });
     }
 
@@ -367,6 +427,8 @@ public class NotesWindow extends JFrame {
         requestFocus();
         SwingUtilities.invokeLater(() -> {
             editor.requestFocusInWindow();
+            // durante a carga progressiva o cursor já está na linha da última sessão
+            if (saver.isLoading()) return;
             try { editor.setCaretPosition(editor.getDocument().getLength()); } catch (Exception ignore) {}
         });
     }
@@ -0,0 +1,179 @@
+package org.docknotas.ui.windows;
+
+import org.docknotas.storage.SearchIndex;
+import org.docknotas.storage.Storage;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Busca na nota atual e nos backups (SearchIndex).
+ * – Resultados enquanto digita; a consulta roda numa thread própria (lê blocos de backup do disco),
+ *   e só a resposta da última consulta chega à lista
+ * – Enter/duplo clique abre o resultado
+ * – Nota atual: seleciona o trecho no editor; backup: abre uma cópia só leitura
+ */
+public class SearchDialog extends JDialog {
+
+    private static final int MAX_HITS = 200;
+
+    private final SearchIndex index;
+    private final JTextComponent editor;
+    private final JTextField query = new JTextField(24);
+    private final DefaultListModel<SearchIndex.Hit> model = new DefaultListModel<>();
+    private final JList<SearchIndex.Hit> results = new JList<>(model);
+    private final JLabel status = new JLabel(" ");
+    private final Timer debounce = new Timer(120, e -> runQuery());
+    private final SimpleDateFormat when = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+    private final ExecutorService queries = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "docknotas-search");
+        t.setDaemon(true);
+        return t;
+    });
+    /** Consulta mais recente (EDT escreve; a thread de busca pula as que ficaram velhas). */
+    private volatile int querySeq;
+
+    public SearchDialog(Window owner, SearchIndex index, JTextComponent editor) {
+        super(owner, "Search", ModalityType.MODELESS);
+        this.index = index;
+        this.editor = editor;
+        debounce.setRepeats(false);
+
+        results.setCellRenderer(new DefaultListCellRenderer() {
+            @Override public Component getListCellRendererComponent(JList<?> list, Object value, int i, boolean sel, boolean focus) {
+                SearchIndex.Hit h = (SearchIndex.Hit) value;
+                String where = h.snapshotId() == 0 ? "note" : "backup " + when.format(new Date(h.snapshotId()));
+                return super.getListCellRendererComponent(list, where + "  —  " + h.preview(), i, sel, focus);
+            }
+        });
+        results.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        results.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) { if (e.getClickCount() == 2) openSelected(); }
+        });
+
+        query.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { debounce.restart(); }
+            @Override public void removeUpdate(DocumentEvent e) { debounce.restart(); }
+            @Override public void changedUpdate(DocumentEvent e) { }
+        });
+        query.addActionListener(e -> {
+            if (model.isEmpty()) return;
+            if (results.isSelectionEmpty()) results.setSelectedIndex(0);
+            openSelected();
+        });
+        bind(query, KeyEvent.VK_DOWN, () -> move(+1));
+        bind(query, KeyEvent.VK_UP, () -> move(-1));
+        getRootPane().registerKeyboardAction(e -> setVisible(false),
+                KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), JComponent.WHEN_IN_FOCUSED_WINDOW);
+
+        JPanel content = new JPanel(new BorderLayout(0, 6));
+        content.setBorder(new EmptyBorder(8, 8, 8, 8));
+        content.add(query, BorderLayout.NORTH);
+        content.add(new JScrollPane(results), BorderLayout.CENTER);
+        content.add(status, BorderLayout.SOUTH);
+        setContentPane(content);
+        setSize(520, 360);
+        setLocationRelativeTo(owner);
+    }
+
+    /** Mostra a janela com o campo de busca selecionado. */
+    public void showAndFocus() {
+        setVisible(true);
+        toFront();
+        query.selectAll();
+        query.requestFocusInWindow();
+        runQuery();
+    }
+
+    private void runQuery() {
+        String q = query.getText();
+        int seq = ++querySeq;
+        queries.execute(() -> {
+            if (seq != querySeq) return; // já chegou outra consulta
+            long t0 = System.nanoTime();
+            List<SearchIndex.Hit> hits = index.search(q, MAX_HITS);
+            long ms = (System.nanoTime() - t0) / 1_000_000;
+            boolean ready = index.isReady();
+            SwingUtilities.invokeLater(() -> { if (seq == querySeq) show(q, hits, ms, ready); });
+        });
+    }
+
+    private void show(String q, List<SearchIndex.Hit> hits, long ms, boolean ready) {
+        model.clear();
+        hits.forEach(model::addElement);
+        if (!hits.isEmpty()) results.setSelectedIndex(0);
+        String s = q.isBlank() ? " " : hits.size() + (hits.size() == MAX_HITS ? "+" : "") + " results (" + ms + " ms)";
+        status.setText(ready ? s : "Indexing… " + s);
+    }
+
+    private void move(int d) {
+        if (model.isEmpty()) return;
+        int i = Math.max(0, Math.min(model.size() - 1, results.getSelectedIndex() + d));
+        results.setSelectedIndex(i);
+        results.ensureIndexIsVisible(i);
+    }
+
+    private void openSelected() {
+        SearchIndex.Hit h = results.getSelectedValue();
+        if (h == null) return;
+        if (h.snapshotId() == 0) {
+            int len = editor.getDocument().getLength();
+            int from = Math.min(h.offset(), len), to = Math.min(h.offset() + h.length(), len);
+            editor.requestFocusInWindow();
+            editor.select(from, to);
+            try {
+                Rectangle r = editor.modelToView2D(from).getBounds();
+                r.height *= 3;
+                editor.scrollRectToVisible(r);
+            } catch (Exception ignored) {}
+        } else {
+            openBackup(h);
+        }
+    }
+
+    /** Cópia do backup, só leitura, com o trecho selecionado. */
+    private void openBackup(SearchIndex.Hit h) {
+        String text;
+        try { text = Storage.readBackup(h.snapshotId()); }
+        catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Erro", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        JTextArea area = new JTextArea(text);
+        area.setEditable(false);
+        area.setLineWrap(true);
+        area.setWrapStyleWord(true);
+        area.setFont(editor.getFont());
+
+        JDialog d = new JDialog(this, "Backup " + when.format(new Date(h.snapshotId())), ModalityType.MODELESS);
+        d.setContentPane(new JScrollPane(area));
+        d.setSize(getOwner() != null ? getOwner().getSize() : new Dimension(420, 520));
+        d.setLocationRelativeTo(this);
+        d.setVisible(true);
+
+        int from = Math.min(h.offset(), text.length());
+        area.requestFocusInWindow();
+        area.select(from, Math.min(from + h.length(), text.length()));
+        area.getCaret().setSelectionVisible(true);
+    }
+
+    private static void bind(JComponent c, int key, Runnable r) {
+        String name = "search-" + key;
+        c.getInputMap().put(KeyStroke.getKeyStroke(key, 0), name);
+        c.getActionMap().put(name, new AbstractAction() {
+            @Override public void actionPerformed(java.awt.event.ActionEvent e) { r.run(); }
+        });
+    }
+}
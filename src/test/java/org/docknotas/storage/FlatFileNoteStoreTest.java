@@ -0,0 +1,93 @@
+package org.docknotas.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FlatFileNoteStore: um arquivo por chave, no formato de sempre da pasta ~/.docknotas.
+ * – put (inteiro e em fluxo) troca o arquivo sem deixar temporários; append depois de put continua no arquivo novo
+ * – Chaves fora da pasta são recusadas
+ */
+class FlatFileNoteStoreTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void roundTripOnPlainFiles() throws IOException {
+        try (FlatFileNoteStore s = new FlatFileNoteStore(dir)) {
+            s.put("settings.properties", bytes("a=1"));
+            s.put("notes/main.txt", bytes("ação"));
+            s.append("notes/main.journal", bytes("um "));
+            s.append("notes/main.journal", bytes("dois"));
+            assertEquals("ação", string(Files.readAllBytes(dir.resolve("notes/main.txt"))));
+            assertEquals("um dois", string(s.get("notes/main.journal")));
+            assertEquals("um", string(s.head("notes/main.journal", 2)));
+            assertEquals(7, s.size("notes/main.journal"));
+            assertEquals(dir.resolve("notes/main.txt").toAbsolutePath(), s.file("notes/main.txt"));
+            assertEquals(List.of("notes/main.journal", "notes/main.txt"), s.keys("notes/"));
+            assertEquals(List.of("notes/main.txt"), s.keys("notes/main.t"));
+
+            s.delete("notes/main.journal");
+            assertFalse(s.exists("notes/main.journal"));
+            assertNull(s.get("notes/main.journal"));
+            assertEquals(0, s.size("notes/main.journal"));
+        }
+        try (FlatFileNoteStore s = new FlatFileNoteStore(dir)) {
+            assertEquals("a=1", string(s.get("settings.properties")));
+            assertEquals(List.of("settings.properties"), s.keys("settings"));
+        }
+    }
+
+    @Test
+    void appendAfterPutGoesToTheNewFile() throws IOException {
+        try (FlatFileNoteStore s = new FlatFileNoteStore(dir)) {
+            s.append("j", bytes("velho"));
+            s.put("j", bytes("cab|")); // reset do diário: o canal de append antigo não pode continuar
+            s.append("j", bytes("1"));
+            assertEquals("cab|1", string(s.get("j")));
+        }
+    }
+
+    @Test
+    void streamingPutWritesOrDiscards() throws IOException {
+        try (FlatFileNoteStore s = new FlatFileNoteStore(dir)) {
+            s.put("notes/k.txt", bytes("antes"));
+            assertFalse(s.put("notes/k.txt", out -> {
+                out.write(ByteBuffer.wrap(bytes("meio")));
+                return false;
+            }));
+            assertEquals("antes", string(s.get("notes/k.txt")));
+            assertTrue(s.put("notes/k.txt", out -> {
+                out.write(ByteBuffer.wrap(bytes("depois")));
+                return true;
+            }));
+            assertEquals("depois", string(s.get("notes/k.txt")));
+            assertEquals(List.of("notes/k.txt"), s.keys("notes/"));
+        }
+    }
+
+    @Test
+    void keysOutsideTheFolderAreRejected() {
+        try (FlatFileNoteStore s = new FlatFileNoteStore(dir)) {
+            assertThrows(IllegalArgumentException.class, () -> s.get("../fora.txt"));
+            assertThrows(IllegalArgumentException.class, () -> s.put("notes/../../fora.txt", bytes("x")));
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] b) {
+        return b == null ? null : new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,239 @@
+package org.docknotas.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LogNoteStore reaberto do disco: o diretório de chaves refeito tem de dar os mesmos valores.
+ * – Cauda rasgada e CRC errado no último segmento: registros cortados, os anteriores ficam
+ * – Merge: valores vivos num segmento só, com .hint; hint estragado = releitura do segmento
+ * – Queda entre o rename do merge e a remoção dos segmentos antigos: o marcador MERGED os descarta
+ */
+class LogNoteStoreTest {
+
+    /** Acima de metade do segmento (4 MB): dois valores fecham um segmento. */
+    private static final int BIG = 3 * 1024 * 1024;
+
+    @TempDir Path dir;
+
+    @Test
+    void reopenRebuildsTheKeydir() throws IOException {
+        try (LogNoteStore s = new LogNoteStore(dir)) {
+            s.put("settings.properties", bytes("a=1"));
+            s.put("notes/main.txt", bytes("texto"));
+            s.append("notes/main.journal", bytes("um "));
+            s.append("notes/main.journal", bytes("dois"));
+            s.put("notes/x.txt", bytes("apagar"));
+            s.delete("notes/x.txt");
+            s.put("notes/main.txt", bytes("texto novo, ação"));
+            assertEquals("texto novo, ação", string(s.get("notes/main.txt")));
+        }
+        try (LogNoteStore s = new LogNoteStore(dir)) {
+            assertEquals("a=1", string(s.get("settings.properties")));
+            assertEquals("texto novo, ação", string(s.get("notes/main.txt")));
+            assertEquals("um dois", string(s.get("notes/main.journal")));
+            assertEquals(7, s.size("notes/main.journal"));
+            assertEquals("um d", string(s.head("notes/main.journal", 4)));
+            assertNull(s.get("notes/x.txt"));
+            assertFalse(s.exists("notes/x.txt"));
+            assertEquals(List.of("notes/main.journal", "notes/main.txt"), s.keys("notes/"));
+            assertTrue(s.modified("notes/main.txt") > 0);
+        }
+    }
+
+    @Test
+    void tornTailIsCutAndWritingContinues() throws IOException {
+        try (LogNoteStore s = new LogNoteStore(dir)) {
+            s.put("a", bytes("inteiro"));
+            s.append("j", bytes("1"));
+            s.append("j", bytes("2"));
+        }
+        Path seg = onlySegment();
+        long size = Files.size(seg);
+        try (FileChannel ch = FileChannel.open(seg, StandardOpenOption.WRITE)) {
+            ch.truncate(size - 3); // queda no meio do último registro
+        }
+        try (LogNoteStore s = new LogNoteStore(dir)) {
+            assertEquals("inteiro", string(s.get("a")));
+            assertEquals("1", string(s.get("j")));
+            s.append("j", bytes("3"));
+        }
+        try (LogNoteStore s = new LogNoteStore(dir)) {
+            assertEquals("13", string(s.get("j")));
+        }
+    }
+
+    @Test
+    void corruptRecordStopsTheReplay() throws IOException {
+        try (LogNoteStore s = new LogNoteStore(dir)) {
+            s.put("a", bytes("primeiro"));
+            s.put("b", bytes("segundo"));
+            s.put("c", bytes("terceiro"));
+        }
+        Path seg = onlySegment();
+        byte[] all = Files.readAllBytes(seg);
+        int at = indexOf(all, bytes("segundo"));
+        all[at] ^= 0x20; // CRC não confere mais
+        Files.write(seg, all);
+        try (LogNoteStore s = new LogNoteStore(dir)) {
+            assertEquals("primeiro", string(s.get("a")));
+            assertNull(s.get("b"));
+            assertNull(s.get("c")); // depois de um registro ruim nada é confiável
+            assertTrue(Files.size(seg) < all.length);
+        }
+    }
+
+    @Test
+    void streamingPutWritesOrDiscards() throws IOException {
+        byte[] v = new byte[200_000];
+        new Random(3).nextBytes(v);
+        try (LogNoteStore s = new LogNoteStore(dir)) {
+            s.put("k", bytes("antes"));
+            assertFalse(s.put("k", out -> {
+                out.write(ByteBuffer.wrap(bytes("meio")));
+                return false;
+            }));
+            assertEquals("antes", string(s.get("k")));
+            assertTrue(s.put("k", out -> {
+                for (int i = 0; i < v.length; i += 4096) out.write(ByteBuffer.wrap(v, i, Math.min(4096, v.length - i)));
+                return true;
+            }));
+            assertArrayEquals(v, s.get("k"));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.noneMatch(f -> f.toString().endsWith(".tmp")), "temporário esquecido");
+        }
+        try (LogNoteStore s = new LogNoteStore(dir)) {
+            assertArrayEquals(v, s.get("k"));
+        }
+    }
+
+    @Test
+    void mergeKeepsLiveValuesAndWritesAHint() throws IOException, InterruptedException {
+        try (LogNoteStore s = new LogNoteStore(dir)) {
+            fillTwoSegments(s);
+            overwrite(s);
+            awaitMerge();
+            assertEquals(List.of("0000000002.hint", "0000000002.seg", "0000000003.seg"), files());
+            assertValuesAfterMerge(s);
+        }
+        try (LogNoteStore s = new LogNoteStore(dir)) { // pelo hint
+            assertValuesAfterMerge(s);
+        }
+
+        Path hint = dir.resolve("0000000002.hint");
+        byte[] h = Files.readAllBytes(hint);
+        h[h.length / 2] ^= 1;
+        Files.write(hint, h);
+        try (LogNoteStore s = new LogNoteStore(dir)) { // hint ruim: relê o segmento
+            assertValuesAfterMerge(s);
+        }
+    }
+
+    @Test
+    void mergedMarkerDropsSegmentsLeftByACrash() throws IOException, InterruptedException {
+        Path first = dir.resolve("0000000001.seg"), saved = dir.resolve("saved");
+        try (LogNoteStore s = new LogNoteStore(dir)) {
+            fillTwoSegments(s);
+            Files.copy(first, saved); // segmento 1 fechado, como estava antes do merge
+            overwrite(s);
+            awaitMerge();
+        }
+        // queda depois do rename do .merge e antes de apagar o segmento 1: ele continua no disco
+        Files.move(saved, first);
+        try (LogNoteStore s = new LogNoteStore(dir)) {
+            assertFalse(Files.exists(first), "segmento coberto pelo merge ficou");
+            assertValuesAfterMerge(s); // sem o marcador, "a" (apagada no segmento 2) voltaria
+        }
+    }
+
+    /* ===================== apoio ===================== */
+
+    /**
+     * Segmento 1: a, b, x; segmento 2: c, remoção de a, d; segmento 3 (ativo): e.
+     * Os fechados ficam cheios de valores vivos, sem merge.
+     */
+    private void fillTwoSegments(LogNoteStore s) throws IOException {
+        s.put("a", bytes("apagada"));
+        s.put("b", filled(BIG, 'b'));
+        s.put("x", filled(BIG, 'x'));
+        s.put("c", filled(BIG, 'c'));
+        s.delete("a");
+        s.put("d", filled(BIG, 'd'));
+        s.put("e", bytes("pequeno"));
+        s.append("e", bytes("+"));
+        assertEquals(List.of("0000000001.seg", "0000000002.seg", "0000000003.seg"), files());
+    }
+
+    /** b e c regravados no segmento 3: mais da metade dos fechados vira lixo e o merge junta 1 e 2 no 2. */
+    private static void overwrite(LogNoteStore s) throws IOException {
+        s.put("b", bytes("b novo"));
+        s.put("c", bytes("c novo"));
+    }
+
+    private static void assertValuesAfterMerge(LogNoteStore s) throws IOException {
+        assertNull(s.get("a"));
+        assertEquals("b novo", string(s.get("b")));
+        assertEquals("c novo", string(s.get("c")));
+        assertArrayEquals(filled(BIG, 'd'), s.get("d"));
+        assertArrayEquals(filled(BIG, 'x'), s.get("x"));
+        assertEquals("pequeno+", string(s.get("e")));
+        assertEquals(List.of("b", "c", "d", "e", "x"), s.keys(""));
+    }
+
+    /** O hint é gravado por último, depois de apagar os segmentos substituídos. */
+    private void awaitMerge() throws InterruptedException {
+        Path hint = dir.resolve("0000000002.hint");
+        for (int i = 0; i < 400 && !Files.exists(hint); i++) Thread.sleep(50);
+        assertTrue(Files.exists(hint), "merge não terminou");
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        List<String> segs = files().stream().filter(n -> n.endsWith(".seg")).toList();
+        assertEquals(1, segs.size());
+        return dir.resolve(segs.get(0));
+    }
+
+    private static byte[] filled(int n, char c) {
+        byte[] b = new byte[n];
+        Arrays.fill(b, (byte) c);
+        return b;
+    }
+
+    private static int indexOf(byte[] in, byte[] what) {
+        outer:
+        for (int i = 0; i + what.length <= in.length; i++) {
+            for (int j = 0; j < what.length; j++) if (in[i + j] != what[j]) continue outer;
+            return i;
+        }
+        throw new AssertionError("não achou");
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] b) {
+        return b == null ? null : new String(b, StandardCharsets.UTF_8);
+    }
+}
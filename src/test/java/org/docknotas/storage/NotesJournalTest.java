@@ -0,0 +1,118 @@
+package org.docknotas.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NotesJournal sobre um NoteStore de verdade: edições gravadas, relidas e sobrepostas ao snapshot.
+ * – Diário de outro snapshot é ignorado; cauda rasgada = para no último registro inteiro
+ * – Append só depois de verify/reset: diário que não confere é recusado até o próximo reset
+ */
+class NotesJournalTest {
+
+    private static final String KEY = "notes/main.journal";
+    private static final byte[] SNAPSHOT = bytes("linha um\nlinha dois\n");
+
+    @TempDir Path dir;
+
+    @Test
+    void overlayReplaysTheEdits() throws IOException {
+        try (NoteStore store = new FlatFileNoteStore(dir)) {
+            NotesJournal j = new NotesJournal(store, KEY);
+            j.reset(SNAPSHOT);
+            j.append(List.of(NotesJournal.Edit.insert(5, " número"), NotesJournal.Edit.remove(0, 1)));
+            j.append(List.of(NotesJournal.Edit.insert(0, "L")));
+            assertEquals("Linha número um\nlinha dois\n", NotesJournal.overlay(SNAPSHOT, j.read()));
+        }
+        try (NoteStore store = new FlatFileNoteStore(dir)) { // relido do disco
+            assertEquals("Linha número um\nlinha dois\n", NotesJournal.overlay(SNAPSHOT, store.get(KEY)));
+        }
+    }
+
+    @Test
+    void journalOfAnotherSnapshotIsIgnored() throws IOException {
+        try (NoteStore store = new FlatFileNoteStore(dir)) {
+            NotesJournal j = new NotesJournal(store, KEY);
+            j.reset(SNAPSHOT);
+            j.append(List.of(NotesJournal.Edit.insert(0, "x")));
+            byte[] newer = bytes("snapshot mais novo");
+            assertEquals("snapshot mais novo", NotesJournal.overlay(newer, j.read()));
+            assertEquals("linha um\nlinha dois\n", NotesJournal.overlay(SNAPSHOT, null));
+        }
+    }
+
+    @Test
+    void tornTailStopsTheOverlayAndBlocksAppends() throws IOException {
+        try (NoteStore store = new FlatFileNoteStore(dir)) {
+            NotesJournal j = new NotesJournal(store, KEY);
+            j.reset(SNAPSHOT);
+            j.append(List.of(NotesJournal.Edit.insert(0, "A")));
+            j.append(List.of(NotesJournal.Edit.insert(0, "B")));
+            byte[] log = store.get(KEY);
+            store.put(KEY, Arrays.copyOf(log, log.length - 2)); // queda no meio do último registro
+
+            assertEquals("Alinha um\nlinha dois\n", NotesJournal.overlay(SNAPSHOT, store.get(KEY)));
+
+            NotesJournal reopened = new NotesJournal(store, KEY);
+            assertFalse(reopened.verify(SNAPSHOT));
+            assertThrows(IOException.class, () -> reopened.append(List.of(NotesJournal.Edit.insert(0, "C"))));
+
+            reopened.reset(SNAPSHOT);
+            reopened.append(List.of(NotesJournal.Edit.insert(0, "C")));
+            assertEquals("Clinha um\nlinha dois\n", NotesJournal.overlay(SNAPSHOT, store.get(KEY)));
+        }
+    }
+
+    @Test
+    void verifyChecksTheSnapshotItBelongsTo() throws IOException {
+        try (NoteStore store = new FlatFileNoteStore(dir)) {
+            new NotesJournal(store, KEY).reset(SNAPSHOT);
+
+            NotesJournal other = new NotesJournal(store, KEY);
+            assertFalse(other.verify(bytes("outro texto")));
+            assertFalse(other.isAppendable());
+
+            NotesJournal known = new NotesJournal(store, KEY);
+            assertFalse(known.knowsSnapshot());
+            known.knowSnapshot(SNAPSHOT.length, crc(SNAPSHOT)); // varredura do MappedNotes: sem reler o snapshot
+            assertTrue(known.verify(null));
+            known.append(List.of(NotesJournal.Edit.remove(0, 6)));
+            assertEquals("um\nlinha dois\n", NotesJournal.overlay(SNAPSHOT, known.read()));
+            assertEquals(known.read().length, known.size());
+        }
+    }
+
+    @Test
+    void worksOnTheLogStoreToo() throws IOException {
+        try (NoteStore store = new LogNoteStore(dir)) {
+            NotesJournal j = new NotesJournal(store, KEY);
+            j.reset(SNAPSHOT);
+            j.append(List.of(NotesJournal.Edit.insert(0, ">")));
+        }
+        try (NoteStore store = new LogNoteStore(dir)) {
+            NotesJournal j = new NotesJournal(store, KEY);
+            assertTrue(j.verify(SNAPSHOT));
+            j.append(List.of(NotesJournal.Edit.insert(0, ">")));
+            assertEquals(">>linha um\nlinha dois\n", NotesJournal.overlay(SNAPSHOT, j.read()));
+        }
+    }
+
+    private static int crc(byte[] b) {
+        CRC32 c = new CRC32();
+        c.update(b);
+        return (int) c.getValue();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
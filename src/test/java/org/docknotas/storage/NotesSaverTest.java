@@ -0,0 +1,127 @@
+package org.docknotas.storage;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.JTextArea;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NotesSaver sobre um PlainDocument e o Storage de verdade, numa pasta de dados descartável.
+ * – Uma rajada de digitação = uma gravação, depois do silêncio do debounce
+ * – Cursor e mudanças sem rastreio (texto carregado) não gravam nada
+ * – flush (fora da EDT, como o SnapshotScheduler) grava o pendente na hora
+ * – Edição durante a carga progressiva: nada gravado até o fim, e aí um snapshot (não o diário)
+ */
+class NotesSaverTest {
+
+    /** Mais que o debounce (700 ms) com folga. */
+    private static final long QUIET_MS = 1500;
+
+    private PlainDocument doc;
+
+    @BeforeAll
+    static void dataFolder() throws IOException {
+        // o Storage lê docknotas.home ao carregar; sem a propriedade do Gradle (IDE), uma pasta temporária
+        if (System.getProperty("docknotas.home") == null) {
+            System.setProperty("docknotas.home", Files.createTempDirectory("docknotas-test").toString());
+        }
+        assertEquals(Path.of(System.getProperty("docknotas.home")).toAbsolutePath(),
+                Storage.notesFolder().toPath().toAbsolutePath(), "Storage fora da pasta de teste");
+    }
+
+    @BeforeEach
+    void emptyNote() {
+        Storage.saveNotes("");
+        doc = new PlainDocument();
+    }
+
+    @Test
+    void oneWritePerBurst() throws Exception {
+        NotesSaver saver = new NotesSaver(doc);
+        for (int i = 0; i < 8; i++) {
+            type("ab");
+            Thread.sleep(60); // digitação: menos que o debounce entre as teclas
+        }
+        assertEquals(0, saver.writes(), "gravou no meio da rajada");
+        awaitSaved(saver);
+        assertEquals(1, saver.writes());
+        assertEquals(text(), Storage.loadNotes());
+
+        Thread.sleep(QUIET_MS);
+        assertEquals(1, saver.writes(), "gravou de novo sem edição");
+    }
+
+    @Test
+    void caretMovesAndUntrackedChangesDoNotWrite() throws Exception {
+        NotesSaver saver = new NotesSaver(doc);
+        saver.withoutTracking(() -> type("texto já gravado no disco"));
+        JTextArea area = new JTextArea(doc);
+        for (int p = 0; p <= doc.getLength(); p += 3) area.setCaretPosition(p);
+        area.select(2, 8);
+
+        assertFalse(saver.isDirty());
+        Thread.sleep(QUIET_MS);
+        assertEquals(0, saver.writes());
+        assertEquals("", Storage.loadNotes());
+    }
+
+    @Test
+    void flushWritesPendingEditsAtOnce() throws Exception {
+        NotesSaver saver = new NotesSaver(doc, true);
+        type("linha\n");
+        saver.flush(); // thread do teste, como o SnapshotScheduler: sem esperar o debounce
+        assertFalse(saver.isDirty());
+        assertEquals(1, saver.writes());
+        assertEquals("linha\n", Storage.loadNotes());
+        assertTrue(Storage.notesJournalSize() > NotesJournal.HEADER_BYTES, "modo journaled grava o diário");
+
+        saver.flush(); // nada pendente
+        assertEquals(1, saver.writes());
+    }
+
+    @Test
+    void editsDuringLoadingEndInASnapshot() throws Exception {
+        NotesSaver saver = new NotesSaver(doc, true);
+        saver.beginLoading();
+        saver.withoutTracking(() -> type("começo carregado\n"));
+        doc.insertString(0, ">", null); // usuário edita o pedaço já carregado
+        assertTrue(saver.isDirty());
+        Thread.sleep(QUIET_MS);
+        assertEquals(0, saver.writes(), "gravou o documento incompleto");
+        assertEquals("", Storage.loadNotes());
+
+        saver.withoutTracking(() -> type("resto do arquivo\n"));
+        saver.finishLoading();
+        awaitSaved(saver);
+        assertEquals(1, saver.writes());
+        assertEquals(">começo carregado\nresto do arquivo\n", Storage.loadNotes());
+        assertEquals(NotesJournal.HEADER_BYTES, Storage.notesJournalSize(), "foi pelo diário, não por snapshot");
+    }
+
+    /* ===================== apoio ===================== */
+
+    private void type(String s) {
+        try {
+            doc.insertString(doc.getLength(), s, null);
+        } catch (BadLocationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private String text() throws BadLocationException {
+        return doc.getText(0, doc.getLength());
+    }
+
+    private static void awaitSaved(NotesSaver saver) throws InterruptedException {
+        for (int i = 0; i < 100 && (saver.isDirty() || saver.writes() == 0); i++) Thread.sleep(50);
+        assertFalse(saver.isDirty(), "não gravou");
+    }
+}
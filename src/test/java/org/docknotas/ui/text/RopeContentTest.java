@@ -0,0 +1,140 @@
+package org.docknotas.ui.text;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.GapContent;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.UndoableEdit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A RopeContent contra o GapContent do Swing (o conteúdo que ela substitui): mesmas edições, mesmo texto
+ * e as Positions nos mesmos offsets.
+ * – Edições aleatórias pequenas (digitação) e grandes (colar/apagar várias folhas, árvore com mais de um nível)
+ * – getChars inteiro e com partial return; undo/redo das edições devolvem o texto de cada passo
+ */
+class RopeContentTest {
+
+    @Test
+    void randomEditsMatchGapContent() throws BadLocationException {
+        Random r = new Random(5);
+        RopeContent rope = new RopeContent();
+        GapContent gap = new GapContent();
+        List<Position> ropePos = new ArrayList<>(), gapPos = new ArrayList<>();
+
+        for (int i = 0; i < 3000; i++) {
+            int len = rope.length() - 1, at = r.nextInt(len + 1);
+            if (len > 0 && r.nextInt(3) == 0) {
+                int n = Math.min(len - at, r.nextInt(40) == 0 ? r.nextInt(200_000) : r.nextInt(20));
+                rope.remove(at, n);
+                gap.remove(at, n);
+            } else {
+                String s = r.nextInt(30) == 0 ? text(r, 5_000 + r.nextInt(60_000)) : text(r, 1 + r.nextInt(8));
+                rope.insertString(at, s);
+                gap.insertString(at, s);
+            }
+            if (r.nextInt(4) == 0) {
+                int p = r.nextInt(rope.length() + 1);
+                ropePos.add(rope.createPosition(p));
+                gapPos.add(gap.createPosition(p));
+            }
+            assertEquals(gap.length(), rope.length(), "length");
+            if (i % 50 == 0) assertSameText(rope, gap);
+        }
+        assertSameText(rope, gap);
+        for (int i = 0; i < ropePos.size(); i++) {
+            assertEquals(gapPos.get(i).getOffset(), ropePos.get(i).getOffset(), "Position " + i);
+        }
+    }
+
+    @Test
+    void positionsAtTheInsertPointMoveExceptAtZero() throws BadLocationException {
+        RopeContent rope = new RopeContent();
+        rope.insertString(0, "abcdef");
+        Position zero = rope.createPosition(0), three = rope.createPosition(3), end = rope.createPosition(6);
+        rope.insertString(3, "XY");
+        rope.insertString(0, "<");
+        assertEquals(0, zero.getOffset());
+        assertEquals(6, three.getOffset());
+        assertEquals(9, end.getOffset());
+        rope.remove(2, 5); // "bcXYd" removido: a marca de dentro vai para o ponto da remoção
+        assertEquals("<aef\n", rope.getString(0, rope.length()));
+        assertEquals(2, three.getOffset());
+        assertEquals(4, end.getOffset());
+    }
+
+    @Test
+    void getCharsAcrossLeaves() throws BadLocationException {
+        RopeContent rope = new RopeContent();
+        String s = text(new Random(9), 20_000);
+        rope.insertString(0, s);
+
+        Segment seg = new Segment();
+        rope.getChars(1000, 9000, seg);
+        assertEquals(s.substring(1000, 10_000), seg.toString());
+
+        seg.setPartialReturn(true); // pode devolver menos, sem copiar; o resto vem nas próximas chamadas
+        StringBuilder sb = new StringBuilder();
+        for (int at = 1000; at < 10_000; at += seg.count) {
+            rope.getChars(at, 10_000 - at, seg);
+            assertTrue(seg.count > 0);
+            sb.append(seg);
+        }
+        assertEquals(s.substring(1000, 10_000), sb.toString());
+
+        assertThrows(BadLocationException.class, () -> rope.getChars(0, rope.length() + 1, new Segment()));
+        assertThrows(BadLocationException.class, () -> rope.remove(0, rope.length()));
+    }
+
+    @Test
+    void undoAndRedoRestoreEachStep() throws BadLocationException {
+        Random r = new Random(13);
+        RopeContent rope = new RopeContent();
+        List<UndoableEdit> edits = new ArrayList<>();
+        List<String> states = new ArrayList<>();
+        states.add(all(rope));
+        for (int i = 0; i < 200; i++) {
+            int len = rope.length() - 1, at = r.nextInt(len + 1);
+            UndoableEdit e = len > 0 && r.nextBoolean()
+                    ? rope.remove(at, Math.min(len - at, 1 + r.nextInt(r.nextInt(10) == 0 ? 10_000 : 10)))
+                    : rope.insertString(at, text(r, r.nextInt(10) == 0 ? 8_000 : 1 + r.nextInt(10)));
+            if (e == null) continue;
+            edits.add(e);
+            states.add(all(rope));
+        }
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            edits.get(i).undo();
+            assertEquals(states.get(i), all(rope), "undo " + i);
+        }
+        for (int i = 0; i < edits.size(); i++) {
+            edits.get(i).redo();
+            assertEquals(states.get(i + 1), all(rope), "redo " + i);
+        }
+    }
+
+    /* ===================== apoio ===================== */
+
+    private static void assertSameText(AbstractDocument.Content rope, AbstractDocument.Content gap) throws BadLocationException {
+        assertEquals(all(gap), all(rope));
+    }
+
+    private static String all(AbstractDocument.Content c) throws BadLocationException {
+        return c.getString(0, c.length());
+    }
+
+    private static String text(Random r, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            int k = r.nextInt(20);
+            sb.append(k == 0 ? '\n' : k == 1 ? 'ç' : (char) ('a' + r.nextInt(26)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,145 @@
+package org.docknotas.ui.text;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import javax.swing.plaf.basic.BasicTextAreaUI;
+import javax.swing.text.*;
+import java.awt.*;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A SoftWrapView contra o WrappedPlainView do Swing (a referência que ela substitui): mesmos textos,
+ * mesma fonte e largura, e cada posição tem de cair no mesmo retângulo.
+ * – Headless; sem FlatLaf (a view entra por uma BasicTextAreaUI)
+ * – Edições aleatórias, inclusive coladas e apagadas de milhares de parágrafos (blocos divididos e juntados)
+ */
+class SoftWrapViewTest {
+
+    private static final int W = 360;
+    private static final String[] WORDS = {
+            "a", "bb", "palavra", "grande-demais-para-caber-xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx",
+            "\t", "x y", "  ", "não", "ação"};
+
+    @Test
+    void matchesWrappedPlainView() throws Exception {
+        onEdt(() -> {
+            Random r = new Random(7);
+            for (boolean word : new boolean[]{true, false}) {
+                String s = text(r, 300);
+                JTextArea soft = area(true, word, s), ref = area(false, word, s);
+                assertSame(soft, ref, 1);
+                for (int y = -5; y < ref.getHeight() + 20; y += 3) {
+                    for (int x = -5; x < W + 20; x += 7) {
+                        Point pt = new Point(x, y);
+                        assertEquals(ref.viewToModel2D(pt), soft.viewToModel2D(pt), "viewToModel " + pt);
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    void editsKeepTheLayoutInSync() throws Exception {
+        onEdt(() -> {
+            Random r = new Random(11);
+            for (boolean word : new boolean[]{true, false}) {
+                String s = text(r, 1500);
+                JTextArea soft = area(true, word, s), ref = area(false, word, s);
+                for (int i = 0; i < 300; i++) {
+                    int len = soft.getDocument().getLength(), at = r.nextInt(len + 1);
+                    if (r.nextBoolean() && len > 0) {
+                        int n = Math.min(len - at, r.nextInt(20) == 0 ? r.nextInt(40_000) : r.nextInt(30));
+                        soft.getDocument().remove(at, n);
+                        ref.getDocument().remove(at, n);
+                    } else {
+                        String ins = r.nextInt(20) == 0 ? text(r, 1200) : r.nextInt(3) == 0 ? "\nxx yy\n" : text(r, 2);
+                        soft.getDocument().insertString(at, ins, null);
+                        ref.getDocument().insertString(at, ins, null);
+                    }
+                }
+                fit(soft);
+                fit(ref);
+                assertSame(soft, ref, 5);
+            }
+        });
+    }
+
+    @Test
+    void zeroWidthCharactersDoNotCutTheLine() throws Exception {
+        onEdt(() -> {
+            // espaço de largura zero: muito mais caracteres que pixels numa linha visual
+            String zw = "\u200B".repeat(600);
+            String s = ("ab" + zw + " cd ").repeat(200) + "\n" + zw.repeat(10) + "fim";
+            for (boolean word : new boolean[]{true, false}) {
+                assertSame(area(true, word, s), area(false, word, s), 7);
+            }
+        });
+    }
+
+    /* ===================== apoio ===================== */
+
+    private static JTextArea area(boolean soft, boolean word, String text) {
+        JTextArea t = new JTextArea();
+        if (soft) {
+            t.setUI(new BasicTextAreaUI() {
+                @Override public View create(Element elem) { return new SoftWrapView(elem, word); }
+            });
+        } else {
+            t.setUI(new BasicTextAreaUI());
+        }
+        t.setLineWrap(true);
+        t.setWrapStyleWord(word);
+        t.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+        t.setText(text);
+        t.setSize(W, 1000);
+        fit(t);
+        if (soft) assertEquals(SoftWrapView.class, t.getUI().getRootView(t).getView(0).getClass());
+        return t;
+    }
+
+    private static void fit(JTextArea t) {
+        t.setSize(W, t.getPreferredSize().height);
+    }
+
+    /** Mesma altura e, a cada step posições, o mesmo retângulo nas duas direções de bias. */
+    private static void assertSame(JTextArea soft, JTextArea ref, int step) throws BadLocationException {
+        assertEquals(ref.getPreferredSize().height, soft.getPreferredSize().height, "altura");
+        int n = ref.getDocument().getLength();
+        for (int p = 0; p <= n; p += p == n ? 1 : Math.min(step, n - p)) {
+            for (Position.Bias b : new Position.Bias[]{Position.Bias.Forward, Position.Bias.Backward}) {
+                assertEquals(ref.getUI().modelToView2D(ref, p, b).getBounds(),
+                        soft.getUI().modelToView2D(soft, p, b).getBounds(), "modelToView " + p + " " + b);
+            }
+        }
+    }
+
+    private static String text(Random r, int lines) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            for (int j = r.nextInt(30); j > 0; j--) {
+                sb.append(WORDS[r.nextInt(WORDS.length)]);
+                if (r.nextInt(4) != 0) sb.append(' ');
+            }
+            if (i < lines - 1) sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private interface Body { void run() throws Exception; }
+
+    private static void onEdt(Body body) throws Exception {
+        Throwable[] error = new Throwable[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] instanceof Error e) throw e;
+        if (error[0] != null) throw (Exception) error[0];
+    }
+}